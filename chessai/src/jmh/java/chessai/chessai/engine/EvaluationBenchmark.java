@@ -0,0 +1,33 @@
+package chessai.chessai.engine;
+
+import chessai.chessai.lib.BenchmarkPositions;
+import chessai.chessai.lib.Board;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the static evaluation of the minimax engine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+
+    @Param({"start", "kiwipete", "middlegame", "endgame"})
+    public String positionName;
+
+    private final MinimaxEngine engine = new MinimaxEngine(1, 1024);
+    private Board board;
+
+    @Setup
+    public void setUp() throws ParseException {
+        board = BenchmarkPositions.get(positionName);
+    }
+
+    @Benchmark
+    public int evaluateOngoingPosition() {
+        return engine.evaluateOngoingPosition(board);
+    }
+}
@@ -0,0 +1,50 @@
+package chessai.chessai.engine;
+
+import chessai.chessai.lib.BenchmarkPositions;
+import chessai.chessai.lib.Board;
+import chessai.chessai.lib.Move;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole searches with a fixed depth (or number of simulations) on the benchmark positions.
+ * Every invocation gets a new engine, so nothing is remembered from the previous search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 4)
+public class SearchBenchmark {
+
+    @Param({"start", "kiwipete", "middlegame", "endgame"})
+    public String positionName;
+
+    private Board board;
+    private MinimaxEngine minimaxEngine;
+    private MonteCarloEngine monteCarloEngine;
+
+    @Setup(Level.Trial)
+    public void setUpBoard() throws ParseException {
+        board = BenchmarkPositions.get(positionName);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpEngines() {
+        minimaxEngine = new MinimaxEngine(4, 1_000_000);
+        monteCarloEngine = new MonteCarloEngine(0, 1.4, 50, 100);
+    }
+
+    @Benchmark
+    public Optional<Move> minimaxDepth4() {
+        return minimaxEngine.makeMove(new Board(board));
+    }
+
+    @Benchmark
+    public Optional<Move> monteCarlo100Nodes() {
+        return monteCarloEngine.makeMove(new Board(board));
+    }
+}
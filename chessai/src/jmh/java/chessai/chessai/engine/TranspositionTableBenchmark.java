@@ -0,0 +1,50 @@
+package chessai.chessai.engine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures storing and looking up positions, with random keys (like the Zobrist keys of a search)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TranspositionTableBenchmark {
+
+    private static final int NUM_KEYS = 1 << 16;
+
+    @Param({"100000", "10000000"})
+    public int capacityInBytes;
+
+    @Param({"false", "true"})
+    public boolean isShared;
+
+    private TranspositionTable transpositionTable;
+    private final long[] keys = new long[NUM_KEYS];
+    private int keyIndex;
+
+    @Setup
+    public void setUp() {
+        transpositionTable = isShared ? new SharedTranspositionTable(capacityInBytes) : new TranspositionTable(capacityInBytes);
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = random.nextLong();
+            transpositionTable.put(keys[i], i, i % 10, TranspositionTable.EXACT, 0);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        final long key = keys[keyIndex++ & (NUM_KEYS - 1)];
+        transpositionTable.put(key, 42, 5, TranspositionTable.LOWER_BOUND, 0);
+    }
+
+    @Benchmark
+    public long probe() {
+        return transpositionTable.probe(keys[keyIndex++ & (NUM_KEYS - 1)]);
+    }
+}
@@ -0,0 +1,33 @@
+package chessai.chessai.lib;
+
+import java.text.ParseException;
+import java.util.Map;
+
+/**
+ * The positions the benchmarks run on, so the results of different benchmarks can be compared
+ */
+public class BenchmarkPositions {
+
+    /**
+     * The names are used as the <code>@Param</code> values of the benchmarks
+     */
+    private static final Map<String, String> POSITIONS = Map.of(
+            "start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    );
+
+    private BenchmarkPositions() {
+    }
+
+    public static Board get(String name) throws ParseException {
+
+        final String fen = POSITIONS.get(name);
+
+        if (fen == null)
+            throw new IllegalArgumentException("Unknown benchmark position: " + name);
+
+        return new Board(fen);
+    }
+}
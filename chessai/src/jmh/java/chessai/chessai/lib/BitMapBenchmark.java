@@ -0,0 +1,54 @@
+package chessai.chessai.lib;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the <code>BitMap</code> operations, next to the same thing done on a <code>long</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitMapBenchmark {
+
+    /**
+     * The pieces of the starting position
+     */
+    private BitMap bitMap = new BitMap(0xFFFF_0000_0000_FFFFL);
+
+    @Benchmark
+    public BitMap shift() {
+        return bitMap.shift(1, 1);
+    }
+
+    @Benchmark
+    public BitMap shiftFilesLeft() {
+        return bitMap.shiftFilesLeft(1);
+    }
+
+    @Benchmark
+    public BitMap shiftRowsUp() {
+        return bitMap.shiftRowsUp(1);
+    }
+
+    @Benchmark
+    public void iterator(Blackhole blackhole) {
+        for (Iterator<Boolean> iterator = bitMap.iterator(); iterator.hasNext(); )
+            blackhole.consume(iterator.next());
+    }
+
+    @Benchmark
+    public void getIndexesOfOnes(Blackhole blackhole) {
+        for (int index : bitMap.getIndexesOfOnes())
+            blackhole.consume(index);
+    }
+
+    @Benchmark
+    public void iterateLong(Blackhole blackhole) {
+        for (long bits = bitMap.getData(); bits != 0; bits &= bits - 1)
+            blackhole.consume(Long.numberOfTrailingZeros(bits));
+    }
+}
@@ -0,0 +1,75 @@
+package chessai.chessai.lib;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the move generation and making the moves.
+ * <p>
+ * <code>Board</code> caches the legal moves of a position, so the move generation benchmarks
+ * make a move first (which clears the cache) and measure the moves of the new position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark {
+
+    @Param({"start", "kiwipete", "middlegame", "endgame"})
+    public String positionName;
+
+    private Board board;
+    private Move firstMove;
+    private int firstEncodedMove;
+    private final int[] moveBuffer = new int[Board.MAX_LEGAL_MOVES];
+
+    @Setup
+    public void setUp() throws ParseException {
+        board = BenchmarkPositions.get(positionName);
+
+        List<Move> moves = board.getLegalMoves();
+        firstMove = moves.get(0);
+        firstEncodedMove = firstMove.encodeWithFlags();
+    }
+
+    @Benchmark
+    public List<Move> getLegalMoves() {
+        board.doMove(firstEncodedMove);
+        List<Move> moves = board.getLegalMoves();
+        board.undoMove();
+        return moves;
+    }
+
+    @Benchmark
+    public int generateLegalMoves() {
+        board.doMove(firstEncodedMove);
+        final int numMoves = board.generateLegalMoves(moveBuffer, 0);
+        board.undoMove();
+        return numMoves;
+    }
+
+    @Benchmark
+    public void doMoveAndUndoMove() {
+        board.doMove(firstEncodedMove);
+        board.undoMove();
+    }
+
+    @Benchmark
+    public Board makeMove() {
+        return board.makeMove(firstMove);
+    }
+
+    @Benchmark
+    public void makeEveryLegalMove(Blackhole blackhole) {
+        for (Move move : board.getLegalMoves())
+            blackhole.consume(board.makeMove(move));
+    }
+
+    @Benchmark
+    public int getStaticExchangeEvaluation() {
+        return board.getStaticExchangeEvaluation(firstEncodedMove);
+    }
+}
@@ -0,0 +1,36 @@
+package chessai.chessai.lib;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures computing the Zobrist key from scratch
+ * (<code>Board</code> updates it incrementally, this is only used when a position is set up)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ZobristHashBenchmark {
+
+    @Param({"start", "kiwipete", "endgame"})
+    public String positionName;
+
+    private Board board;
+
+    @Setup
+    public void setUp() throws ParseException {
+        board = BenchmarkPositions.get(positionName);
+    }
+
+    @Benchmark
+    public long computeHash() {
+        return ZobristHash.computeHash(board);
+    }
+
+    @Benchmark
+    public long incrementalKey() {
+        return board.zobristKey();
+    }
+}
@@ -36,4 +36,20 @@ public abstract class ChessEngine {
      */
     public abstract Optional<EvaluatedMove> makeMove(Board board, Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth, BooleanSupplier isCancelled);
 
+    /**
+     * Determines the best move in a given position, in the time given by a time manager.
+     * By default, the search is simply cancelled at the hard limit.
+     *
+     * @param board                  the position
+     * @param callbackAfterEachDepth a callback that is called after some iterations / time that consumes the best move thus far
+     * @param timeManager            decides how long the engine can search
+     * @return the best move if there is any (and optionally the eval of that move)
+     */
+    public Optional<EvaluatedMove> makeMove(Board board, Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth, TimeManager timeManager) {
+
+        timeManager.start();
+
+        return makeMove(board, callbackAfterEachDepth, timeManager::isHardLimitReached);
+    }
+
 }
@@ -0,0 +1,137 @@
+package chessai.chessai.engine;
+
+/**
+ * Allocates the time of a move from the clock of the engine.
+ * <p>
+ * The soft limit is an equal share of the remaining time (for the moves until the next time control,
+ * or a guess of the remaining moves) plus most of the increment. The hard limit lets a search run longer than that,
+ * but never uses up a large part of the remaining time.
+ * <p>
+ * A new iteration is not started if it probably would not finish before the soft limit (an iteration is
+ * estimated to take a few times longer than the previous one). If the score drops between two iterations,
+ * the soft limit is extended (up to the hard limit), so the engine has time to find a way out.
+ */
+public class ClockTimeManager implements TimeManager {
+
+    /**
+     * If the number of moves until the next time control is unknown, we plan with this many
+     */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    /**
+     * Kept in reserve for everything that is not searching (making the move, the UI, the GUI's lag)
+     */
+    private static final long MOVE_OVERHEAD_MILLIS = 50;
+    /**
+     * Even when the clock is almost out, the engine gets this much time (the search always finishes its first iteration anyway)
+     */
+    private static final long MIN_HARD_LIMIT_MILLIS = 10;
+    /**
+     * The hard limit is at most this many times the soft limit...
+     */
+    private static final int HARD_LIMIT_FACTOR = 4;
+    /**
+     * ...and at most this part of the remaining time
+     */
+    private static final double MAX_PART_OF_REMAINING_TIME = 0.4;
+    /**
+     * The next iteration is estimated to take this many times longer than the previous one
+     */
+    private static final int ITERATION_TIME_GROWTH = 2;
+    /**
+     * If the score drops more than this between two iterations, the soft limit is extended
+     */
+    private static final int SCORE_DROP_THRESHOLD = 30;
+    private static final double SCORE_DROP_EXTENSION = 1.5;
+
+    private final long baseSoftLimitNanos;
+    private final long hardLimitNanos;
+
+    private long softLimitNanos;
+    private long startTime;
+    private long lastIterationEndTime;
+    private boolean hasPreviousEval;
+    private int previousEval;
+
+    /**
+     * @param remainingMillis the time left on the engine's clock
+     * @param incrementMillis the time added to the clock after every move
+     * @param movesToGo       the number of moves until the next time control (0 if the whole game has to be played in the remaining time)
+     */
+    public ClockTimeManager(long remainingMillis, long incrementMillis, int movesToGo) {
+
+        if (remainingMillis < 0 || incrementMillis < 0 || movesToGo < 0)
+            throw new IllegalArgumentException("The time control cannot be negative!");
+
+        final long usableMillis = Math.max(0, remainingMillis - MOVE_OVERHEAD_MILLIS);
+        final int plannedMoves = movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO;
+
+        final long softLimitMillis = Math.min(usableMillis, usableMillis / plannedMoves + incrementMillis * 3 / 4);
+        final long hardLimitMillis = Math.max(MIN_HARD_LIMIT_MILLIS, Math.max(softLimitMillis,
+                Math.min(softLimitMillis * HARD_LIMIT_FACTOR, (long) (usableMillis * MAX_PART_OF_REMAINING_TIME))));
+
+        this.baseSoftLimitNanos = softLimitMillis * 1_000_000;
+        this.hardLimitNanos = hardLimitMillis * 1_000_000;
+        this.softLimitNanos = baseSoftLimitNanos;
+    }
+
+    private ClockTimeManager(long moveTimeMillis) {
+        this.baseSoftLimitNanos = moveTimeMillis * 1_000_000;
+        this.hardLimitNanos = Math.max(MIN_HARD_LIMIT_MILLIS, moveTimeMillis) * 1_000_000;
+        this.softLimitNanos = baseSoftLimitNanos;
+    }
+
+    /**
+     * Creates a time manager that gives the same time to every move (there is no clock)
+     *
+     * @param moveTimeMillis the time of a move (both the soft and the hard limit)
+     * @return the time manager
+     */
+    public static ClockTimeManager forMoveTime(long moveTimeMillis) {
+
+        if (moveTimeMillis < 0)
+            throw new IllegalArgumentException("The time of a move cannot be negative!");
+
+        return new ClockTimeManager(moveTimeMillis);
+    }
+
+    @Override
+    public void start() {
+        startTime = System.nanoTime();
+        lastIterationEndTime = startTime;
+        softLimitNanos = baseSoftLimitNanos;
+        hasPreviousEval = false;
+    }
+
+    @Override
+    public boolean isHardLimitReached() {
+        return System.nanoTime() - startTime >= hardLimitNanos;
+    }
+
+    @Override
+    public boolean shouldStartNextIteration(int completedDepth, int eval) {
+
+        final long now = System.nanoTime();
+        final long iterationTime = now - lastIterationEndTime;
+
+        lastIterationEndTime = now;
+
+        // something went wrong with our best line, so we take some more time to look for a better one
+        if (hasPreviousEval && (long) eval < (long) previousEval - SCORE_DROP_THRESHOLD)
+            softLimitNanos = Math.min(hardLimitNanos, (long) (softLimitNanos * SCORE_DROP_EXTENSION));
+
+        hasPreviousEval = true;
+        previousEval = eval;
+
+        final long elapsed = now - startTime;
+
+        return elapsed + iterationTime * ITERATION_TIME_GROWTH <= softLimitNanos;
+    }
+
+    public long getSoftLimitMillis() {
+        return softLimitNanos / 1_000_000;
+    }
+
+    public long getHardLimitMillis() {
+        return hardLimitNanos / 1_000_000;
+    }
+}
@@ -7,8 +7,13 @@ import java.util.Optional;
 /**
  * A move with optional evaluation attached to it.
  *
- * @param move The move
- * @param eval The evaluation (if it is set)
+ * @param move       The move
+ * @param eval       The evaluation (if it is set)
+ * @param statistics The counters of the search that found the move (if the engine collects them)
  */
-public record EvaluatedMove(Move move, Optional<Integer> eval) {
+public record EvaluatedMove(Move move, Optional<Integer> eval, Optional<SearchStatistics> statistics) {
+
+    public EvaluatedMove(Move move, Optional<Integer> eval) {
+        this(move, eval, Optional.empty());
+    }
 }
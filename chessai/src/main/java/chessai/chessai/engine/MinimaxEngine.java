@@ -1,104 +1,199 @@
 package chessai.chessai.engine;
 
 import chessai.chessai.lib.*;
-import chessai.chessai.lib.pieces.*;
 
-import java.security.InvalidKeyException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
- * A chess engine that uses the minimax algorithm to determine the best move.
- * It uses alpha-beta pruning and delta-pruning alongside a transposition table and the so-called historical heuristic to
- * speed up move generation.
+ * A chess engine that uses the minimax algorithm (in its negamax form, with principal variation search) to determine the best move.
+ * It uses alpha-beta pruning alongside a transposition table, and it orders the moves with the killer, countermove
+ * and history heuristics, so the cutoffs come early.
+ * The leaves are resolved by a quiescence search (captures and promotions only, with delta pruning).
+ * The search is selective: it uses null move pruning, late move reductions and futility pruning near the leaves,
+ * which can be switched off with <code>SearchOptions</code>. Checks and singular moves (the move of the transposition
+ * table when every other move is clearly worse) are extended, and lines that cannot beat a known mate are cut off
+ * (mate distance pruning).
  * It also uses iterative deepening with principal variation saved, so the move ordering is better at the next iteration.
+ * <p>
+ * With more than one thread, it uses Lazy SMP: helper engines search the same position in parallel and share
+ * the transposition table, so the main thread finds more results in the table and can search deeper.
  */
 public class MinimaxEngine extends ChessEngine {
 
-	private static final float POSITION_MAP_WEIGHT = 10f;
-	private static final float ATTACK_SQUARE_WEIGHT = 5f;
-	private static final int PAWN_VALUE = 100;
-	private static final int KNIGHT_VALUE = 300;
-	private static final int BISHOP_VALUE = 320;
-	private static final int ROOK_VALUE = 500;
-	private static final int QUEEN_VALUE = 900;
-	// note: all of these maps are for white (for black, we look at them from the other side)
-	private static final int[] PAWN_POSITION_MAP = new int[]{
-			0, 0, 0, 0, 0, 0, 0, 0,
-			60, 60, 60, 60, 60, 60, 60, 60,
-			50, 50, 50, 55, 55, 50, 50, 50,
-			35, 40, 40, 50, 50, 40, 40, 35,
-			20, 20, 30, 45, 45, 30, 20, 20,
-			10, 15, 20, 15, 15, 20, 15, 10,
-			20, 20, 10, 10, 10, 10, 20, 20,
-			0, 0, 0, 0, 0, 0, 0, 0
-	};
-	private static final int[] KNIGHT_POSITION_MAP = new int[]{
-			10, 10, 10, 10, 10, 10, 10, 10,
-			10, 30, 30, 30, 30, 30, 30, 10,
-			10, 30, 40, 40, 40, 40, 30, 10,
-			10, 30, 40, 50, 50, 40, 30, 10,
-			10, 30, 40, 50, 50, 40, 30, 10,
-			10, 30, 40, 40, 40, 40, 30, 10,
-			10, 30, 30, 30, 30, 30, 30, 10,
-			10, 10, 10, 10, 10, 10, 10, 10
-	};
-	private static final int[] BISHOP_POSITION_MAP = new int[]{
-			20, 10, 10, 10, 10, 10, 10, 20,
-			10, 20, 30, 30, 30, 30, 20, 10,
-			10, 30, 40, 40, 40, 40, 30, 10,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			20, 30, 40, 45, 45, 40, 30, 20,
-			20, 50, 30, 30, 30, 30, 40, 20,
-			20, 10, 10, 10, 10, 10, 10, 20
-	};
-	private static final int[] ROOK_POSITION_MAP = new int[]{
-			40, 45, 45, 45, 45, 45, 45, 40,
-			50, 50, 50, 60, 60, 50, 50, 50,
-			20, 30, 40, 40, 40, 40, 30, 20,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			10, 30, 40, 45, 45, 40, 30, 10,
-			10, 10, 20, 30, 30, 20, 10, 10,
-			20, 20, 30, 40, 40, 30, 20, 20
-	};
-	private static final int[] QUEEN_POSITION_MAP = new int[]{
-			40, 45, 45, 45, 45, 45, 45, 40,
-			50, 50, 50, 60, 60, 50, 50, 50,
-			20, 30, 40, 40, 40, 40, 30, 20,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			10, 40, 45, 50, 50, 45, 40, 10,
-			10, 30, 40, 45, 45, 40, 30, 10,
-			10, 10, 20, 40, 40, 20, 10, 10,
-			20, 20, 30, 40, 40, 30, 20, 20
-	};
-	private static final int[] KING_POSITION_MAP = new int[]{
-			0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0,
-			0, 0, 0, 0, 0, 0, 0, 0,
-			20, 20, 10, 10, 10, 10, 20, 20,
-			30, 30, 10, 10, 10, 10, 30, 30,
-	};
-	private static final int MAX_ADDITIONAL_DEPTH_FOR_CAPTURES = 2; // has to be lower than the max add. depth
-	private static final int MAX_ADDITIONAL_DEPTH = 2;
+	/**
+	 * The static eval gets this much for every square that white attacks and black does not (and loses it the other way round)
+	 */
+	private static final int ATTACK_SQUARE_WEIGHT = 5;
+	/**
+	 * In quiescence search, a capture is skipped if winning the captured piece and this much more would still not raise alpha
+	 */
+	private static final int DELTA_PRUNING_MARGIN = 200;
+	/**
+	 * The bound of the scores (see <code>Score</code>)
+	 */
+	private static final int INFINITY = Score.INFINITY;
+	/**
+	 * The half-width of the first aspiration window (it is doubled on every fail)
+	 */
+	private static final int ASPIRATION_WINDOW_SIZE = 50;
+	/**
+	 * The search does not go deeper than this many plies from the root (with the extensions and the quiescence search)
+	 */
+	private static final int MAX_PLY = 128;
+	/*
+	 * the ordering scores of the kinds of moves, the moves of a kind are ordered by what is added to the score of the kind
+	 */
+	private static final int TRANSPOSITION_TABLE_MOVE_SCORE = 1 << 30;
+	private static final int PRINCIPAL_VARIATION_MOVE_SCORE = 1 << 29;
+	private static final int PROMOTION_SCORE = 1 << 26;
+	private static final int GOOD_CAPTURE_SCORE = 1 << 25;
+	private static final int KILLER_MOVE_SCORE = 1 << 24;
+	private static final int COUNTERMOVE_SCORE = KILLER_MOVE_SCORE - 2;
+	private static final int BAD_CAPTURE_SCORE = -(1 << 25);
+	/**
+	 * The bound of the history scores (the quiet moves without a killer or countermove score are ordered by these)
+	 */
+	private static final int MAX_HISTORY = 1 << 14;
+	/**
+	 * Null move pruning is only tried at least this far from the leaves
+	 */
+	private static final int NULL_MOVE_PRUNING_MIN_DEPTH = 3;
+	/**
+	 * Reverse futility pruning and futility pruning are only done at most this far from the leaves
+	 */
+	private static final int FUTILITY_PRUNING_MAX_DEPTH = 3;
+	/**
+	 * A node is cut off if its static eval is above beta by this much for every ply of depth
+	 */
+	private static final int REVERSE_FUTILITY_MARGIN = 120;
+	/**
+	 * The quiet moves are skipped if the static eval is below alpha by this much for every ply of depth
+	 */
+	private static final int FUTILITY_MARGIN = 150;
+	/**
+	 * Late move reduction only reduces moves after this many searched moves
+	 */
+	private static final int LATE_MOVE_REDUCTION_MIN_MOVES = 3;
+	/**
+	 * Late move reduction is only done at least this far from the leaves
+	 */
+	private static final int LATE_MOVE_REDUCTION_MIN_DEPTH = 3;
+	/**
+	 * The late move reductions by depth and by the number of searched moves (they grow with the logarithm of both)
+	 */
+	private static final int[][] LATE_MOVE_REDUCTIONS = createLateMoveReductions();
+	/**
+	 * Singular extension is only tried at least this far from the leaves
+	 */
+	private static final int SINGULAR_EXTENSION_MIN_DEPTH = 6;
+	/**
+	 * The entry of the transposition table must be at most this much shallower than the node for singular extension
+	 */
+	private static final int SINGULAR_EXTENSION_MAX_DEPTH_DIFFERENCE = 3;
+	/**
+	 * The move of the transposition table is singular if every other move is below its score by this much for every ply of depth
+	 */
+	private static final int SINGULAR_EXTENSION_MARGIN = 3;
 	private final int maxDepth;
-	private final int pvTableLength;
 	private final TranspositionTable transpositionTable;
-	private final int[][] historicalBestMovesCount;
 	/**
+	 * The butterfly history of the quiet moves by color, from and to square. A move gains if it causes a beta cutoff,
+	 * and loses if it was searched before the move that did. The scores are kept between
+	 * <code>-MAX_HISTORY</code> and <code>MAX_HISTORY</code> by gravity (a change is smaller the closer the score is
+	 * to the bound in its direction), and they are halved before every search, so the old moves fade out.
+	 */
+	private final int[][][] history = new int[2][64][64];
+	/**
+	 * The last two quiet moves that caused a beta cutoff at each ply
+	 */
+	private final int[][] killerMoves = new int[MAX_PLY][2];
+	/**
+	 * The last quiet move that refuted a move, by the from and to square of the refuted move
+	 */
+	private final int[][] counterMoves = new int[64][64];
+	/**
+	 * The moves that lead from the root to the current node (for the countermove heuristic)
+	 */
+	private final int[] searchedMoves = new int[MAX_PLY];
+	/**
+	 * The move that is left out of the search of a node by ply (singular extension), or <code>NO_MOVE</code>
+	 */
+	private final int[] excludedMoves = new int[MAX_PLY];
+	/**
+	 * The move pickers of the plies (below the root)
+	 */
+	private final MovePicker[] movePickers = createMovePickers();
+	/**
+	 * The encoded principal variations of the nodes, the row of a node starts with its best move
+	 *
 	 * @implSpec <a href="https://www.chessprogramming.org/Triangular_PV-Table">chess programming wiki page</a>
 	 */
-	private Move[][] pvTable;
-	private Move[][] prevPvTable;
-	private int currentMaxDepth;
+	private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+	/**
+	 * The number of moves in the rows of <code>pvTable</code>
+	 */
+	private final int[] pvLength = new int[MAX_PLY];
+	/**
+	 * The encoded principal variation of the last finished iteration (<code>NO_MOVE</code> after its end)
+	 */
+	private final int[] previousPrincipalVariation = new int[MAX_PLY];
+	private final SearchOptions searchOptions;
+	/**
+	 * The engines that search in the other threads (empty if the engine is single-threaded or is a helper itself)
+	 */
+	private final MinimaxEngine[] helperEngines;
+	/**
+	 * 0 for the main engine, the helpers are numbered from 1
+	 */
+	private final int helperIndex;
+	/**
+	 * Tells the engine to abandon its search (the results of an abandoned search are thrown away)
+	 */
+	private BooleanSupplier stopSignal;
+	/**
+	 * The score of the last iteration (for the side to move), the aspiration window is centred on this
+	 */
+	private int previousIterationEval;
+	/**
+	 * The depth of the current iteration, the extensions stop at twice this many plies from the root
+	 */
+	private int iterationDepth;
+	/**
+	 * The encoded moves of the quiescence search, every ply has its own <code>Board.MAX_LEGAL_MOVES</code> long part,
+	 * so generating moves does not allocate anything
+	 */
+	private final int[] moveStack = new int[MAX_PLY * Board.MAX_LEGAL_MOVES];
+	/**
+	 * The ordering scores of the moves in <code>moveStack</code>
+	 */
+	private final int[] moveScoreStack = new int[MAX_PLY * Board.MAX_LEGAL_MOVES];
+	/*
+	 * the counters of the current search (see SearchStatistics)
+	 */
+	private long searchStartTime;
+	private int selectiveDepth;
+	private long nodes;
+	private long quiescenceNodes;
+	private long transpositionTableProbes;
+	private long transpositionTableHits;
+	private long transpositionTableCutoffs;
+	private long betaCutoffs;
+	private long firstMoveBetaCutoffs;
+
+	/**
+	 * The result of the search at the root
+	 *
+	 * @param move the best move
+	 * @param eval the score of the move for the side to move
+	 */
+	private record RootResult(Move move, int eval) {
+	}
 
 	/**
 	 * Creates a new minimax engine
@@ -118,31 +213,290 @@ public class MinimaxEngine extends ChessEngine {
 	 *                                          not to use more RAM than we want)
 	 */
 	public MinimaxEngine(int maxDepth, int transpositionTableCapacityInBytes) {
+		this(maxDepth, transpositionTableCapacityInBytes, 1);
+	}
+
+	/**
+	 * Creates a new minimax engine
+	 *
+	 * @param maxDepth                          the max depth that the engine searches
+	 * @param transpositionTableCapacityInBytes the size of the transposition table (which is allocated as an array
+	 *                                          not to use more RAM than we want)
+	 * @param numThreads                        the number of threads that search in parallel (Lazy SMP)
+	 */
+	public MinimaxEngine(int maxDepth, int transpositionTableCapacityInBytes, int numThreads) {
+		this(maxDepth, transpositionTableCapacityInBytes, numThreads, SearchOptions.DEFAULT);
+	}
+
+	/**
+	 * Creates a new minimax engine
+	 *
+	 * @param maxDepth                          the max depth that the engine searches
+	 * @param transpositionTableCapacityInBytes the size of the transposition table (which is allocated as an array
+	 *                                          not to use more RAM than we want)
+	 * @param numThreads                        the number of threads that search in parallel (Lazy SMP)
+	 * @param searchOptions                     the selective techniques the search uses
+	 */
+	public MinimaxEngine(int maxDepth, int transpositionTableCapacityInBytes, int numThreads, SearchOptions searchOptions) {
+
+		if (numThreads < 1)
+			throw new IllegalArgumentException("The engine needs at least one thread!");
+
+		if (maxDepth >= MAX_PLY)
+			throw new IllegalArgumentException("The max depth must be less than " + MAX_PLY + "!");
+
 		this.maxDepth = maxDepth;
-		this.pvTableLength = maxDepth + MAX_ADDITIONAL_DEPTH + 1;
-		this.transpositionTable = new TranspositionTable(transpositionTableCapacityInBytes);
-		historicalBestMovesCount = new int[64][64];
+		this.transpositionTable = numThreads > 1
+				? new SharedTranspositionTable(transpositionTableCapacityInBytes)
+				: new TranspositionTable(transpositionTableCapacityInBytes);
+		this.searchOptions = searchOptions;
+		this.helperIndex = 0;
+		this.helperEngines = new MinimaxEngine[numThreads - 1];
+
+		for (int i = 0; i < helperEngines.length; i++)
+			helperEngines[i] = new MinimaxEngine(maxDepth, transpositionTable, searchOptions, i + 1);
+	}
+
+	/**
+	 * Creates a helper engine for Lazy SMP
+	 *
+	 * @param maxDepth           the max depth that the engine searches
+	 * @param transpositionTable the table shared with the main engine
+	 * @param searchOptions      the selective techniques of the main engine
+	 * @param helperIndex        the index of the helper (starting from 1)
+	 */
+	private MinimaxEngine(int maxDepth, TranspositionTable transpositionTable, SearchOptions searchOptions, int helperIndex) {
+		this.maxDepth = maxDepth;
+		this.transpositionTable = transpositionTable;
+		this.searchOptions = searchOptions;
+		this.helperIndex = helperIndex;
+		this.helperEngines = new MinimaxEngine[0];
 	}
 
 	@Override
 	public Optional<EvaluatedMove> makeMove(Board board, Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth, BooleanSupplier isCancelled) {
+		return searchWithIterativeDeepening(board, callbackAfterEachDepth, isCancelled, null);
+	}
+
+	/**
+	 * Searches until the time manager's hard limit, but does not start an iteration that would end after the soft limit
+	 */
+	@Override
+	public Optional<EvaluatedMove> makeMove(Board board, Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth, TimeManager timeManager) {
+
+		timeManager.start();
+
+		return searchWithIterativeDeepening(board, callbackAfterEachDepth, timeManager::isHardLimitReached, timeManager);
+	}
+
+	/**
+	 * Searches one ply deeper in every iteration, until the max depth or until it is cancelled.
+	 * If an iteration is cancelled, the result of the last finished one is returned.
+	 *
+	 * @param timeManager decides whether there is time for the next iteration (or null)
+	 */
+	private Optional<EvaluatedMove> searchWithIterativeDeepening(Board board,
+	                                                             Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth,
+	                                                             BooleanSupplier isCancelled,
+	                                                             TimeManager timeManager) {
 
 		Optional<EvaluatedMove> bestMove = Optional.empty();
 
-		for (int i = 1; i <= maxDepth && !isCancelled.getAsBoolean(); i++) {
-			transpositionTable.clear();
-			currentMaxDepth = i;
-			bestMove = search(board, i, isCancelled);
-			if (!isCancelled.getAsBoolean()) {
+		// the search makes and takes back moves in place, so we must not touch the caller's board
+		Board searchBoard = new Board(board);
+
+		// the table is kept between iterations and moves, the entries of earlier moves are just replaced first
+		transpositionTable.incrementAge();
+
+		resetStatistics();
+		prepareForNewSearch();
+
+		AtomicBoolean isMainSearchDone = new AtomicBoolean(false);
+
+		List<Thread> helperThreads = startHelpers(searchBoard, () -> isMainSearchDone.get() || isCancelled.getAsBoolean());
+
+		try {
+			for (int i = 1; i <= maxDepth; i++) {
+
+				// the first iteration takes almost no time, and without it there would be no move at all,
+				// so it is finished even if the time is already up
+				final BooleanSupplier isIterationCancelled = i == 1 ? () -> false : isCancelled;
+
+				if (isIterationCancelled.getAsBoolean())
+					break;
+
+				stopSignal = isIterationCancelled;
+
+				Optional<EvaluatedMove> result = search(searchBoard, i, isIterationCancelled);
+
+				// the unfinished iteration is thrown away, we keep the result of the last finished one
+				if (isIterationCancelled.getAsBoolean())
+					break;
+
+				bestMove = result;
 				callbackAfterEachDepth.accept(bestMove);
+
+				if (timeManager != null && !timeManager.shouldStartNextIteration(i, previousIterationEval))
+					break;
 			}
+		} finally {
+			stopSignal = null;
+			isMainSearchDone.set(true);
+			joinHelpers(helperThreads);
 		}
 
 		return bestMove;
 	}
 
 	/**
-	 * Initiates a search at <code>depth</code> depth
+	 * Forgets the principal variation and the killer moves of the last position and ages the history,
+	 * the tables themselves are kept, so nothing is reallocated between searches
+	 */
+	private void prepareForNewSearch() {
+
+		pvLength[0] = 0;
+
+		Arrays.fill(excludedMoves, TranspositionTable.NO_MOVE);
+
+		for (int[] killerMovesOfPly : killerMoves)
+			Arrays.fill(killerMovesOfPly, TranspositionTable.NO_MOVE);
+
+		for (int[][] historyOfColor : history) {
+			for (int[] historyOfSquare : historyOfColor) {
+				for (int i = 0; i < historyOfSquare.length; i++)
+					historyOfSquare[i] /= 2;
+			}
+		}
+	}
+
+	/**
+	 * Resets the counters of this engine and of its helpers (before the helpers are started)
+	 */
+	private void resetStatistics() {
+
+		for (MinimaxEngine helper : helperEngines)
+			helper.resetStatistics();
+
+		searchStartTime = System.nanoTime();
+		selectiveDepth = 0;
+		nodes = 0;
+		quiescenceNodes = 0;
+		transpositionTableProbes = 0;
+		transpositionTableHits = 0;
+		transpositionTableCutoffs = 0;
+		betaCutoffs = 0;
+		firstMoveBetaCutoffs = 0;
+	}
+
+	/**
+	 * Adds up the counters of this engine and of its helpers. The helpers are still running,
+	 * so their counters are read without synchronization, which is good enough for statistics.
+	 *
+	 * @param depth the depth of the finished iteration
+	 * @return the counters of the search so far
+	 */
+	private SearchStatistics getStatistics(int depth) {
+
+		int totalSelectiveDepth = selectiveDepth;
+		long totalNodes = nodes;
+		long totalQuiescenceNodes = quiescenceNodes;
+		long totalTranspositionTableProbes = transpositionTableProbes;
+		long totalTranspositionTableHits = transpositionTableHits;
+		long totalTranspositionTableCutoffs = transpositionTableCutoffs;
+		long totalBetaCutoffs = betaCutoffs;
+		long totalFirstMoveBetaCutoffs = firstMoveBetaCutoffs;
+
+		for (MinimaxEngine helper : helperEngines) {
+			totalSelectiveDepth = Math.max(totalSelectiveDepth, helper.selectiveDepth);
+			totalNodes += helper.nodes;
+			totalQuiescenceNodes += helper.quiescenceNodes;
+			totalTranspositionTableProbes += helper.transpositionTableProbes;
+			totalTranspositionTableHits += helper.transpositionTableHits;
+			totalTranspositionTableCutoffs += helper.transpositionTableCutoffs;
+			totalBetaCutoffs += helper.betaCutoffs;
+			totalFirstMoveBetaCutoffs += helper.firstMoveBetaCutoffs;
+		}
+
+		return new SearchStatistics(depth,
+				totalSelectiveDepth,
+				totalNodes,
+				totalQuiescenceNodes,
+				totalTranspositionTableProbes,
+				totalTranspositionTableHits,
+				totalTranspositionTableCutoffs,
+				totalBetaCutoffs,
+				totalFirstMoveBetaCutoffs,
+				System.nanoTime() - searchStartTime);
+	}
+
+	/**
+	 * Starts the helper engines (if there are any) in their own threads
+	 *
+	 * @param board      the position to search (it is copied for every helper)
+	 * @param stopSignal tells the helpers to stop
+	 * @return the started threads
+	 */
+	private List<Thread> startHelpers(Board board, BooleanSupplier stopSignal) {
+
+		List<Thread> threads = new ArrayList<>(helperEngines.length);
+
+		for (MinimaxEngine helper : helperEngines) {
+
+			// the copy is made here, so the helpers do not read the same board concurrently
+			Board helperBoard = new Board(board);
+
+			Thread thread = new Thread(() -> helper.searchAsHelper(helperBoard, stopSignal), "minimax-helper-" + helper.helperIndex);
+			thread.setDaemon(true);
+			thread.start();
+
+			threads.add(thread);
+		}
+
+		return threads;
+	}
+
+	private void joinHelpers(List<Thread> threads) {
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Iterative deepening of a helper engine, its only output is what it writes into the shared transposition table
+	 *
+	 * @param board      the position (owned by this helper)
+	 * @param stopSignal tells the helper to stop
+	 */
+	private void searchAsHelper(Board board, BooleanSupplier stopSignal) {
+
+		this.stopSignal = stopSignal;
+
+		prepareForNewSearch();
+
+		// every other helper is one ply ahead, so the threads are not all searching the same depth at the same time
+		for (int i = 1 + helperIndex % 2; i <= maxDepth && !stopSignal.getAsBoolean(); i++) {
+			search(board, i, stopSignal);
+		}
+
+		this.stopSignal = null;
+	}
+
+	/**
+	 * @return true if the search is no longer needed (it was cancelled, or this is a helper and the main search is done)
+	 */
+	private boolean shouldStop() {
+		return stopSignal != null && stopSignal.getAsBoolean();
+	}
+
+	/**
+	 * Initiates a search at <code>depth</code> depth.
+	 * It starts with an aspiration window around the score of the previous iteration, and if the score falls outside
+	 * of it, the window is widened and the position is searched again.
 	 *
 	 * @param board       the position of the root
 	 * @param depth       the max depth of the search
@@ -151,397 +505,1087 @@ public class MinimaxEngine extends ChessEngine {
 	 */
 	private Optional<EvaluatedMove> search(Board board, int depth, BooleanSupplier isCancelled) {
 
-		List<Move> possiblyImmutableLegalMoves = board.getLegalMoves();
+		// the moves of the root are the first part of the move stack
+		final int numMoves = board.generateLegalMoves(moveStack, 0);
 
-		if (possiblyImmutableLegalMoves.isEmpty())
+		if (numMoves == 0)
 			return Optional.empty();
 
-		if (possiblyImmutableLegalMoves.size() == 1)
-			return Optional.of(new EvaluatedMove(possiblyImmutableLegalMoves.get(0), Optional.empty()));
-//
-//		ArrayList<Board> boards = new ArrayList<>(possiblyImmutableLegalMoves.size());
-//
-//		possiblyImmutableLegalMoves.forEach(move -> boards.add(board.makeMove(move)));
+		if (numMoves == 1)
+			return Optional.of(new EvaluatedMove(Move.decode(moveStack[0]), Optional.empty(), Optional.of(getStatistics(depth))));
 
-//		List<Move> possibleLegalMoves = board.withIsCheckSet(possiblyImmutableLegalMoves, boards);
-		prevPvTable = pvTable != null ? pvTable : new Move[pvTableLength][pvTableLength];
-		pvTable = new Move[pvTableLength][pvTableLength];
+		iterationDepth = depth;
 
-		List<Move> possibleLegalMoves = new ArrayList<>(possiblyImmutableLegalMoves);
+		// the moves of the last iteration's principal variation are tried first at their plies
+		Arrays.fill(previousPrincipalVariation, TranspositionTable.NO_MOVE);
+		System.arraycopy(pvTable[0], 0, previousPrincipalVariation, 0, pvLength[0]);
 
-		sortMovesInPlace(possibleLegalMoves, 0, board);
+		scoreMoves(board, 0, numMoves, 0, getBestMoveFromTranspositionTable(board));
 
-		int indexOfBestMove = 0;
-		int bestEval = board.colorToMove == PieceColor.WHITE ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-
-		int alpha = Integer.MIN_VALUE;
-		int beta = Integer.MAX_VALUE;
-
-		int toIndexOfBestMove = 0;
-		int fromIndexOfBestMove = 0;
-
-		for (int i = 0; i < possibleLegalMoves.size() && !isCancelled.getAsBoolean(); i++) {
-			Move move = possibleLegalMoves.get(i);
-
-			int currentEval = evaluateState(
-//					boards.get(i),
-					board.makeMove(possibleLegalMoves.get(i)),
-					1,
-					0,
-					board.colorToMove == PieceColor.BLACK,
-					alpha,
-					beta
-			);
-
-			if (depth == maxDepth)
-				System.out.printf("%s --> %d%n", move.toShortString(), currentEval);
-
-			if (board.colorToMove == PieceColor.WHITE) {
-
-				if (bestEval < currentEval) {
-					bestEval = currentEval;
-					indexOfBestMove = i;
-					toIndexOfBestMove = move.toIndex();
-					fromIndexOfBestMove = move.fromIndex();
-					pvTable[0][0] = move;
-					System.arraycopy(pvTable[1], 0, pvTable[0], 1, pvTableLength - 1);
-				}
+		// the root moves are searched many times (in the re-searches), so they are sorted at once
+		for (int i = 0; i < numMoves; i++)
+			pickNextMove(i, numMoves);
 
-				if (bestEval > alpha) {
-					alpha = bestEval;
-				}
+		// the helpers try the moves (after the best one) in different orders, so they search different parts of the tree
+		for (int i = 0; i < helperIndex % (numMoves - 1); i++) {
+			final int lastMove = moveStack[numMoves - 1];
+			System.arraycopy(moveStack, 1, moveStack, 2, numMoves - 2);
+			moveStack[1] = lastMove;
+		}
+
+		// mate scores are not stable between iterations, so we do not centre a window on them
+		final boolean useAspirationWindow = depth > 1 && !Score.isMate(previousIterationEval);
+
+		int windowSize = ASPIRATION_WINDOW_SIZE;
+		int alpha = useAspirationWindow ? Math.max(-INFINITY, previousIterationEval - windowSize) : -INFINITY;
+		int beta = useAspirationWindow ? Math.min(INFINITY, previousIterationEval + windowSize) : INFINITY;
+
+		RootResult result;
+
+		while (true) {
+
+			result = searchRoot(board, numMoves, depth, alpha, beta, isCancelled);
+
+			// the score of an abandoned search is meaningless, so we do not remember it
+			if (isCancelled.getAsBoolean())
+				return Optional.of(new EvaluatedMove(result.move(), Optional.empty()));
+
+			if (result.eval() <= alpha && alpha > -INFINITY) {
+				windowSize *= 2;
+				alpha = Math.max(-INFINITY, result.eval() - windowSize);
+			} else if (result.eval() >= beta && beta < INFINITY) {
+				windowSize *= 2;
+				beta = Math.min(INFINITY, result.eval() + windowSize);
 			} else {
+				break;
+			}
+		}
 
-				if (bestEval > currentEval) {
-					bestEval = currentEval;
-					indexOfBestMove = i;
-					toIndexOfBestMove = move.toIndex();
-					fromIndexOfBestMove = move.fromIndex();
-					pvTable[0][0] = move;
-					System.arraycopy(pvTable[1], 0, pvTable[0], 1, pvTableLength - 1);
-				}
+		previousIterationEval = result.eval();
 
-				if (bestEval < beta) {
-					beta = bestEval;
-				}
+		// the search works with the score of the side to move, but the eval we report is from white's perspective
+		final int evalForWhite = board.colorToMove == PieceColor.WHITE ? result.eval() : -result.eval();
+
+		return Optional.of(new EvaluatedMove(result.move(), Optional.of(evalForWhite), Optional.of(getStatistics(depth))));
+	}
+
+	/**
+	 * Searches the moves of the root with principal variation search
+	 *
+	 * @param board       the position of the root
+	 * @param numMoves    the number of the ordered legal moves at the start of the move stack
+	 * @param depth       the max depth of the search
+	 * @param alpha       the lower end of the window
+	 * @param beta        the upper end of the window
+	 * @param isCancelled supplies the cancellation token
+	 * @return the best move and its score (for the side to move)
+	 */
+	private RootResult searchRoot(Board board,
+	                              int numMoves,
+	                              int depth,
+	                              int alpha,
+	                              int beta,
+	                              BooleanSupplier isCancelled) {
+
+		nodes++;
+
+		int indexOfBestMove = 0;
+		int bestEval = -INFINITY;
+
+		for (int i = 0; i < numMoves && !isCancelled.getAsBoolean(); i++) {
+			final int move = moveStack[i];
+
+			searchedMoves[0] = move;
+			board.doMove(move);
+
+			final int extension = board.isInCheck() ? getExtension(0) : 0;
+
+			int currentEval = searchChild(board, i == 0, 1, depth - 1 + extension, 0, alpha, beta);
+
+			board.undoMove();
+
+			if (currentEval > bestEval) {
+				bestEval = currentEval;
+				indexOfBestMove = i;
+				pvTable[0][0] = Move.withoutFlags(move);
+				System.arraycopy(pvTable[1], 0, pvTable[0], 1, pvLength[1]);
+				pvLength[0] = pvLength[1] + 1;
 			}
 
-			if (beta <= alpha)
+			if (bestEval > alpha)
+				alpha = bestEval;
+
+			if (alpha >= beta)
 				break;
 		}
 
-		historicalBestMovesCount[fromIndexOfBestMove][toIndexOfBestMove]++;
+		return new RootResult(Move.decode(moveStack[indexOfBestMove]), bestEval);
+	}
+
+	/**
+	 * Searches a child node with principal variation search: the first child gets the full window,
+	 * the others are only checked with a null window whether they are better than alpha, and they are searched again
+	 * with the full window if they are. A reduced child is searched again without the reduction before that.
+	 *
+	 * @param board        the position after the move
+	 * @param isFirstChild whether this is the first (most promising) child
+	 * @param ply          the distance of the child from the root
+	 * @param depth        the depth of the search below the child
+	 * @param reduction    how much shallower the null window search is (late move reduction)
+	 * @param alpha        the alpha of the parent
+	 * @param beta         the beta of the parent
+	 * @return the score of the child from the parent's perspective
+	 */
+	private int searchChild(Board board, boolean isFirstChild, int ply, int depth, int reduction, int alpha, int beta) {
+
+		if (isFirstChild)
+			return -evaluateState(board, ply, depth, -beta, -alpha);
+
+		int eval = -evaluateState(board, ply, depth - reduction, -alpha - 1, -alpha);
 
-		if (!isCancelled.getAsBoolean())
-			System.out.printf("Best move at depth %d + %d: %s (%d)%n", depth, MAX_ADDITIONAL_DEPTH, possibleLegalMoves.get(indexOfBestMove), bestEval);
+		if (eval > alpha && reduction > 0)
+			eval = -evaluateState(board, ply, depth, -alpha - 1, -alpha);
 
-		return Optional.of(new EvaluatedMove(possibleLegalMoves.get(indexOfBestMove), Optional.of(bestEval)));
+		if (eval > alpha && eval < beta)
+			eval = -evaluateState(board, ply, depth, -beta, -alpha);
+
+		return eval;
 	}
 
 	/**
-	 * This is the alpha-beta call that is iteratively called during the search
+	 * This is the negamax alpha-beta call that is iteratively called during the search
 	 *
-	 * @param board              the position
-	 * @param depth              the current depth
-	 * @param additionalDepth    the current additional depth
-	 * @param isMaximizingPlayer determines whether we want to maximize the score or minimize it
-	 * @param alpha              the alpha parameter
-	 * @param beta               the beta parameter
-	 * @return the evaluation of the position
+	 * @param board the position
+	 * @param ply   the distance from the root
+	 * @param depth the depth of the search below this node (the quiescence search starts where it runs out)
+	 * @param alpha the alpha parameter
+	 * @param beta  the beta parameter
+	 * @return the evaluation of the position from the perspective of the side to move
 	 */
 	private int evaluateState(Board board,
+	                          int ply,
 	                          int depth,
-	                          int additionalDepth,
-	                          boolean isMaximizingPlayer,
 	                          int alpha,
 	                          int beta) {
 
-		if (transpositionTable.contains(board)) {
-			try {
-				return transpositionTable.get(board);
-			} catch (InvalidKeyException e) {
-				// we just don't return
-				System.err.println("Invalid key!");
-			}
-		}
+		if (shouldStop())
+			return 0;
 
-		pvTable[depth + additionalDepth] = new Move[pvTableLength];
+		// the row is also emptied if we return early, so the parent does not copy a stale variation
+		pvLength[ply] = 0;
 
-		int staticEval = evaluateOngoingPosition(board);
+		// the tactics at the leaves are resolved by the quiescence search (which also stops the extensions at the end of the stack)
+		if (depth <= 0 || ply >= MAX_PLY - 1)
+			return quiescenceSearch(board, ply, alpha, beta);
 
-		List<Move> possiblyImmutableLegalMoves = board.getLegalMoves();
+		nodes++;
+		selectiveDepth = Math.max(selectiveDepth, ply);
 
-		List<Move> possibleLegalMoves = new ArrayList<>(possiblyImmutableLegalMoves);
+		// mate distance pruning: even mating at the next ply cannot beat a shorter mate that was already found,
+		// and being mated here cannot be worse than a mate that was already avoided
+		alpha = Math.max(alpha, Score.matedIn(ply));
+		beta = Math.min(beta, Score.mateIn(ply + 1));
 
-		sortMovesInPlace(possibleLegalMoves, depth + additionalDepth, board);
+		if (alpha >= beta)
+			return alpha;
 
-		GameState state = board.getState();
+		// checkmate and stalemate are found when there is no move to search, so we do not generate the moves here.
+		// a repetition depends on the path to the position, so it is checked before the table, and it is never stored
+		// (the table is kept between iterations and moves, and the same position can be reached without a cycle)
+		if (board.isDrawByRule())
+			return 0;
+
+		final long key = board.zobristKey();
+		final int originalAlpha = alpha;
+
+		// the search without the excluded move (singular extension) must not use or overwrite the entry of the full node
+		final int excludedMove = excludedMoves[ply];
+		final boolean isExcludedSearch = excludedMove != TranspositionTable.NO_MOVE;
+
+		final long transpositionTableEntry = transpositionTable.probe(key);
+
+		transpositionTableProbes++;
+
+		if (transpositionTableEntry != TranspositionTable.NO_ENTRY)
+			transpositionTableHits++;
+
+		final int transpositionTableEval = transpositionTableEntry != TranspositionTable.NO_ENTRY
+				? Score.fromTranspositionTable(TranspositionTable.getEval(transpositionTableEntry), ply)
+				: 0;
+
+		if (!isExcludedSearch
+				&& transpositionTableEntry != TranspositionTable.NO_ENTRY
+				&& TranspositionTable.getDepth(transpositionTableEntry) >= depth) {
 
-		boolean isFirstMoveInteresting = !possibleLegalMoves.isEmpty()
-				&& (possibleLegalMoves.get(0).isCapture()
-				|| possibleLegalMoves.get(0).promotionPieceType() != null
-				|| possibleLegalMoves.get(0).isCheck());
-
-		if ((
-				state != GameState.PLAYING
-						|| depth >= currentMaxDepth // silent move limit
-		)
-				&& !(
-				isFirstMoveInteresting
-						&& additionalDepth < MAX_ADDITIONAL_DEPTH_FOR_CAPTURES
-						&& state == GameState.PLAYING
-		)
-				// if we are in check, we continue the search
-				&& !(
-				board.isKingInCheck(board.colorToMove)
-						&& additionalDepth < MAX_ADDITIONAL_DEPTH
-						&& state == GameState.PLAYING
-		)
-		) {
-
-			int result = switch (state) {
-				case WHITE_WIN -> Integer.MAX_VALUE - depth - additionalDepth;
-				case BLACK_WIN -> Integer.MIN_VALUE + depth + additionalDepth;
-				case DRAW -> 0;
-				case PLAYING -> staticEval;
+			final boolean isUsable = switch (TranspositionTable.getBound(transpositionTableEntry)) {
+				case TranspositionTable.EXACT -> true;
+				case TranspositionTable.LOWER_BOUND -> transpositionTableEval >= beta;
+				case TranspositionTable.UPPER_BOUND -> transpositionTableEval <= alpha;
+				default -> false;
 			};
 
-			transpositionTable.put(board, result);
+			if (isUsable) {
+				transpositionTableCutoffs++;
+				return transpositionTableEval;
+			}
+		}
 
-			return result;
+		final boolean isInCheck = board.isInCheck();
+
+		// in the nodes outside the principal variation, only whether the score is above beta matters
+		final boolean isPvNode = beta - alpha > 1;
+
+		// the static eval is only needed for the pruning decisions, which are never made in check or in a PV node
+		final int staticEval = isInCheck || isPvNode ? -INFINITY : getStaticEval(board);
+
+		// reverse futility pruning: we are so far above beta that the opponent should not allow this position
+		if (searchOptions.futilityPruning()
+				&& !isInCheck
+				&& !isPvNode
+				&& !isExcludedSearch
+				&& depth <= FUTILITY_PRUNING_MAX_DEPTH
+				&& !Score.isMate(beta)
+				&& staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta)
+			return staticEval;
+
+		// null move pruning: if we are still above beta after passing the turn, a real move would be too
+		// (without pieces, passing can be better than every move (zugzwang), so we do not try it then)
+		if (searchOptions.nullMovePruning()
+				&& !isInCheck
+				&& !isPvNode
+				&& !isExcludedSearch
+				&& depth >= NULL_MOVE_PRUNING_MIN_DEPTH
+				&& staticEval >= beta
+				&& !Score.isMate(beta)
+				&& searchedMoves[ply - 1] != TranspositionTable.NO_MOVE
+				&& board.hasNonPawnMaterial(board.colorToMove)) {
+
+			searchedMoves[ply] = TranspositionTable.NO_MOVE;
+			board.doNullMove();
+
+			final int nullMoveEval = -evaluateState(board, ply + 1, depth - 1 - getNullMoveReduction(depth), -beta, -beta + 1);
+
+			board.undoMove();
+
+			if (shouldStop())
+				return 0;
+
+			// a mate found after passing is not a real mate
+			if (nullMoveEval >= beta)
+				return Score.isMate(nullMoveEval) ? beta : nullMoveEval;
 		}
 
-		if (possibleLegalMoves.isEmpty())
-			throw new IllegalStateException("There has to be at least one legal move!");
+		final int transpositionTableMove = transpositionTableEntry != TranspositionTable.NO_ENTRY
+				? TranspositionTable.getBestMove(transpositionTableEntry)
+				: TranspositionTable.NO_MOVE;
 
-		int bestEval = isMaximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		final int singularMove = isSingular(board, ply, depth, transpositionTableEntry, transpositionTableEval)
+				? transpositionTableMove
+				: TranspositionTable.NO_MOVE;
 
-		int fromIndexOfBestMove = 0;
-		int toIndexOfBestMove = 0;
+		if (shouldStop())
+			return 0;
 
-		for (Move move : possibleLegalMoves) {
+		// futility pruning: the quiet moves cannot raise the static eval enough to reach alpha
+		final boolean canSkipQuietMoves = searchOptions.futilityPruning()
+				&& !isInCheck
+				&& !isPvNode
+				&& depth <= FUTILITY_PRUNING_MAX_DEPTH
+				&& !Score.isMate(alpha)
+				&& staticEval + FUTILITY_MARGIN * depth <= alpha;
 
-			int currentEval = evaluateState(
-					board.makeMove(move),
-					Math.min(currentMaxDepth, depth + 1),
-					depth < currentMaxDepth ? 0 : additionalDepth + 1,
-					!isMaximizingPlayer,
-					alpha,
-					beta
-			);
+		final MovePicker movePicker = movePickers[ply];
 
-			if (isMaximizingPlayer) {
-				if (currentEval > bestEval) {
-					bestEval = currentEval;
+		movePicker.start(board, transpositionTableMove, excludedMove);
 
-					pvTable[depth + additionalDepth][0] = move;
-					System.arraycopy(pvTable[depth + additionalDepth + 1],
-							0,
-							pvTable[depth + additionalDepth],
-							1,
-							pvTableLength - depth - additionalDepth - 1);
+		int bestEval = -INFINITY;
 
-					fromIndexOfBestMove = move.fromIndex();
-					toIndexOfBestMove = move.toIndex();
-				}
+		int bestMove = TranspositionTable.NO_MOVE;
 
-				alpha = Math.max(alpha, bestEval);
-			} else {
-				if (currentEval < bestEval) {
-					bestEval = currentEval;
-
-					pvTable[depth + additionalDepth][0] = move;
-					System.arraycopy(pvTable[depth + additionalDepth + 1],
-							0,
-							pvTable[depth + additionalDepth],
-							1,
-							pvTableLength - depth - additionalDepth - 1);
-
-					fromIndexOfBestMove = move.fromIndex();
-					toIndexOfBestMove = move.toIndex();
-				}
+		int numSearchedMoves = 0;
+
+		for (int move = movePicker.next(); move != TranspositionTable.NO_MOVE; move = movePicker.next()) {
+
+			searchedMoves[ply] = move;
+			board.doMove(move);
+
+			final boolean givesCheck = board.isInCheck();
+
+			if (canSkipQuietMoves && numSearchedMoves > 0 && isQuiet(move) && !givesCheck) {
+				// the move was not searched, so it must not lose history if a later move causes a cutoff
+				movePicker.forgetLastQuietMove();
+				board.undoMove();
+				continue;
+			}
 
-				beta = Math.min(beta, bestEval);
+			// the checks and the only good move are searched one ply deeper, so the forcing lines are seen to their end
+			final int extension = givesCheck || Move.withoutFlags(move) == singularMove
+					? getExtension(ply)
+					: 0;
+
+			// late move reduction: the quiet moves after the first few are unlikely to be the best, so they get a
+			// shallower search first (and if they turn out to be better than alpha, a full one).
+			// the killer moves and the countermove refuted similar positions, so they are not reduced
+			final int reduction = searchOptions.lateMoveReductions()
+					&& numSearchedMoves >= LATE_MOVE_REDUCTION_MIN_MOVES
+					&& depth >= LATE_MOVE_REDUCTION_MIN_DEPTH
+					&& isQuiet(move)
+					&& !movePicker.isLastMoveRefutation()
+					&& !isInCheck
+					&& !givesCheck
+					? getLateMoveReduction(depth, numSearchedMoves, isPvNode)
+					: 0;
+
+			int currentEval = searchChild(board, numSearchedMoves == 0, ply + 1, depth - 1 + extension, reduction, alpha, beta);
+
+			numSearchedMoves++;
+
+			board.undoMove();
+
+			// the result of an abandoned search must not get into the transposition table
+			if (shouldStop())
+				return 0;
+
+			if (currentEval > bestEval) {
+				bestEval = currentEval;
+
+				pvTable[ply][0] = Move.withoutFlags(move);
+				System.arraycopy(pvTable[ply + 1],
+						0,
+						pvTable[ply],
+						1,
+						pvLength[ply + 1]);
+				pvLength[ply] = pvLength[ply + 1] + 1;
+
+				bestMove = move;
 			}
 
-			if (beta <= alpha) {
+			alpha = Math.max(alpha, bestEval);
+
+			if (alpha >= beta) {
+				betaCutoffs++;
+				if (numSearchedMoves == 1)
+					firstMoveBetaCutoffs++;
+
+				if (isQuiet(move))
+					updateQuietMoveOrdering(board, ply, depth, movePicker);
+
 				break;
 			}
 		}
 
-		historicalBestMovesCount[fromIndexOfBestMove][toIndexOfBestMove]++;
+		if (numSearchedMoves == 0) {
+
+			// without the excluded move, there may be no other move, but that is not a mate or a stalemate
+			if (isExcludedSearch)
+				return alpha;
+
+			final int result = getTerminalEval(board.getState(), ply);
+
+			transpositionTable.put(key, Score.toTranspositionTable(result, ply), depth, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+			return result;
+		}
+
+		if (isExcludedSearch)
+			return bestEval;
+
+		final int bound;
+
+		if (bestEval <= originalAlpha)
+			bound = TranspositionTable.UPPER_BOUND;
+		else if (bestEval >= beta)
+			bound = TranspositionTable.LOWER_BOUND;
+		else
+			bound = TranspositionTable.EXACT;
+
+		transpositionTable.put(key, Score.toTranspositionTable(bestEval, ply), depth, bound, Move.withoutFlags(bestMove));
 
 		return bestEval;
 	}
 
 	/**
-	 * Orders moves to speed up alpha-beta search
+	 * Decides whether the move of the transposition table is singular: whether every other move is clearly worse,
+	 * which is checked by a reduced null window search of the node without the move.
+	 * A singular move is extended, because the score of the node depends on it alone.
+	 *
+	 * @param board                   the position
+	 * @param ply                     the distance from the root
+	 * @param depth                   the depth of the search below the node
+	 * @param transpositionTableEntry the entry of the node (or <code>NO_ENTRY</code>)
+	 * @param transpositionTableEval  the eval of the entry (already adjusted to the ply)
+	 * @return whether the move of the entry should be extended
+	 */
+	private boolean isSingular(Board board, int ply, int depth, long transpositionTableEntry, int transpositionTableEval) {
+
+		if (depth < SINGULAR_EXTENSION_MIN_DEPTH
+				|| excludedMoves[ply] != TranspositionTable.NO_MOVE
+				|| transpositionTableEntry == TranspositionTable.NO_ENTRY
+				|| TranspositionTable.getBestMove(transpositionTableEntry) == TranspositionTable.NO_MOVE
+				|| TranspositionTable.getBound(transpositionTableEntry) == TranspositionTable.UPPER_BOUND
+				|| TranspositionTable.getDepth(transpositionTableEntry) < depth - SINGULAR_EXTENSION_MAX_DEPTH_DIFFERENCE
+				|| Score.isMate(transpositionTableEval)
+				|| getExtension(ply) == 0)
+			return false;
+
+		final int singularBeta = transpositionTableEval - SINGULAR_EXTENSION_MARGIN * depth;
+
+		excludedMoves[ply] = TranspositionTable.getBestMove(transpositionTableEntry);
+
+		final int eval = evaluateState(board, ply, (depth - 1) / 2, singularBeta - 1, singularBeta);
+
+		excludedMoves[ply] = TranspositionTable.NO_MOVE;
+
+		return eval < singularBeta;
+	}
+
+	/**
+	 * @param ply the distance of the parent from the root
+	 * @return how much deeper a check or a singular move is searched (the extensions stop at twice the depth of the
+	 * iteration, so an endless series of checks cannot make the search explode)
+	 */
+	private int getExtension(int ply) {
+		return ply < 2 * iterationDepth ? 1 : 0;
+	}
+
+	/**
+	 * @param depth the depth of the node
+	 * @return how much shallower the search after the null move is than a normal child
+	 */
+	private static int getNullMoveReduction(int depth) {
+		return 2 + depth / 4;
+	}
+
+	/**
+	 * @param depth            the depth of the node
+	 * @param numSearchedMoves the number of moves searched before this one
+	 * @param isPvNode         whether the node is in the principal variation (where we reduce less)
+	 * @return how much shallower the first search of the move is (the child is searched at least 1 deep)
+	 */
+	private static int getLateMoveReduction(int depth, int numSearchedMoves, boolean isPvNode) {
+
+		final int reduction = LATE_MOVE_REDUCTIONS[Math.min(depth, 63)][Math.min(numSearchedMoves, 63)] - (isPvNode ? 1 : 0);
+
+		return Math.max(0, Math.min(reduction, depth - 2));
+	}
+
+	private static int[][] createLateMoveReductions() {
+
+		int[][] result = new int[64][64];
+
+		for (int depth = 1; depth < 64; depth++) {
+			for (int moveIndex = 1; moveIndex < 64; moveIndex++)
+				result[depth][moveIndex] = (int) (0.75 + Math.log(depth) * Math.log(moveIndex) / 2.25);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param board the position
+	 * @return the static eval of the position from the perspective of the side to move
+	 */
+	private int getStaticEval(Board board) {
+		return board.colorToMove == PieceColor.WHITE
+				? evaluateOngoingPosition(board)
+				: -evaluateOngoingPosition(board);
+	}
+
+	/**
+	 * Searches only the captures and promotions (or every move if we are in check), until the position is quiet.
+	 * The side to move can also choose not to capture (stand pat), so the static eval is a lower bound.
+	 * Captures that cannot raise alpha even if they win the captured piece for free are skipped (delta pruning).
 	 *
-	 * @param possibleLegalMoves the list of moves
-	 * @param actualDepth        our current depth (depth + additional depth)
-	 * @param board              the position
+	 * @param board the position
+	 * @param ply   the distance from the root
+	 * @param alpha the alpha parameter
+	 * @param beta  the beta parameter
+	 * @return the evaluation of the position from the perspective of the side to move
 	 */
-	private void sortMovesInPlace(List<Move> possibleLegalMoves, int actualDepth, Board board) {
+	private int quiescenceSearch(Board board, int ply, int alpha, int beta) {
+
+		if (shouldStop())
+			return 0;
+
+		nodes++;
+		quiescenceNodes++;
+		selectiveDepth = Math.max(selectiveDepth, ply);
+
+		GameState state = board.getState();
 
-		if (possibleLegalMoves == null || possibleLegalMoves.isEmpty() || possibleLegalMoves.size() == 1)
-			return;
+		if (state != GameState.PLAYING)
+			return getTerminalEval(state, ply);
 
-		Comparator<Move> moveComparator = (move1, move2) -> {
+		final boolean isInCheck = board.isKingInCheck(board.colorToMove);
 
-			Move bestMoveAtThisPly = prevPvTable[0][actualDepth];
+		final int standPat = getStaticEval(board);
 
-			if (move1.equals(bestMoveAtThisPly) && !move2.equals(bestMoveAtThisPly))
-				return -1;
-			if (move2.equals(bestMoveAtThisPly))
-				return 1;
+		int bestEval = -INFINITY;
 
-			if (move1.promotionPieceType() != null && move2.promotionPieceType() == null)
-				return -1;
-			if (move2.promotionPieceType() != null)
-				return 1;
+		if (!isInCheck) {
 
-			if (move1.isCapture() && move2.isCapture()) {
+			if (standPat >= beta)
+				return standPat;
 
-				// we consider higher value captures first
+			bestEval = standPat;
+			alpha = Math.max(alpha, standPat);
+		}
 
-				Piece capturingPiece1 = board.get(move1.fromIndex());
-				Piece capturingPiece2 = board.get(move2.fromIndex());
+		// we are too deep to go on, so we accept the static eval
+		if (ply >= MAX_PLY)
+			return standPat;
 
-				int capturedIndex1 = move1.toIndex();
-				if (move1.isEnPassant())
-					capturedIndex1 += board.colorToMove == PieceColor.WHITE ? 8 : -8;
+		final int offset = ply * Board.MAX_LEGAL_MOVES;
+		final int numLegalMoves = board.generateLegalMoves(moveStack, offset);
 
-				int capturedIndex2 = move2.toIndex();
-				if (move2.isEnPassant())
-					capturedIndex2 += board.colorToMove == PieceColor.WHITE ? 8 : -8;
+		// the moves we search are moved to the front of this ply's part of the stack
+		int numMoves = 0;
 
-				Piece capturedPiece1 = board.get(capturedIndex1);
-				Piece capturedPiece2 = board.get(capturedIndex2);
+		for (int i = offset; i < offset + numLegalMoves; i++) {
 
-				int valueDifferenceOfMove1 = getPieceValue(capturedPiece1.getClass()) - getPieceValue(capturingPiece1.getClass());
-				int valueDifferenceOfMove2 = getPieceValue(capturedPiece2.getClass()) - getPieceValue(capturingPiece2.getClass());
+			final int move = moveStack[i];
+			final boolean isPromotion = Move.getPromotionPieceType(move) != 0;
 
-				return valueDifferenceOfMove2 - valueDifferenceOfMove1;
-			} else if (move1.isCapture())
-				return -1;
-			else if (move2.isCapture())
-				return 1;
+			if (!isInCheck && !Move.isCapture(move) && !isPromotion)
+				continue;
 
-			if (move1.isCheck() && !move2.isCheck())
-				return -1;
-			if (move2.isCheck())
-				return 1;
+			final int capturedPieceCode = getCapturedPieceCode(board, move);
 
-			final int historicalScoreOfMove1 = historicalBestMovesCount[move1.fromIndex()][move1.toIndex()];
-			final int historicalScoreOfMove2 = historicalBestMovesCount[move2.fromIndex()][move2.toIndex()];
+			if (!isInCheck && !isPromotion && standPat + getPieceValue(capturedPieceCode) + DELTA_PRUNING_MARGIN <= alpha)
+				continue;
 
-			int historicalScoreDifference = historicalScoreOfMove2 - historicalScoreOfMove1;
+			// captures that lose material after the recaptures are not worth searching
+			if (!isInCheck && !isPromotion && board.getStaticExchangeEvaluation(move) < 0)
+				continue;
 
-			if (historicalScoreDifference != 0)
-				return historicalScoreDifference;
+			moveStack[offset + numMoves] = move;
+			moveScoreStack[offset + numMoves] = getMvvLvaScore(board, move, capturedPieceCode);
+			numMoves++;
+		}
 
-			return getPieceValue(board.get(move2.fromIndex()).getClass()) - getPieceValue(board.get(move1.fromIndex()).getClass());
-		};
+		for (int i = offset; i < offset + numMoves; i++) {
 
-		try {
-			possibleLegalMoves.sort(moveComparator);
-		} catch (UnsupportedOperationException e) {
-			throw new RuntimeException(e);
+			final int move = pickNextMove(i, offset + numMoves);
+
+			board.doMove(move);
+
+			int currentEval = -quiescenceSearch(board, ply + 1, -beta, -alpha);
+
+			board.undoMove();
+
+			if (shouldStop())
+				return 0;
+
+			if (currentEval > bestEval)
+				bestEval = currentEval;
+
+			alpha = Math.max(alpha, bestEval);
+
+			if (alpha >= beta)
+				break;
 		}
 
+		return bestEval;
 	}
 
 	/**
-	 * Determines the static value of a piece
+	 * Determines the eval of a finished game
 	 *
-	 * @param pieceType the type of piece
-	 * @return the value of a piece
+	 * @param state the state of the game
+	 * @param ply   the distance from the root (a faster mate is better)
+	 * @return the eval from the perspective of the side to move
 	 */
-	private int getPieceValue(Class<? extends Piece> pieceType) {
-		if (pieceType.equals(Pawn.class))
-			return PAWN_VALUE;
-		else if (pieceType.equals(Knight.class))
-			return KNIGHT_VALUE;
-		else if (pieceType.equals(Bishop.class))
-			return BISHOP_VALUE;
-		else if (pieceType.equals(Rook.class))
-			return ROOK_VALUE;
-		else if (pieceType.equals(Queen.class))
-			return QUEEN_VALUE;
-		else
-			return 0;
+	private static int getTerminalEval(GameState state, int ply) {
+
+		// a game can only be won by the side that made the last move, so the side to move is the one that is mated
+		return state == GameState.WHITE_WIN || state == GameState.BLACK_WIN ? Score.matedIn(ply) : 0;
 	}
 
 	/**
-	 * Statically evaluates a given state
-	 * @param board the position to evaluate
-	 * @return the evaluation of the position
+	 * Determines the piece that a move captures
+	 *
+	 * @param board the position before the move
+	 * @param move  the encoded move
+	 * @return the code of the captured piece (or <code>BitBoardPosition.EMPTY</code>)
 	 */
-	private int evaluateOngoingPosition(Board board) {
+	private int getCapturedPieceCode(Board board, int move) {
 
-		int result = 0;
+		if (!Move.isCapture(move))
+			return BitBoardPosition.EMPTY;
 
-		for (int i = 0; i < 64; i++) {
+		int capturedIndex = Move.getToIndex(move);
+		if (Move.isEnPassant(move))
+			capturedIndex += board.colorToMove == PieceColor.WHITE ? 8 : -8;
 
-			Piece piece = board.get(i);
+		return board.getPosition().get(capturedIndex);
+	}
 
-			if (piece == null)
-				continue;
+	/**
+	 * Most valuable victim - least valuable attacker ordering score
+	 *
+	 * @param board             the position before the move
+	 * @param move              the encoded move
+	 * @param capturedPieceCode the code of the captured piece (or <code>BitBoardPosition.EMPTY</code>)
+	 * @return the score of the move (higher is better)
+	 */
+	private int getMvvLvaScore(Board board, int move, int capturedPieceCode) {
+
+		int score = -BitBoardPosition.getPieceType(board.getPosition().get(Move.getFromIndex(move)));
+
+		if (capturedPieceCode != BitBoardPosition.EMPTY)
+			score += (BitBoardPosition.getPieceType(capturedPieceCode) + 1) * BitBoardPosition.NUM_PIECE_TYPES;
+
+		if (Move.getPromotionPieceType(move) != 0)
+			score += (Move.getPromotionPieceType(move) + 1) * BitBoardPosition.NUM_PIECE_TYPES;
+
+		return score;
+	}
+
+	/**
+	 * Looks up the best move of an earlier search of the position
+	 *
+	 * @param board the position
+	 * @return the encoded move (or <code>TranspositionTable.NO_MOVE</code>)
+	 */
+	private int getBestMoveFromTranspositionTable(Board board) {
+
+		final long entry = transpositionTable.probe(board.zobristKey());
+
+		return entry != TranspositionTable.NO_ENTRY ? TranspositionTable.getBestMove(entry) : TranspositionTable.NO_MOVE;
+	}
+
+	/**
+	 * Moves the move with the highest ordering score among the remaining ones to the front of them.
+	 * We pick the moves one by one, so we do not sort the moves that are never searched after a cutoff.
+	 *
+	 * @param index the index of the first remaining move in <code>moveStack</code>
+	 * @param end   the end of the moves (exclusive)
+	 * @return the picked move (which is now at <code>index</code>)
+	 */
+	private int pickNextMove(int index, int end) {
+
+		int indexOfBestScore = index;
+
+		for (int i = index + 1; i < end; i++) {
+			if (moveScoreStack[i] > moveScoreStack[indexOfBestScore])
+				indexOfBestScore = i;
+		}
+
+		final int move = moveStack[indexOfBestScore];
+		moveStack[indexOfBestScore] = moveStack[index];
+		moveStack[index] = move;
+
+		final int swappedScore = moveScoreStack[index];
+		moveScoreStack[index] = moveScoreStack[indexOfBestScore];
+		moveScoreStack[indexOfBestScore] = swappedScore;
+
+		return move;
+	}
+
+	/**
+	 * Computes the ordering score of a capture or a promotion (see <code>scoreMoves</code>),
+	 * the captures that lose material get negative scores
+	 *
+	 * @param board the position
+	 * @param move  the encoded capture or promotion
+	 * @return the ordering score of the move
+	 */
+	private int getCaptureScore(Board board, int move) {
+
+		if (Move.getPromotionPieceType(move) != 0)
+			return PROMOTION_SCORE + Move.getPromotionPieceType(move);
 
-			boolean isPieceWhite = piece.getColor() == PieceColor.WHITE;
-
-			int pieceValue = 0;
-
-			int[] positionMap = KING_POSITION_MAP;
-
-			if (piece.getClass().equals(Pawn.class)) {
-				pieceValue = PAWN_VALUE;
-				positionMap = PAWN_POSITION_MAP;
-			} else if (piece.getClass().equals(Knight.class)) {
-				pieceValue = KNIGHT_VALUE;
-				positionMap = KNIGHT_POSITION_MAP;
-			} else if (piece.getClass().equals(Bishop.class)) {
-				pieceValue = BISHOP_VALUE;
-				positionMap = BISHOP_POSITION_MAP;
-			} else if (piece.getClass().equals(Rook.class)) {
-				pieceValue = ROOK_VALUE;
-				positionMap = ROOK_POSITION_MAP;
-			} else if (piece.getClass().equals(Queen.class)) {
-				pieceValue = QUEEN_VALUE;
-				positionMap = QUEEN_POSITION_MAP;
+		final int staticExchangeEvaluation = board.getStaticExchangeEvaluation(move);
+
+		// the captures that win the same material are ordered by MVV-LVA
+		return (staticExchangeEvaluation >= 0 ? GOOD_CAPTURE_SCORE : BAD_CAPTURE_SCORE)
+				+ staticExchangeEvaluation * BitBoardPosition.NUM_PIECE_TYPES * BitBoardPosition.NUM_PIECE_TYPES
+				+ getMvvLvaScore(board, move, getCapturedPieceCode(board, move));
+	}
+
+	/**
+	 * Computes the ordering scores of the moves of the root (into <code>moveScoreStack</code>).
+	 * The order is: the move from the transposition table, the move of the last principal variation, promotions,
+	 * captures that do not lose material, killer moves, the countermove, the other quiet moves by their history,
+	 * and finally the captures that lose material (the same as the order of <code>MovePicker</code>).
+	 *
+	 * @param board                  the position
+	 * @param offset                 the index of the first move in <code>moveStack</code>
+	 * @param numMoves               the number of moves
+	 * @param ply                    the distance from the root
+	 * @param transpositionTableMove the encoded best move stored in the transposition table (or <code>NO_MOVE</code>)
+	 */
+	private void scoreMoves(Board board, int offset, int numMoves, int ply, int transpositionTableMove) {
+
+		final int principalVariationMove = previousPrincipalVariation[ply];
+		final int[] killerMovesOfPly = killerMoves[ply];
+		final int counterMove = ply > 0
+				? counterMoves[Move.getFromIndex(searchedMoves[ply - 1])][Move.getToIndex(searchedMoves[ply - 1])]
+				: TranspositionTable.NO_MOVE;
+		final int[][] historyOfColor = history[getColorIndex(board.colorToMove)];
+
+		for (int i = offset; i < offset + numMoves; i++) {
+
+			final int move = moveStack[i];
+			final int encodedMove = Move.withoutFlags(move);
+			final int score;
+
+			if (encodedMove == transpositionTableMove) {
+				score = TRANSPOSITION_TABLE_MOVE_SCORE;
+			} else if (encodedMove == principalVariationMove) {
+				score = PRINCIPAL_VARIATION_MOVE_SCORE;
+			} else if (!isQuiet(move)) {
+				score = getCaptureScore(board, move);
+			} else if (encodedMove == killerMovesOfPly[0]) {
+				score = KILLER_MOVE_SCORE;
+			} else if (encodedMove == killerMovesOfPly[1]) {
+				score = KILLER_MOVE_SCORE - 1;
+			} else if (encodedMove == counterMove) {
+				score = COUNTERMOVE_SCORE;
+			} else {
+				score = historyOfColor[Move.getFromIndex(move)][Move.getToIndex(move)];
 			}
 
-			final int positionMapIndex = isPieceWhite ? i : Square.getIndex(7 - i % 8, 7 - i / 8);
+			moveScoreStack[i] = score;
+		}
+	}
+
+	/**
+	 * Remembers the quiet move that caused a beta cutoff as a killer move and as the countermove of the previous move,
+	 * and updates the history: the move gains, the quiet moves that were searched before it in vain lose
+	 *
+	 * @param board          the position
+	 * @param ply            the distance from the root
+	 * @param remainingDepth the depth of the search below the node (deeper cutoffs count more)
+	 * @param movePicker     the move picker of the node, the cutoff move is its last searched quiet move
+	 */
+	private void updateQuietMoveOrdering(Board board, int ply, int remainingDepth, MovePicker movePicker) {
+
+		final int numSearchedQuietMoves = movePicker.numSearchedQuietMoves;
+		final int move = movePicker.searchedQuietMoves[numSearchedQuietMoves - 1];
+		final int encodedMove = Move.withoutFlags(move);
+
+		if (killerMoves[ply][0] != encodedMove) {
+			killerMoves[ply][1] = killerMoves[ply][0];
+			killerMoves[ply][0] = encodedMove;
+		}
+
+		if (ply > 0)
+			counterMoves[Move.getFromIndex(searchedMoves[ply - 1])][Move.getToIndex(searchedMoves[ply - 1])] = encodedMove;
+
+		final int[][] historyOfColor = history[getColorIndex(board.colorToMove)];
+		final int bonus = Math.min(remainingDepth * remainingDepth, MAX_HISTORY);
+
+		updateHistory(historyOfColor, move, bonus);
+
+		for (int i = 0; i < numSearchedQuietMoves - 1; i++)
+			updateHistory(historyOfColor, movePicker.searchedQuietMoves[i], -bonus);
+	}
+
+	/**
+	 * Changes the history score of a move with gravity, so it stays between <code>-MAX_HISTORY</code> and <code>MAX_HISTORY</code>
+	 *
+	 * @param historyOfColor the history of the side to move
+	 * @param move           the encoded move
+	 * @param bonus          the change (its absolute value is at most <code>MAX_HISTORY</code>)
+	 */
+	private static void updateHistory(int[][] historyOfColor, int move, int bonus) {
 
-			int maxValue = Integer.MIN_VALUE;
+		final int[] historyOfSquare = historyOfColor[Move.getFromIndex(move)];
+		final int toIndex = Move.getToIndex(move);
 
-			for (int j = 0; j < 64; j++) {
-				if (positionMap[j] > maxValue)
-					maxValue = positionMap[j];
+		historyOfSquare[toIndex] += bonus - historyOfSquare[toIndex] * Math.abs(bonus) / MAX_HISTORY;
+	}
+
+	private static boolean isQuiet(int move) {
+		return !Move.isCapture(move) && Move.getPromotionPieceType(move) == 0;
+	}
+
+	private static int getColorIndex(PieceColor color) {
+		return color == PieceColor.WHITE ? 0 : 1;
+	}
+
+	private MovePicker[] createMovePickers() {
+
+		MovePicker[] result = new MovePicker[MAX_PLY];
+
+		for (int i = 0; i < result.length; i++)
+			result[i] = new MovePicker(i);
+
+		return result;
+	}
+
+	/**
+	 * Hands out the moves of a node in stages, so after an early cutoff the moves we would never search are not
+	 * generated or scored. The stages are: the move from the transposition table, the move of the last principal
+	 * variation, the captures and promotions that do not lose material, the killer moves and the countermove,
+	 * the other quiet moves by their history, and finally the captures that lose material.
+	 * Every ply has its own picker, which uses the ply's part of <code>moveStack</code>.
+	 */
+	private final class MovePicker {
+
+		private enum Stage {
+			TRANSPOSITION_TABLE_MOVE,
+			PRINCIPAL_VARIATION_MOVE,
+			GENERATE_CAPTURES,
+			GOOD_CAPTURES,
+			REFUTATIONS,
+			GENERATE_QUIET_MOVES,
+			QUIET_MOVES,
+			BAD_CAPTURES,
+			DONE
+		}
+
+		private final int ply;
+		private final int offset;
+		/**
+		 * The moves handed out before the moves were generated (they are not handed out again)
+		 */
+		private final int[] pickedMoves = new int[6];
+		private int numPickedMoves;
+		/**
+		 * The quiet moves handed out so far (the ones before a cutoff move lose history)
+		 */
+		private final int[] searchedQuietMoves = new int[Board.MAX_LEGAL_MOVES];
+		private int numSearchedQuietMoves;
+		private Board board;
+		private int transpositionTableMove;
+		private Stage stage;
+		private int index;
+		private int end;
+		private int badCapturesStart;
+		private int badCapturesEnd;
+		private int refutationIndex;
+		/**
+		 * Whether the last handed out move is a killer move or the countermove
+		 */
+		private boolean isLastMoveRefutation;
+
+		private MovePicker(int ply) {
+			this.ply = ply;
+			this.offset = ply * Board.MAX_LEGAL_MOVES;
+		}
+
+		/**
+		 * Starts handing out the moves of a new node
+		 *
+		 * @param board                  the position (it must not change until every move we need is handed out)
+		 * @param transpositionTableMove the encoded best move stored in the transposition table (or <code>NO_MOVE</code>)
+		 * @param excludedMove           the encoded move that is never handed out (or <code>NO_MOVE</code>)
+		 */
+		private void start(Board board, int transpositionTableMove, int excludedMove) {
+			this.board = board;
+			this.transpositionTableMove = transpositionTableMove;
+			this.stage = Stage.TRANSPOSITION_TABLE_MOVE;
+			this.numPickedMoves = 0;
+			this.numSearchedQuietMoves = 0;
+			this.refutationIndex = 0;
+			this.isLastMoveRefutation = false;
+
+			// the excluded move counts as handed out, so it is skipped in every stage
+			if (excludedMove != TranspositionTable.NO_MOVE)
+				pickedMoves[numPickedMoves++] = excludedMove;
+		}
+
+		/**
+		 * @return the next legal move with its flags (see <code>Move.encodeWithFlags</code>),
+		 * or <code>NO_MOVE</code> if every move was handed out
+		 */
+		private int next() {
+
+			isLastMoveRefutation = false;
+
+			while (true) {
+				switch (stage) {
+					case TRANSPOSITION_TABLE_MOVE -> {
+						stage = Stage.PRINCIPAL_VARIATION_MOVE;
+
+						final int move = findUnpickedLegalMove(transpositionTableMove);
+
+						if (move != TranspositionTable.NO_MOVE)
+							return pickBeforeGeneration(move);
+					}
+					case PRINCIPAL_VARIATION_MOVE -> {
+						stage = Stage.GENERATE_CAPTURES;
+
+						final int move = findUnpickedLegalMove(previousPrincipalVariation[ply]);
+
+						if (move != TranspositionTable.NO_MOVE)
+							return pickBeforeGeneration(move);
+					}
+					case GENERATE_CAPTURES -> {
+						index = offset;
+						end = offset + removePickedMoves(offset, board.generateLegalCaptures(moveStack, offset));
+
+						for (int i = index; i < end; i++)
+							moveScoreStack[i] = getCaptureScore(board, moveStack[i]);
+
+						stage = Stage.GOOD_CAPTURES;
+					}
+					case GOOD_CAPTURES -> {
+						if (index < end) {
+							final int move = pickNextMove(index, end);
+
+							// the captures that lose material have negative scores, they are left for the end
+							if (moveScoreStack[index] >= 0) {
+								index++;
+								return move;
+							}
+						}
+
+						badCapturesStart = index;
+						badCapturesEnd = end;
+						stage = Stage.REFUTATIONS;
+					}
+					case REFUTATIONS -> {
+						if (refutationIndex < 3) {
+
+							final int refutation = switch (refutationIndex++) {
+								case 0 -> killerMoves[ply][0];
+								case 1 -> killerMoves[ply][1];
+								default -> ply > 0
+										? counterMoves[Move.getFromIndex(searchedMoves[ply - 1])][Move.getToIndex(searchedMoves[ply - 1])]
+										: TranspositionTable.NO_MOVE;
+							};
+
+							final int move = findUnpickedLegalMove(refutation);
+
+							// a capture was already handed out with the captures
+							if (move != TranspositionTable.NO_MOVE && isQuiet(move)) {
+								isLastMoveRefutation = true;
+								return pickBeforeGeneration(move);
+							}
+						} else {
+							stage = Stage.GENERATE_QUIET_MOVES;
+						}
+					}
+					case GENERATE_QUIET_MOVES -> {
+						index = badCapturesEnd;
+						end = index + removePickedMoves(index, board.generateLegalQuietMoves(moveStack, index));
+
+						final int[][] historyOfColor = history[getColorIndex(board.colorToMove)];
+
+						for (int i = index; i < end; i++)
+							moveScoreStack[i] = historyOfColor[Move.getFromIndex(moveStack[i])][Move.getToIndex(moveStack[i])];
+
+						stage = Stage.QUIET_MOVES;
+					}
+					case QUIET_MOVES -> {
+						if (index < end) {
+							final int move = pickNextMove(index++, end);
+							searchedQuietMoves[numSearchedQuietMoves++] = move;
+							return move;
+						}
+
+						index = badCapturesStart;
+						end = badCapturesEnd;
+						stage = Stage.BAD_CAPTURES;
+					}
+					case BAD_CAPTURES -> {
+						if (index < end)
+							return pickNextMove(index++, end);
+
+						stage = Stage.DONE;
+					}
+					case DONE -> {
+						return TranspositionTable.NO_MOVE;
+					}
+				}
 			}
+		}
+
+		/**
+		 * @return whether the last handed out move is a killer move or the countermove
+		 */
+		private boolean isLastMoveRefutation() {
+			return isLastMoveRefutation;
+		}
 
-			// we normalize the values
-			final float valueFromPositionMap = (float) positionMap[positionMapIndex] / maxValue;
+		/**
+		 * Forgets the last handed out move, which must be a quiet move, from the searched quiet moves
+		 * (it was skipped, so it does not lose history on a cutoff)
+		 */
+		private void forgetLastQuietMove() {
+			numSearchedQuietMoves--;
+		}
+
+		/**
+		 * @param encodedMove a move remembered from another node (see <code>Move.encode</code>) or <code>NO_MOVE</code>
+		 * @return the legal move with its flags, or <code>NO_MOVE</code> if it is not legal here or was already handed out
+		 */
+		private int findUnpickedLegalMove(int encodedMove) {
 
-			pieceValue += (int) Math.floor(POSITION_MAP_WEIGHT * valueFromPositionMap);
+			if (encodedMove == TranspositionTable.NO_MOVE || isPicked(encodedMove))
+				return TranspositionTable.NO_MOVE;
 
-			result += isPieceWhite ? pieceValue : -pieceValue;
+			return board.findLegalMove(encodedMove);
 		}
 
-		if (board.whiteAttackSquares == null || board.blackAttackSquares == null)
-			board.generateAttackSquare();
+		private int pickBeforeGeneration(int move) {
+
+			pickedMoves[numPickedMoves++] = Move.withoutFlags(move);
 
-		int attackSquareSumDifference = 0;
+			if (isQuiet(move))
+				searchedQuietMoves[numSearchedQuietMoves++] = move;
 
-		for (int i = 0; i < 64; i++) {
-			if (board.whiteAttackSquares.getBit(i))
-				attackSquareSumDifference += 1;
-			if (board.blackAttackSquares.getBit(i))
-				attackSquareSumDifference -= 1;
+			return move;
 		}
 
-		result += (int) (ATTACK_SQUARE_WEIGHT * attackSquareSumDifference);
+		private boolean isPicked(int encodedMove) {
 
-		return result;
+			for (int i = 0; i < numPickedMoves; i++) {
+				if (pickedMoves[i] == Move.withoutFlags(encodedMove))
+					return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Removes the moves that were already handed out from the generated moves
+		 *
+		 * @param start    the index of the first generated move in <code>moveStack</code>
+		 * @param numMoves the number of generated moves
+		 * @return the number of moves left
+		 */
+		private int removePickedMoves(int start, int numMoves) {
+
+			for (int i = start; i < start + numMoves; i++) {
+				if (isPicked(moveStack[i])) {
+					moveStack[i--] = moveStack[start + --numMoves];
+				}
+			}
+
+			return numMoves;
+		}
+	}
+
+	/**
+	 * Determines the static value of a piece
+	 *
+	 * @param pieceCode the code of the piece (see <code>BitBoardPosition</code>)
+	 * @return the value of a piece
+	 */
+	private static int getPieceValue(int pieceCode) {
+		if (pieceCode == BitBoardPosition.EMPTY)
+			return 0;
+
+		return PieceSquareTables.getPieceValue(BitBoardPosition.getPieceType(pieceCode));
+	}
+
+	/**
+	 * Statically evaluates a given state (package-private, so the benchmarks can measure it).
+	 * The material and the positions of the pieces are kept up to date by the board as the moves are made and taken back,
+	 * so only the attacked squares are computed here (from the attack tables, or the attack maps if the board has them).
+	 *
+	 * @param board the position to evaluate
+	 * @return the evaluation of the position from white's perspective
+	 */
+	int evaluateOngoingPosition(Board board) {
+
+		final int attackSquareSumDifference = Long.bitCount(board.getAttackBitBoard(PieceColor.WHITE))
+				- Long.bitCount(board.getAttackBitBoard(PieceColor.BLACK));
+
+		return board.getPosition().getPieceSquareScore() + ATTACK_SQUARE_WEIGHT * attackSquareSumDifference;
 	}
 }
@@ -1,7 +1,6 @@
 package chessai.chessai.engine;
 
 import chessai.chessai.lib.*;
-import chessai.chessai.lib.pieces.*;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -16,6 +15,19 @@ public class MonteCarloEngine extends ChessEngine {
 
     private static final int NODES_TO_SEARCH_BETWEEN_UPDATES = 10;
 
+    /**
+     * The board and the buffers that a thread plays its simulations on
+     */
+    private static final class Playout {
+        /**
+         * The position the board was copied from
+         */
+        private Board startPosition;
+        private Board board;
+        private final int[] legalMoves = new int[Board.MAX_LEGAL_MOVES];
+        private final double[] moveWeights = new double[Board.MAX_LEGAL_MOVES];
+    }
+
     /**
      * The class represents a node in the MCTS tree.
      */
@@ -63,15 +75,14 @@ public class MonteCarloEngine extends ChessEngine {
         }
     }
 
-    private static final int PAWN_VALUE = 100;
-    private static final int KNIGHT_VALUE = 300;
-    private static final int BISHOP_VALUE = 320;
-    private static final int ROOK_VALUE = 500;
-    private static final int QUEEN_VALUE = 900;
     private final Random random;
     private final double explorationParameter;
     private final int numSimulations;
     private final int numNodesToCheck;
+    /**
+     * The simulations run in parallel, every thread has its own playout board
+     */
+    private final ThreadLocal<Playout> playouts = ThreadLocal.withInitial(Playout::new);
 
     /**
      * Creates a new MCTS engine
@@ -253,109 +264,92 @@ public class MonteCarloEngine extends ChessEngine {
      */
     private GameState simulate(Board board) {
 
-        Board playingBoard = new Board(board);
+        final Playout playout = playouts.get();
+
+        // the position is copied once for every thread, the games played from it are taken back move by move,
+        // so the board (and its undo states) is reused for every simulation of the node
+        if (playout.startPosition != board) {
+            playout.startPosition = board;
+            playout.board = new Board(board);
+        }
+
+        final Board playingBoard = playout.board;
+
+        int numMovesPlayed = 0;
 
         while (playingBoard.getState() == GameState.PLAYING) {
 
-            List<Move> legalMoves = playingBoard.getLegalMoves();
+            final int numLegalMoves = playingBoard.generateLegalMoves(playout.legalMoves, 0);
 
-            if (legalMoves.isEmpty())
+            if (numLegalMoves == 0)
                 throw new IllegalStateException("There are no legal moves, but the state is PLAYING!");
 
-//            Move move = legalMoves.get(random.nextInt(legalMoves.size()));
+            int move = getBiasedRandomMove(playingBoard, playout.legalMoves, numLegalMoves, playout.moveWeights, random);
 
-            Move move = getBiasedRandomMove(playingBoard, legalMoves, random);
+            playingBoard.doMove(move);
+            numMovesPlayed++;
+        }
 
-//            System.out.println("        " + playingBoard.getFENString() + " ::: " + playingBoard.get(move.from()).getFENChar() + " " + move.from() + " -> " + move.to());
+        final GameState result = playingBoard.getState();
 
-            playingBoard = playingBoard.makeMove(move);
-        }
+        for (; numMovesPlayed > 0; numMovesPlayed--)
+            playingBoard.undoMove();
 
-        return playingBoard.getState();
+        return result;
     }
 
     /**
      * Supplies the moves to the simulation step.
      *
-     * @param board  the position
-     * @param moves  the legal moves in the position
-     * @param random the random class used during the selection
-     * @return the move chosen at random (biased)
+     * @param board       the position
+     * @param moves       the encoded legal moves in the position
+     * @param numMoves    the number of legal moves
+     * @param moveWeights the buffer the weights are written into
+     * @param random      the random class used during the selection
+     * @return the encoded move chosen at random (biased)
      */
-    private Move getBiasedRandomMove(Board board, List<Move> moves, Random random) {
+    private int getBiasedRandomMove(Board board, int[] moves, int numMoves, double[] moveWeights, Random random) {
 
-        List<Double> moveWeights = moves.stream().map((Move move) -> getMoveWeight(board, move)).toList();
+        double sumWeight = 0;
 
-        double sumWeight = moveWeights.stream().mapToDouble(x -> x).sum();
+        for (int i = 0; i < numMoves; i++) {
+            moveWeights[i] = getMoveWeight(board, moves[i]);
+            sumWeight += moveWeights[i];
+        }
 
         double currentWeightsSum = 0;
 
         double randomValue = random.nextDouble(sumWeight);
 
-        for (int i = 0; i < moves.size(); i++) {
+        for (int i = 0; i < numMoves; i++) {
 
-            if (currentWeightsSum + moveWeights.get(i) > randomValue)
-                return moves.get(i);
+            if (currentWeightsSum + moveWeights[i] > randomValue)
+                return moves[i];
 
-            currentWeightsSum += moveWeights.get(i);
+            currentWeightsSum += moveWeights[i];
         }
 
-        return moves.get(moves.size() - 1);
+        return moves[numMoves - 1];
     }
 
     /**
      * Determines the weight of each move during the random selection
      *
      * @param board the position
-     * @param move  the move
+     * @param move  the encoded move
      * @return the weight of the move in the given position
      */
-    private double getMoveWeight(Board board, Move move) {
+    private double getMoveWeight(Board board, int move) {
 
         double result = 1;
 
-        Piece movingPiece = board.get(move.fromIndex());
-
-        if (move.isCapture()) {
-
-            int capturedIndex = move.toIndex();
-            if (move.isEnPassant())
-                capturedIndex += board.colorToMove == PieceColor.WHITE ? 8 : -8;
-
-            Piece capturedPiece = board.get(capturedIndex);
-
-            int valueDifference = getPieceValue(capturedPiece.getClass()) - getPieceValue(movingPiece.getClass());
-
-            result += 4 * valueDifference;
-        }
+        // the material that the capture wins (or loses) after the recaptures
+        if (Move.isCapture(move))
+            result += 4 * board.getStaticExchangeEvaluation(move);
 
-        if (move.isCheck())
-            result += 10;
-
-        if (move.promotionPieceType() != null)
+        if (Move.getPromotionPieceType(move) != 0)
             result += 20;
 
         return Math.max(result, 1);
     }
-
-    /**
-     * Determines the static value of a piece type
-     *
-     * @param pieceType the piece type
-     * @return the value of a piece with that type
-     */
-    private int getPieceValue(Class<? extends Piece> pieceType) {
-        if (pieceType.equals(Pawn.class))
-            return PAWN_VALUE;
-        else if (pieceType.equals(Knight.class))
-            return KNIGHT_VALUE;
-        else if (pieceType.equals(Bishop.class))
-            return BISHOP_VALUE;
-        else if (pieceType.equals(Rook.class))
-            return ROOK_VALUE;
-        else if (pieceType.equals(Queen.class))
-            return QUEEN_VALUE;
-        else
-            return 0;
-    }
 }
@@ -0,0 +1,101 @@
+package chessai.chessai.engine;
+
+import java.util.Locale;
+
+/**
+ * The representation of the evals of the searches: centipawns from the perspective of one side, or a mate.
+ * A mate is encoded by its distance from the root: being mated at ply n is <code>-MATE + n</code> and mating at ply n
+ * is <code>MATE - n</code>, so a faster mate is a better score. Every score is far from the bounds of int,
+ * so they can be negated and widened (e.g. to a null window) without overflowing.
+ */
+public final class Score {
+
+    /**
+     * Bigger than every score (the bound of the alpha-beta window)
+     */
+    public static final int INFINITY = 32_000;
+    /**
+     * The score of mating at the root
+     */
+    public static final int MATE = 31_000;
+    /**
+     * The mates are at most this many plies away, so the scores above <code>MATE - MAX_MATE_DISTANCE</code> are mates
+     * (the static evals are far below this)
+     */
+    public static final int MAX_MATE_DISTANCE = 1_000;
+
+    private Score() {
+    }
+
+    /**
+     * @param ply the distance of the mate from the root
+     * @return the score of mating the opponent at <code>ply</code>
+     */
+    public static int mateIn(int ply) {
+        return MATE - ply;
+    }
+
+    /**
+     * @param ply the distance of the mate from the root
+     * @return the score of being mated at <code>ply</code>
+     */
+    public static int matedIn(int ply) {
+        return -MATE + ply;
+    }
+
+    /**
+     * @return whether the score is a forced mate (for either side)
+     */
+    public static boolean isMate(int score) {
+        final int absoluteScore = Math.abs(score);
+        return absoluteScore > MATE - MAX_MATE_DISTANCE && absoluteScore <= MATE;
+    }
+
+    /**
+     * @param score a mate score (see <code>isMate</code>)
+     * @return the number of moves of the side to move until the mate, negative if it is the side that is mated
+     */
+    public static int getMovesToMate(int score) {
+        final int movesToMate = (MATE - Math.abs(score) + 1) / 2;
+        return score > 0 ? movesToMate : -movesToMate;
+    }
+
+    /**
+     * Converts a score to be stored in the transposition table: a mate is stored by its distance from the position
+     * (not from the root), because the position can be reached at another ply later
+     *
+     * @param score the score
+     * @param ply   the distance of the position from the root
+     * @return the score to store
+     */
+    public static int toTranspositionTable(int score, int ply) {
+        if (!isMate(score))
+            return score;
+
+        return score > 0 ? score + ply : score - ply;
+    }
+
+    /**
+     * Converts a score stored in the transposition table back (see <code>toTranspositionTable</code>)
+     *
+     * @param storedScore the stored score
+     * @param ply         the distance of the position from the root
+     * @return the score
+     */
+    public static int fromTranspositionTable(int storedScore, int ply) {
+        if (!isMate(storedScore))
+            return storedScore;
+
+        return storedScore > 0 ? storedScore - ply : storedScore + ply;
+    }
+
+    /**
+     * @return the score in pawns (e.g. "+1.25"), or the moves to mate (e.g. "M3" or "-M2")
+     */
+    public static String toString(int score) {
+        if (isMate(score))
+            return (score > 0 ? "M" : "-M") + Math.abs(getMovesToMate(score));
+
+        return String.format(Locale.ROOT, "%+.2f", score / 100.0);
+    }
+}
@@ -0,0 +1,24 @@
+package chessai.chessai.engine;
+
+/**
+ * The selective techniques of <code>MinimaxEngine</code> that can be switched off,
+ * e.g. to measure what they are worth by playing the engine against itself without them
+ *
+ * @param nullMovePruning    whether the engine passes the turn with a reduced search to prove that a position is too
+ *                           good for the opponent to allow (not with only pawns, where zugzwang is common)
+ * @param lateMoveReductions whether the quiet moves that are ordered late are searched less deeply first
+ * @param futilityPruning    whether the nodes near the leaves are cut off if their static eval is far above beta
+ *                           (reverse futility pruning), and their quiet moves are skipped if it is far below alpha
+ */
+public record SearchOptions(boolean nullMovePruning, boolean lateMoveReductions, boolean futilityPruning) {
+
+    /**
+     * Every technique is switched on
+     */
+    public static final SearchOptions DEFAULT = new SearchOptions(true, true, true);
+
+    /**
+     * Every technique is switched off, so only alpha-beta prunes the tree
+     */
+    public static final SearchOptions FULL_WIDTH = new SearchOptions(false, false, false);
+}
@@ -0,0 +1,66 @@
+package chessai.chessai.engine;
+
+/**
+ * Counters of a search, published after every iteration of the iterative deepening
+ * (they are cumulative from the start of the search of the move, and include the helper threads of a parallel search).
+ *
+ * @param depth                      the depth of the finished iteration
+ * @param selectiveDepth             the deepest ply reached (including the quiescence search)
+ * @param nodes                      the number of positions searched (including the quiescence nodes)
+ * @param quiescenceNodes            the number of positions searched by the quiescence search
+ * @param transpositionTableProbes   the number of transposition table lookups
+ * @param transpositionTableHits     the number of lookups that found the position
+ * @param transpositionTableCutoffs  the number of positions whose score was taken from the table without searching them
+ * @param betaCutoffs                the number of positions where a move failed high
+ * @param firstMoveBetaCutoffs       the number of positions where the first move failed high
+ * @param elapsedNanos               the time since the start of the search
+ */
+public record SearchStatistics(int depth,
+                               int selectiveDepth,
+                               long nodes,
+                               long quiescenceNodes,
+                               long transpositionTableProbes,
+                               long transpositionTableHits,
+                               long transpositionTableCutoffs,
+                               long betaCutoffs,
+                               long firstMoveBetaCutoffs,
+                               long elapsedNanos) {
+
+    public long elapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long nodesPerSecond() {
+        return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+    }
+
+    /**
+     * @return the ratio of the lookups that found the position (0 if there were none)
+     */
+    public double transpositionTableHitRate() {
+        return transpositionTableProbes > 0 ? (double) transpositionTableHits / transpositionTableProbes : 0;
+    }
+
+    /**
+     * The quality of the move ordering: in a perfectly ordered tree every cutoff is caused by the first move
+     *
+     * @return the ratio of the cutoffs caused by the first move (0 if there were none)
+     */
+    public double firstMoveBetaCutoffRate() {
+        return betaCutoffs > 0 ? (double) firstMoveBetaCutoffs / betaCutoffs : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d/%d, %d nodes (%d quiescence), %d nodes/s, TT hits %.1f%% (%d cutoffs), first move cutoffs %.1f%%, %d ms",
+                depth,
+                selectiveDepth,
+                nodes,
+                quiescenceNodes,
+                nodesPerSecond(),
+                transpositionTableHitRate() * 100,
+                transpositionTableCutoffs,
+                firstMoveBetaCutoffRate() * 100,
+                elapsedMillis());
+    }
+}
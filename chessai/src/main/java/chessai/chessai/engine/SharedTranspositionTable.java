@@ -0,0 +1,94 @@
+package chessai.chessai.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A transposition table that many search threads can read and write at the same time without locks.
+ * <p>
+ * Every long is accessed atomically through a <code>VarHandle</code>, and instead of the key we store
+ * <code>key ^ data</code>. A reader recomputes the key from the two longs, so if another thread has written
+ * only one half of the entry in the meantime, the key does not match and the entry is simply treated as a miss.
+ * <p>
+ * It also counts the hits, misses, collisions (a different position was overwritten) and overwrites
+ * (the same position was stored again).
+ * <p>
+ * <code>clear</code> and <code>incrementAge</code> are not thread-safe, they should be called between searches.
+ */
+public class SharedTranspositionTable extends TranspositionTable {
+
+    private static final VarHandle LONG_ARRAY_HANDLE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder overwrites = new LongAdder();
+
+    public SharedTranspositionTable() {
+        super();
+    }
+
+    public SharedTranspositionTable(int capacityInBytes) {
+        super(capacityInBytes);
+    }
+
+    @Override
+    protected long readDataIfKeyMatches(int index, long key) {
+
+        final long data = (long) LONG_ARRAY_HANDLE.getOpaque(table, index + 1);
+        final long keyXorData = (long) LONG_ARRAY_HANDLE.getOpaque(table, index);
+
+        return (keyXorData ^ data) == key ? data : NO_ENTRY;
+    }
+
+    @Override
+    protected long readData(int index) {
+        return (long) LONG_ARRAY_HANDLE.getOpaque(table, index + 1);
+    }
+
+    @Override
+    protected void write(int index, long key, long data) {
+        LONG_ARRAY_HANDLE.setOpaque(table, index, key ^ data);
+        LONG_ARRAY_HANDLE.setOpaque(table, index + 1, data);
+    }
+
+    @Override
+    protected void onProbe(boolean isHit) {
+        if (isHit)
+            hits.increment();
+        else
+            misses.increment();
+    }
+
+    @Override
+    protected void onStore(boolean isSamePosition, long replacedData) {
+        if (isSamePosition)
+            overwrites.increment();
+        else if (replacedData != NO_ENTRY)
+            collisions.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getOverwrites() {
+        return overwrites.sum();
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+        overwrites.reset();
+    }
+}
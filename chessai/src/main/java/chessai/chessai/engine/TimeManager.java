@@ -0,0 +1,32 @@
+package chessai.chessai.engine;
+
+/**
+ * Decides how long an engine can think about a move.
+ * <p>
+ * There are two limits: the search can be stopped at any time once the hard limit is reached,
+ * while the soft limit is only looked at between the iterations of the iterative deepening
+ * (it is not worth starting an iteration that probably cannot be finished).
+ */
+public interface TimeManager {
+
+    /**
+     * Called when the engine starts to search a move
+     */
+    void start();
+
+    /**
+     * Polled during the search
+     *
+     * @return true if the search has to be stopped immediately
+     */
+    boolean isHardLimitReached();
+
+    /**
+     * Called after every finished iteration of the iterative deepening
+     *
+     * @param completedDepth the depth of the finished iteration
+     * @param eval           the score of the best move (for the side to move)
+     * @return true if there is enough time to search one ply deeper
+     */
+    boolean shouldStartNextIteration(int completedDepth, int eval);
+}
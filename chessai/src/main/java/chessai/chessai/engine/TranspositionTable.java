@@ -7,80 +7,305 @@ import java.util.Arrays;
 
 /**
  * Implements a transposition table using Zobrist hashing
+ * <p>
+ * The table is made of buckets of 4 entries, each entry being two longs (the key and the packed data),
+ * so a bucket is 64 bytes and a probe never looks further than one bucket. Java cannot align the array to the
+ * cache lines, so a bucket may straddle two of them, but a probe still touches at most two cache lines.
+ * <p>
+ * The data of an entry is packed as
+ * <pre>
+ * bits  0-31: eval
+ * bits 32-47: best move (see <code>Move.encode</code>, 0 if there is none)
+ * bits 48-55: depth (how deep the position was searched)
+ * bits 56-57: bound (<code>EXACT</code>, <code>LOWER_BOUND</code> or <code>UPPER_BOUND</code>, 0 means empty)
+ * bits 58-63: age (the search that wrote the entry)
+ * </pre>
+ * The first 3 entries of a bucket are depth-preferred, the last one is always replaced.
  */
 public class TranspositionTable {
 
-    private final int capacity;
+    public static final int EXACT = 1;
     /**
-     * we store the value in the first 32 bit and the key in the second 32 bit
+     * The eval is at least this much (the search failed high)
      */
-    private final long[] table;
-    private static final int DEFAULT_VALUE = Integer.MIN_VALUE + 1;
+    public static final int LOWER_BOUND = 2;
+    /**
+     * The eval is at most this much (the search failed low)
+     */
+    public static final int UPPER_BOUND = 3;
+    public static final int NO_MOVE = 0;
+    /**
+     * Returned by <code>probe</code> if the position is not in the table
+     */
+    public static final long NO_ENTRY = 0;
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * 2;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+    private static final int MAX_DEPTH = 0xFF;
+    private static final int AGE_MASK = 0x3F;
+    /**
+     * A non-exact result of the current search only replaces the entry of the same position if it is at most this much shallower
+     */
+    private static final int SAME_POSITION_DEPTH_MARGIN = 2;
+
+    private final int numBuckets;
+    /**
+     * Entry i of a bucket is at <code>bucketStart + 2 * i</code> (key) and <code>bucketStart + 2 * i + 1</code> (data)
+     */
+    protected final long[] table;
+    private int currentAge;
 
     public TranspositionTable() {
         this(100_000);
     }
 
     public TranspositionTable(int capacityInBytes) {
-        this.capacity = capacityInBytes / 8;
+        this.numBuckets = Math.max(1, capacityInBytes / BYTES_PER_BUCKET);
 
-        table = new long[this.capacity];
+        table = new long[numBuckets * LONGS_PER_BUCKET];
 
         clear();
     }
 
+    /**
+     * Marks the start of a new search, so the entries of the previous ones are replaced first
+     */
+    public void incrementAge() {
+        currentAge = (currentAge + 1) & AGE_MASK;
+    }
+
     public void put(Board board, int eval) {
-        put(board.hashCode(), eval);
+        put(board.zobristKey(), eval);
+    }
+
+    public void put(long key, int eval) {
+        put(key, eval, 0, EXACT, NO_MOVE);
     }
 
-    public void put(int hash, int eval) {
+    /**
+     * Stores a search result
+     *
+     * @param key      the Zobrist key of the position
+     * @param eval     the eval of the position
+     * @param depth    the depth the position was searched to
+     * @param bound    the type of the eval (<code>EXACT</code>, <code>LOWER_BOUND</code> or <code>UPPER_BOUND</code>)
+     * @param bestMove the encoded best move (or <code>NO_MOVE</code>)
+     */
+    public void put(long key, int eval, int depth, int bound, int bestMove) {
 
-        int index = getInitialIndex(hash);
+        final int bucketStart = getBucketStart(key);
 
-        while (table[index] != DEFAULT_VALUE) {
-            index++;
-            if (index >= capacity)
-                index -= capacity;
+        int replacedIndex = -1;
+
+        long replacedData = NO_ENTRY;
+
+        // if the position is already in the table, we overwrite it (if the new result is good enough)
+        for (int i = bucketStart; i < bucketStart + LONGS_PER_BUCKET; i += 2) {
+            replacedData = readDataIfKeyMatches(i, key);
+            if (replacedData != NO_ENTRY) {
+                replacedIndex = i;
+                break;
+            }
         }
 
-        table[index] = ((long) eval << 32) | ((long) hash & 0xFFFF_FFFFL);
+        final boolean isSamePosition = replacedIndex != -1;
+
+        if (isSamePosition) {
+            // a shallow bound (e.g. of a reduced or null window re-search) must not replace a deeper result of this search
+            if (!shouldReplaceSamePosition(replacedData, depth, bound))
+                return;
+
+            // we do not want to lose the best move of a deeper search
+            if (bestMove == NO_MOVE)
+                bestMove = getBestMove(replacedData);
+        } else {
+            replacedIndex = getIndexToReplace(bucketStart, depth);
+            replacedData = readData(replacedIndex);
+        }
+
+        onStore(isSamePosition, replacedData);
+
+        write(replacedIndex, key, pack(eval, depth, bound, bestMove));
     }
 
-    public int get(Board board) throws InvalidKeyException {
-        return get(board.hashCode());
+    /**
+     * Decides whether a new result of a position replaces the one that is already in the table
+     *
+     * @param oldData the data of the entry of the position
+     * @param depth   the depth of the new result
+     * @param bound   the bound of the new result
+     * @return true if the new result is exact, not much shallower, or the old one is from an earlier search
+     */
+    private boolean shouldReplaceSamePosition(long oldData, int depth, int bound) {
+        return bound == EXACT
+                || depth + SAME_POSITION_DEPTH_MARGIN >= getDepth(oldData)
+                || getAge(oldData) != currentAge;
     }
 
-    public int get(int hash) throws InvalidKeyException {
-        for (int i = getInitialIndex(hash); table[i] != DEFAULT_VALUE; i = Integer.remainderUnsigned(i + 1, capacity)) {
-            if ((int) (table[i] & 0xFFFF_FFFFL) == hash)
-                return (int) (table[i] >>> 32);
+    /**
+     * Chooses the entry that a new position overwrites in a bucket
+     *
+     * @param bucketStart the index of the first long of the bucket
+     * @param depth       the depth of the new entry
+     * @return the index of the entry to overwrite
+     */
+    private int getIndexToReplace(int bucketStart, int depth) {
+
+        int worstIndex = -1;
+        int worstScore = Integer.MAX_VALUE;
+
+        // depth-preferred entries: empty and old ones go first, then the shallowest one
+        for (int i = bucketStart; i < bucketStart + LONGS_PER_BUCKET - 2; i += 2) {
+
+            final long data = readData(i);
+
+            if (data == NO_ENTRY)
+                return i;
+
+            final int score = getAge(data) == currentAge ? getDepth(data) : -1;
+
+            if (score < worstScore) {
+                worstScore = score;
+                worstIndex = i;
+            }
         }
 
-        throw new InvalidKeyException("Key does not exist!");
-    }
+        if (depth >= worstScore)
+            return worstIndex;
 
-    public boolean contains(Board board) {
-        return contains(board.hashCode());
+        // the last entry is always replaced
+        return bucketStart + LONGS_PER_BUCKET - 2;
     }
 
-    public boolean contains(int hash) {
+    /**
+     * Looks up the position
+     *
+     * @param key the Zobrist key of the position
+     * @return the packed data of the entry (or <code>NO_ENTRY</code>), which can be read by the static getters
+     */
+    public long probe(long key) {
 
-        for (int i = getInitialIndex(hash); table[i] != DEFAULT_VALUE; i = Integer.remainderUnsigned(i + 1, capacity)) {
-            if ((int) (table[i] & 0xFFFF_FFFFL) == hash)
-                return true;
+        final int bucketStart = getBucketStart(key);
+
+        for (int i = bucketStart; i < bucketStart + LONGS_PER_BUCKET; i += 2) {
+
+            final long data = readDataIfKeyMatches(i, key);
+
+            if (data != NO_ENTRY) {
+                onProbe(true);
+                return data;
+            }
         }
 
-        return false;
+        onProbe(false);
+
+        return NO_ENTRY;
+    }
+
+    /**
+     * Reads an entry
+     *
+     * @param index the index of the entry's first long
+     * @param key   the key we are looking for
+     * @return the data of the entry if it belongs to <code>key</code>, <code>NO_ENTRY</code> otherwise
+     */
+    protected long readDataIfKeyMatches(int index, long key) {
+        return table[index] == key ? table[index + 1] : NO_ENTRY;
+    }
+
+    /**
+     * @param index the index of the entry's first long
+     * @return the data of the entry (or <code>NO_ENTRY</code> if it is empty)
+     */
+    protected long readData(int index) {
+        return table[index + 1];
+    }
+
+    /**
+     * Writes an entry
+     *
+     * @param index the index of the entry's first long
+     * @param key   the key of the position
+     * @param data  the packed data
+     */
+    protected void write(int index, long key, long data) {
+        table[index] = key;
+        table[index + 1] = data;
+    }
+
+    /**
+     * Called after every probe (can be used to collect statistics)
+     *
+     * @param isHit whether the position was found
+     */
+    protected void onProbe(boolean isHit) {
+    }
+
+    /**
+     * Called before every store (can be used to collect statistics)
+     *
+     * @param isSamePosition whether the stored position was already in the table
+     * @param replacedData   the data of the entry that is overwritten (or <code>NO_ENTRY</code> if it was empty)
+     */
+    protected void onStore(boolean isSamePosition, long replacedData) {
+    }
+
+    public int get(Board board) throws InvalidKeyException {
+        return get(board.zobristKey());
+    }
+
+    public int get(long key) throws InvalidKeyException {
+
+        final long data = probe(key);
+
+        if (data == NO_ENTRY)
+            throw new InvalidKeyException("Key does not exist!");
+
+        return getEval(data);
+    }
+
+    public boolean contains(Board board) {
+        return contains(board.zobristKey());
+    }
+
+    public boolean contains(long key) {
+        return probe(key) != NO_ENTRY;
     }
 
     public void clear() {
-//        for (int i = 0; i < capacity; i++) {
-//            table[i] = DEFAULT_VALUE;
-//        }
-        Arrays.fill(table, DEFAULT_VALUE);
+        Arrays.fill(table, NO_ENTRY);
+    }
+
+    public static int getEval(long data) {
+        return (int) data;
+    }
+
+    public static int getBestMove(long data) {
+        return (int) ((data >>> 32) & 0xFFFF);
+    }
+
+    public static int getDepth(long data) {
+        return (int) ((data >>> 48) & MAX_DEPTH);
+    }
+
+    public static int getBound(long data) {
+        return (int) ((data >>> 56) & 0x3);
+    }
+
+    private static int getAge(long data) {
+        return (int) (data >>> 58);
+    }
+
+    private long pack(int eval, int depth, int bound, int bestMove) {
+        return ((long) eval & 0xFFFF_FFFFL)
+                | ((long) (bestMove & 0xFFFF) << 32)
+                | ((long) Math.min(Math.max(depth, 0), MAX_DEPTH) << 48)
+                | ((long) bound << 56)
+                | ((long) currentAge << 58);
     }
 
-    private int getInitialIndex(int hash) {
-        return Integer.remainderUnsigned(hash, capacity);
+    private int getBucketStart(long key) {
+        return (int) Long.remainderUnsigned(key, numBuckets) * LONGS_PER_BUCKET;
     }
 }
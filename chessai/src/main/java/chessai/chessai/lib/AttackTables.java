@@ -0,0 +1,98 @@
+package chessai.chessai.lib;
+
+/**
+ * Precomputed attacks of the pieces that do not slide (knights, kings and pawns), indexed by square.
+ * The bits are indexed the same way as in <code>BitBoardPosition</code>: bit 0 is A8, ..., bit 63 is H1.
+ * <p>
+ * The sliding pieces are in <code>MagicBitBoards</code>.
+ */
+public class AttackTables {
+
+    /**
+     * (file, row) offsets
+     */
+    private static final int[][] KNIGHT_OFFSETS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_OFFSETS = {{0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}};
+    private static final long FILE_A = 0x0101_0101_0101_0101L;
+    private static final long FILE_H = FILE_A << 7;
+
+    private static final long[] knightAttacks = new long[64];
+    private static final long[] kingAttacks = new long[64];
+    private static final long[] whitePawnAttacks = new long[64];
+    private static final long[] blackPawnAttacks = new long[64];
+    /**
+     * The square in front of the pawn (0 on the last row)
+     */
+    private static final long[] whitePawnPushes = new long[64];
+    private static final long[] blackPawnPushes = new long[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+
+            final int file = Square.getFile(square);
+            final int row = Square.getRow(square);
+
+            for (int[] offset : KNIGHT_OFFSETS)
+                knightAttacks[square] |= getBitIfOnBoard(file + offset[0], row + offset[1]);
+
+            for (int[] offset : KING_OFFSETS)
+                kingAttacks[square] |= getBitIfOnBoard(file + offset[0], row + offset[1]);
+
+            whitePawnAttacks[square] = getBitIfOnBoard(file - 1, row + 1) | getBitIfOnBoard(file + 1, row + 1);
+            blackPawnAttacks[square] = getBitIfOnBoard(file - 1, row - 1) | getBitIfOnBoard(file + 1, row - 1);
+
+            whitePawnPushes[square] = getBitIfOnBoard(file, row + 1);
+            blackPawnPushes[square] = getBitIfOnBoard(file, row - 1);
+        }
+    }
+
+    public static long getKnightAttacks(int squareIndex) {
+        return knightAttacks[squareIndex];
+    }
+
+    public static long getKingAttacks(int squareIndex) {
+        return kingAttacks[squareIndex];
+    }
+
+    /**
+     * @param color       the color of the pawn
+     * @param squareIndex the square of the pawn
+     * @return the squares the pawn attacks (diagonally forward)
+     */
+    public static long getPawnAttacks(PieceColor color, int squareIndex) {
+        return color == PieceColor.WHITE ? whitePawnAttacks[squareIndex] : blackPawnAttacks[squareIndex];
+    }
+
+    /**
+     * Computes the attacks of all pawns of a side at once, by shifting the whole bitboard
+     *
+     * @param color the color of the pawns
+     * @param pawns the squares of the pawns
+     * @return the squares attacked by at least one of the pawns
+     */
+    public static long getPawnAttacksOfAll(PieceColor color, long pawns) {
+
+        // white pawns go towards bit 0 (the 8th row), black pawns towards bit 63
+        if (color == PieceColor.WHITE)
+            return ((pawns & ~FILE_A) >>> 9) | ((pawns & ~FILE_H) >>> 7);
+
+        return ((pawns & ~FILE_A) << 7) | ((pawns & ~FILE_H) << 9);
+    }
+
+    /**
+     * @param color       the color of the pawn
+     * @param squareIndex the square of the pawn
+     * @return the square in front of the pawn (whether it is empty or not)
+     */
+    public static long getPawnPushes(PieceColor color, int squareIndex) {
+        return color == PieceColor.WHITE ? whitePawnPushes[squareIndex] : blackPawnPushes[squareIndex];
+    }
+
+    private static long getBitIfOnBoard(int file, int row) {
+
+        if (file < 0 || file > 7 || row < 0 || row > 7)
+            return 0;
+
+        return 1L << Square.getIndex(file, row);
+    }
+}
@@ -0,0 +1,220 @@
+package chessai.chessai.lib;
+
+import chessai.chessai.lib.pieces.*;
+
+import java.util.Arrays;
+
+/**
+ * Stores where the pieces are on the board, using one bitboard (long) per piece type and color.
+ * The bits are indexed the same way as in <code>BitMap</code>: bit 0 (lsb) is A8, ..., bit 63 (msb) is H1.
+ * <p>
+ * Pieces are identified by a piece code: <code>type</code> for white and <code>type + BLACK_OFFSET</code> for black.
+ * The types are ordered the same way as in <code>ZobristHash</code>.
+ */
+public class BitBoardPosition {
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int NUM_PIECE_TYPES = 6;
+    public static final int NUM_PIECE_CODES = 12;
+    /**
+     * This is added to the type of black pieces to get their piece code
+     */
+    public static final int BLACK_OFFSET = 6;
+    /**
+     * The piece code of an empty square
+     */
+    public static final int EMPTY = -1;
+
+    private static final char[] FEN_CHARS = {'P', 'N', 'B', 'R', 'Q', 'K', 'p', 'n', 'b', 'r', 'q', 'k'};
+
+    /**
+     * Indexed by piece code
+     */
+    private final long[] pieceBitBoards;
+    private long whiteOccupancy;
+    private long blackOccupancy;
+    /**
+     * The piece code on every square, so we do not have to look through all 12 bitboards to find a piece
+     */
+    private final byte[] pieceCodesOnSquares;
+    /**
+     * The sum of the values of the pieces (see <code>PieceSquareTables</code>), updated whenever a piece is put or removed
+     */
+    private int pieceSquareScore;
+
+    public BitBoardPosition() {
+        pieceBitBoards = new long[NUM_PIECE_CODES];
+        pieceCodesOnSquares = new byte[64];
+        Arrays.fill(pieceCodesOnSquares, (byte) EMPTY);
+    }
+
+    public BitBoardPosition(BitBoardPosition other) {
+        pieceBitBoards = other.pieceBitBoards.clone();
+        pieceCodesOnSquares = other.pieceCodesOnSquares.clone();
+        whiteOccupancy = other.whiteOccupancy;
+        blackOccupancy = other.blackOccupancy;
+        pieceSquareScore = other.pieceSquareScore;
+    }
+
+    /**
+     * Puts a piece on an empty square
+     *
+     * @param squareIndex the index of the square
+     * @param pieceCode   the code of the piece
+     */
+    public void put(int squareIndex, int pieceCode) {
+
+        final long bit = 1L << squareIndex;
+
+        pieceBitBoards[pieceCode] |= bit;
+        pieceCodesOnSquares[squareIndex] = (byte) pieceCode;
+        pieceSquareScore += PieceSquareTables.get(pieceCode, squareIndex);
+
+        if (pieceCode < BLACK_OFFSET)
+            whiteOccupancy |= bit;
+        else
+            blackOccupancy |= bit;
+    }
+
+    /**
+     * Removes the piece from a square
+     *
+     * @param squareIndex the index of the square
+     * @return the code of the removed piece (or <code>EMPTY</code> if there was none)
+     */
+    public int remove(int squareIndex) {
+
+        final int pieceCode = pieceCodesOnSquares[squareIndex];
+
+        if (pieceCode == EMPTY)
+            return EMPTY;
+
+        final long mask = ~(1L << squareIndex);
+
+        pieceBitBoards[pieceCode] &= mask;
+        pieceCodesOnSquares[squareIndex] = EMPTY;
+        whiteOccupancy &= mask;
+        blackOccupancy &= mask;
+        pieceSquareScore -= PieceSquareTables.get(pieceCode, squareIndex);
+
+        return pieceCode;
+    }
+
+    /**
+     * @param squareIndex the index of the square
+     * @return the code of the piece on the square (or <code>EMPTY</code>)
+     */
+    public int get(int squareIndex) {
+        return pieceCodesOnSquares[squareIndex];
+    }
+
+    public long getPieces(int pieceCode) {
+        return pieceBitBoards[pieceCode];
+    }
+
+    public long getPieces(int pieceType, PieceColor color) {
+        return pieceBitBoards[getPieceCode(pieceType, color)];
+    }
+
+    public long getWhiteOccupancy() {
+        return whiteOccupancy;
+    }
+
+    public long getBlackOccupancy() {
+        return blackOccupancy;
+    }
+
+    public long getOccupancy(PieceColor color) {
+        return color == PieceColor.WHITE ? whiteOccupancy : blackOccupancy;
+    }
+
+    public long getOccupancy() {
+        return whiteOccupancy | blackOccupancy;
+    }
+
+    /**
+     * @return the material and position value of the pieces from white's perspective (see <code>PieceSquareTables</code>)
+     */
+    public int getPieceSquareScore() {
+        return pieceSquareScore;
+    }
+
+    /**
+     * @param color the color of the king
+     * @return the index of the king's square (or -1 if there is no such king)
+     */
+    public int getKingIndex(PieceColor color) {
+        final long king = getPieces(KING, color);
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    public static int getPieceCode(int pieceType, PieceColor color) {
+        return color == PieceColor.WHITE ? pieceType : pieceType + BLACK_OFFSET;
+    }
+
+    public static int getPieceType(int pieceCode) {
+        return pieceCode < BLACK_OFFSET ? pieceCode : pieceCode - BLACK_OFFSET;
+    }
+
+    public static PieceColor getColor(int pieceCode) {
+        return pieceCode < BLACK_OFFSET ? PieceColor.WHITE : PieceColor.BLACK;
+    }
+
+    public static char getFENChar(int pieceCode) {
+        return FEN_CHARS[pieceCode];
+    }
+
+    /**
+     * @param fenChar the character representing the piece in a FEN string
+     * @return the code of the piece
+     */
+    public static int getPieceCode(char fenChar) {
+        for (int i = 0; i < NUM_PIECE_CODES; i++)
+            if (FEN_CHARS[i] == fenChar)
+                return i;
+
+        throw new IllegalStateException("Unexpected value: " + fenChar);
+    }
+
+    /**
+     * @param pieceClass the class of the piece
+     * @return the type of the piece
+     */
+    public static int getPieceType(Class<? extends Piece> pieceClass) {
+        if (pieceClass == Pawn.class)
+            return PAWN;
+        else if (pieceClass == Knight.class)
+            return KNIGHT;
+        else if (pieceClass == Bishop.class)
+            return BISHOP;
+        else if (pieceClass == Rook.class)
+            return ROOK;
+        else if (pieceClass == Queen.class)
+            return QUEEN;
+        else if (pieceClass == King.class)
+            return KING;
+
+        throw new IllegalArgumentException("Unexpected piece class: " + pieceClass);
+    }
+
+    /**
+     * @param pieceType the type of the piece
+     * @return the class of the piece
+     */
+    public static Class<? extends Piece> getPieceClass(int pieceType) {
+        return switch (pieceType) {
+            case PAWN -> Pawn.class;
+            case KNIGHT -> Knight.class;
+            case BISHOP -> Bishop.class;
+            case ROOK -> Rook.class;
+            case QUEEN -> Queen.class;
+            case KING -> King.class;
+            default -> throw new IllegalArgumentException("Unexpected piece type: " + pieceType);
+        };
+    }
+}
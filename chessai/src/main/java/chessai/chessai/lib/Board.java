@@ -5,7 +5,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +15,59 @@ import java.util.Optional;
 public class Board {
 
     /**
+     * No position has more legal moves than this, so a move buffer of this size is always enough
+     */
+    public static final int MAX_LEGAL_MOVES = 218;
+    /**
+     * The move of <code>doNullMove</code> in the undo stack (no legal move is encoded as 0, see <code>Move.encode</code>)
+     */
+    private static final int NULL_MOVE = 0;
+    /**
+     * The value of <code>enPassantTargetIndex</code> when the last move was not a double pawn push
+     */
+    public static final int NO_EN_PASSANT_TARGET = -1;
+
+    /**
+     * The piece values used by the static exchange evaluation, indexed by piece type
+     */
+    private static final int[] SEE_PIECE_VALUES = {100, 300, 320, 500, 900, 20000};
+
+    /**
+     * Everything that <code>doMove</code> cannot recompute when taking back a move.
+     * These are reused between moves, so walking the game tree does not allocate them again and again.
+     */
+    private static final class UndoState {
+        /**
+         * The encoded move (see <code>Move.encodeWithFlags</code>)
+         */
+        private int move;
+        private int movingPieceCode;
+        private int capturedPieceCode;
+        private int capturedIndex;
+        private boolean canBlackCastleKingSide;
+        private boolean canBlackCastleQueenSide;
+        private boolean canWhiteCastleKingSide;
+        private boolean canWhiteCastleQueenSide;
+        private int enPassantTargetIndex;
+        private int fullMoveClock;
+        private int halfMoveCounter;
+        private long cachedZobristKey;
+        private GameState cachedGameState;
+        private List<Move> cachedLegalMoves;
+        private BitMap whiteAttackSquares;
+        private BitMap blackAttackSquares;
+
+        private void clear() {
+            cachedGameState = null;
+            cachedLegalMoves = null;
+            whiteAttackSquares = null;
+            blackAttackSquares = null;
+        }
+    }
+
+    /**
+     * The placement of the pieces.
+     * The squares are indexed as
      * 0 = A8
      * 1 = B8
      * ...
@@ -22,7 +75,7 @@ public class Board {
      * ...
      * 63 = H1
      */
-    Piece[] squares;
+    BitBoardPosition position;
     /**
      * Determines the side which can move in the position.
      */
@@ -32,46 +85,65 @@ public class Board {
     public boolean canWhiteCastleKingSide;
     public boolean canWhiteCastleQueenSide;
     /**
-     * If a double pawn push was the last move, this represents its target
-     * (so the one on which that the enemy pawn would be after an en passant capture)
+     * If a double pawn push was the last move, this is the index of its target square
+     * (so the one on which that the enemy pawn would be after an en passant capture),
+     * otherwise <code>NO_EN_PASSANT_TARGET</code>
      */
-    public Square enPassantTarget;
+    public int enPassantTargetIndex = NO_EN_PASSANT_TARGET;
     public int fullMoveClock;
     public int halfMoveCounter;
-    public List<Integer> previousPositionHashes;
-    public BitMap whitePieces;
-    public BitMap blackPieces;
-    public BitMap whiteKing;
-    public BitMap blackKing;
+    /**
+     * The Zobrist keys of the positions before the moves that led to this one, the first
+     * <code>numPreviousPositionKeys</code> are used (it is a primitive stack, so making a move does not box a key)
+     */
+    private long[] previousPositionKeys = new long[16];
+    private int numPreviousPositionKeys;
     public BitMap whiteAttackSquares;
     public BitMap blackAttackSquares;
     private GameState cachedGameState;
     private List<Move> cachedLegalMoves;
-    private int cachedHash;
+    private long cachedZobristKey;
+    /**
+     * The encoded legal moves of the position, generated when we only needed to know whether there are any
+     * (allocated on first use)
+     */
+    private int[] moveBuffer;
+    /**
+     * The number of moves in <code>moveBuffer</code>, or -1 if they do not belong to the current position
+     */
+    private int numMovesInMoveBuffer = -1;
+    /**
+     * The moves of a single piece, used by <code>findLegalMove</code> (allocated on first use)
+     */
+    private int[] pieceMoveBuffer;
+    /**
+     * The material gains of the captures of <code>getStaticExchangeEvaluation</code>, reused between the calls
+     * (there are at most 32 pieces, so at most 32 captures on a square)
+     */
+    private final int[] seeGains = new int[32];
+    private UndoState[] undoStack = new UndoState[16];
+    private int undoStackSize;
 
     public Board(Board other) {
-        this(other.squares,
-                other.colorToMove,
-                other.canBlackCastleKingSide,
-                other.canBlackCastleQueenSide,
-                other.canWhiteCastleKingSide,
-                other.canWhiteCastleQueenSide,
-                other.enPassantTarget,
-                other.fullMoveClock,
-                other.halfMoveCounter,
-                other.previousPositionHashes,
-                other.whitePieces,
-                other.blackPieces,
-                other.whiteKing,
-                other.blackKing,
-                other.whiteAttackSquares,
-                other.blackAttackSquares,
-                other.cachedLegalMoves,
-                other.cachedGameState,
-                other.cachedHash);
-    }
-
-    public Board(Piece[] squares,
+        this.position = new BitBoardPosition(other.position);
+        this.colorToMove = other.colorToMove;
+        this.canBlackCastleKingSide = other.canBlackCastleKingSide;
+        this.canBlackCastleQueenSide = other.canBlackCastleQueenSide;
+        this.canWhiteCastleKingSide = other.canWhiteCastleKingSide;
+        this.canWhiteCastleQueenSide = other.canWhiteCastleQueenSide;
+        this.enPassantTargetIndex = other.enPassantTargetIndex;
+        this.fullMoveClock = other.fullMoveClock;
+        this.halfMoveCounter = other.halfMoveCounter;
+        this.previousPositionKeys = other.previousPositionKeys.clone();
+        this.numPreviousPositionKeys = other.numPreviousPositionKeys;
+        this.whiteAttackSquares = other.whiteAttackSquares != null ? new BitMap(other.whiteAttackSquares.getData()) : null;
+        this.blackAttackSquares = other.blackAttackSquares != null ? new BitMap(other.blackAttackSquares.getData()) : null;
+        this.cachedLegalMoves = other.cachedLegalMoves != null ? new ArrayList<>(other.cachedLegalMoves) : null;
+        this.cachedGameState = other.cachedGameState;
+        this.cachedZobristKey = other.cachedZobristKey;
+    }
+
+    public Board(BitBoardPosition position,
                  PieceColor colorToMove,
                  boolean canBlackCastleKingSide,
                  boolean canBlackCastleQueenSide,
@@ -80,49 +152,28 @@ public class Board {
                  Square enPassantTarget,
                  int fullMoveClock,
                  int halfMoveCounter,
-                 List<Integer> previousPositionHashes,
-                 BitMap whitePieces,
-                 BitMap blackPieces,
-                 BitMap whiteKing,
-                 BitMap blackKing,
+                 List<Long> previousPositionKeys,
                  BitMap whiteAttackSquares,
-                 BitMap blackAttackSquares, List<Move> cachedLegalMoves, GameState cachedGameState, int cachedHash) {
-
-        this.squares = new Piece[64];
-
-        for (int i = 0; i < 64; i++) {
-            if (squares[i] == null)
-                continue;
-
-            this.squares[i] = squares[i].copy();
-            this.squares[i].setSquare(new Square(i));
-//            try {
-//                this.squares[i] = squares[i].getClass().getConstructor(PieceColor.class).newInstance(squares[i].getColor());
-//            } catch (Exception e) {
-//                System.err.println(e.getMessage());
-//            }
-        }
+                 BitMap blackAttackSquares, List<Move> cachedLegalMoves, GameState cachedGameState, long cachedZobristKey) {
 
+        this.position = new BitBoardPosition(position);
         this.colorToMove = colorToMove;
         this.canBlackCastleKingSide = canBlackCastleKingSide;
         this.canBlackCastleQueenSide = canBlackCastleQueenSide;
         this.canWhiteCastleKingSide = canWhiteCastleKingSide;
         this.canWhiteCastleQueenSide = canWhiteCastleQueenSide;
-        this.enPassantTarget = enPassantTarget;
+        this.enPassantTargetIndex = enPassantTarget != null ? enPassantTarget.getIndex() : NO_EN_PASSANT_TARGET;
         this.fullMoveClock = fullMoveClock;
         this.halfMoveCounter = halfMoveCounter;
-        this.previousPositionHashes = new LinkedList<>();
-        if (previousPositionHashes != null)
-            this.previousPositionHashes.addAll(previousPositionHashes);
-        this.whitePieces = whitePieces != null ? new BitMap(whitePieces.getData()) : null;
-        this.blackPieces = blackPieces != null ? new BitMap(blackPieces.getData()) : null;
-        this.whiteKing = whiteKing != null ? new BitMap(whiteKing.getData()) : null;
-        this.blackKing = blackKing != null ? new BitMap(blackKing.getData()) : null;
+        if (previousPositionKeys != null) {
+            for (long key : previousPositionKeys)
+                pushPreviousPositionKey(key);
+        }
         this.whiteAttackSquares = whiteAttackSquares != null ? new BitMap(whiteAttackSquares.getData()) : null;
         this.blackAttackSquares = blackAttackSquares != null ? new BitMap(blackAttackSquares.getData()) : null;
         this.cachedLegalMoves = cachedLegalMoves != null ? new ArrayList<>(cachedLegalMoves) : null;
         this.cachedGameState = cachedGameState;
-        this.cachedHash = cachedHash;
+        this.cachedZobristKey = cachedZobristKey;
     }
 
     public Board(String fenString) throws ParseException {
@@ -136,14 +187,13 @@ public class Board {
      * @return the piece (or null if there is non)
      */
     public Piece get(@NotNull Square square) {
-        if (square.getIndex() == -1)
-            return null;
-        return squares[square.getIndex()];
+        return get(square.getIndex());
     }
 
 
     /**
-     * Gets the piece at the given square
+     * Gets the piece at the given square.
+     * The result is a new object that is only a view of the position, changing it does not change the board.
      *
      * @param index the index of the square
      * @return the piece (or null if there is non)
@@ -151,21 +201,57 @@ public class Board {
     public Piece get(int index) {
         if (index == -1)
             return null;
-        return squares[index];
+
+        final int pieceCode = position.get(index);
+
+        if (pieceCode == BitBoardPosition.EMPTY)
+            return null;
+
+        Piece piece = PieceFactory.generateFromCode(pieceCode);
+        piece.setSquare(new Square(index));
+
+        return piece;
+    }
+
+    /**
+     * Gets the bitboard representation of the position.
+     * It is not a copy, so it must not be modified.
+     *
+     * @return the position of the pieces
+     */
+    public BitBoardPosition getPosition() {
+        return position;
     }
 
     public Optional<PieceColor> getColorAtSquare(Square square) {
-        if (squares[square.getIndex()] == null)
-            return Optional.empty();
-        return Optional.of(squares[square.getIndex()].color);
+        return getColorAtSquare(square.getIndex());
     }
 
     public Optional<PieceColor> getColorAtSquare(int index) {
-        return Optional.ofNullable(squares[index]).map(Piece::getColor);
+        final int pieceCode = position.get(index);
+        if (pieceCode == BitBoardPosition.EMPTY)
+            return Optional.empty();
+        return Optional.of(BitBoardPosition.getColor(pieceCode));
     }
 
     public Optional<PieceColor> getColorAtSquare(int file, int row) {
-        return Optional.ofNullable(squares[file + (7 - row) * 8]).map(Piece::getColor);
+        return getColorAtSquare(file + (7 - row) * 8);
+    }
+
+    public BitMap getWhitePieces() {
+        return new BitMap(position.getWhiteOccupancy());
+    }
+
+    public BitMap getBlackPieces() {
+        return new BitMap(position.getBlackOccupancy());
+    }
+
+    public BitMap getWhiteKing() {
+        return new BitMap(position.getPieces(BitBoardPosition.KING, PieceColor.WHITE));
+    }
+
+    public BitMap getBlackKing() {
+        return new BitMap(position.getPieces(BitBoardPosition.KING, PieceColor.BLACK));
     }
 
     /**
@@ -180,31 +266,41 @@ public class Board {
             generateAttackMapsForBothSides();
         }
 
-        return color == PieceColor.WHITE ? blackAttackSquares.and(whiteKing).isNonZero() : whiteAttackSquares.and(blackKing).isNonZero();
+        return color == PieceColor.WHITE ? blackAttackSquares.and(getWhiteKing()).isNonZero() : whiteAttackSquares.and(getBlackKing()).isNonZero();
     }
 
     /**
-     * Populates the attack map bitmaps
+     * Determines whether the side to move is in check. Unlike <code>isKingInCheck</code>, it only looks for the attackers
+     * of the king, so it does not need the attack maps.
+     *
+     * @return true if the king of the side to move is in check
      */
-    private void generateAttackMapsForBothSides() {
-        whiteAttackSquares = new BitMap(0);
-        blackAttackSquares = new BitMap(0);
-
-        for (int index : whitePieces.getIndexesOfOnes()) {
-            Piece whitePiece = squares[index];
+    public boolean isInCheck() {
 
-            MoveResult moveResult = whitePiece.getPseudoLegalMoves(this);
+        final PieceColor enemyColor = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
 
-            whiteAttackSquares.orInPlace(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere());
-        }
-
-        for (int index : blackPieces.getIndexesOfOnes()) {
-            Piece blackPiece = squares[index];
+        return (getAttackersOf(position.getKingIndex(colorToMove), position.getOccupancy()) & position.getOccupancy(enemyColor)) != 0;
+    }
 
-            MoveResult moveResult = blackPiece.getPseudoLegalMoves(this);
+    /**
+     * Determines whether a side has pieces other than pawns and the king. Without them, zugzwang is common,
+     * so e.g. passing the turn is not a safe way to estimate the position.
+     *
+     * @param color the side
+     * @return true if the side has a knight, a bishop, a rook or a queen
+     */
+    public boolean hasNonPawnMaterial(PieceColor color) {
+        return (position.getOccupancy(color)
+                & ~position.getPieces(BitBoardPosition.PAWN, color)
+                & ~position.getPieces(BitBoardPosition.KING, color)) != 0;
+    }
 
-            blackAttackSquares.orInPlace(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere());
-        }
+    /**
+     * Populates the attack map bitmaps
+     */
+    private void generateAttackMapsForBothSides() {
+        whiteAttackSquares = new BitMap(getAttackedSquares(PieceColor.WHITE));
+        blackAttackSquares = new BitMap(getAttackedSquares(PieceColor.BLACK));
     }
 
     /**
@@ -217,55 +313,12 @@ public class Board {
         if (cachedGameState != null)
             return cachedGameState;
 
-        if (halfMoveCounter >= 100) {
-            cachedGameState = GameState.DRAW;
-            return GameState.DRAW;
-        }
-
-        // look for 3 fold repetition
-        int countOfCurrentPosition = 1;
-
-        int currentHash = hashCode();
-
-        for (int hash : previousPositionHashes)
-            if (hash == currentHash && countOfCurrentPosition < 3)
-                countOfCurrentPosition++;
-
-        if (countOfCurrentPosition == 3) {
-            cachedGameState = GameState.DRAW;
-            return GameState.DRAW;
-        }
-
-        LinkedList<Piece> piecesWithRightColor = new LinkedList<>();
-        LinkedList<Piece> piecesWithOppositeColor = new LinkedList<>();
-
-        for (Piece square : squares) {
-            if (square != null) {
-                if (square.getColor() == colorToMove) {
-                    piecesWithRightColor.add(square);
-                } else {
-                    piecesWithOppositeColor.add(square);
-                }
-            }
-        }
-
-        int numRightColorPieces = piecesWithRightColor.size();
-        int numOppositeColorPieces = piecesWithOppositeColor.size();
-
-        if (numRightColorPieces == 1 && numOppositeColorPieces == 1) {
+        if (isDrawByRule()) {
             cachedGameState = GameState.DRAW;
             return GameState.DRAW;
         }
 
-        boolean canRightWin = canRightColorWin(numRightColorPieces, piecesWithRightColor);
-        boolean canOppositeWin = canOppositeColorWin(numOppositeColorPieces, piecesWithOppositeColor);
-
-        if (!canRightWin && !canOppositeWin) {
-            cachedGameState = GameState.DRAW;
-            return GameState.DRAW;
-        }
-
-        boolean hasMoves = !getLegalMoves().isEmpty();
+        boolean hasMoves = hasLegalMoves();
 
         if (hasMoves) {
             cachedGameState = GameState.PLAYING;
@@ -286,73 +339,66 @@ public class Board {
         return result;
     }
 
-    private static boolean canRightColorWin(int numRightColorPieces, LinkedList<Piece> piecesWithRightColor) {
-        boolean canRightWin = true;
-        if (numRightColorPieces == 2) {
-            for (Piece rightPiece : piecesWithRightColor)
-                if (rightPiece instanceof Bishop || rightPiece instanceof Knight) {
-                    canRightWin = false;
-                    break;
-                }
-        }
-        return canRightWin;
-    }
-
-    private static boolean canOppositeColorWin(int numOppositeColorPieces, LinkedList<Piece> piecesWithOppositeColor) {
-        boolean canOppositeWin = true;
-        if (numOppositeColorPieces == 2) {
-            for (Piece oppositePiece : piecesWithOppositeColor)
-                if (oppositePiece instanceof Bishop || oppositePiece instanceof Knight) {
-                    canOppositeWin = false;
-                    break;
-                }
-        }
-        return canOppositeWin;
-    }
-
     /**
-     * Populates the attack square bitmaps
+     * Determines whether the game is drawn by the fifty-move rule, by threefold repetition or by insufficient material.
+     * These do not depend on the legal moves, so (unlike <code>getState</code>) this does not generate them.
+     *
+     * @return true if the position is a draw by one of these rules
      */
-    public void generateAttackSquare() {
+    public boolean isDrawByRule() {
 
-        PieceColor realColorToMove = colorToMove;
+        if (halfMoveCounter >= 100)
+            return true;
 
-        if (whiteAttackSquares == null) {
-            whiteAttackSquares = new BitMap(0);
+        // look for 3 fold repetition
+        // (only the positions since the last capture or pawn move can be the same as this one)
+        int countOfCurrentPosition = 1;
 
-            colorToMove = PieceColor.WHITE;
+        final long currentKey = zobristKey();
 
-            for (int index = 0; index < 64; index++) {
+        final int firstReversibleIndex = Math.max(0, numPreviousPositionKeys - halfMoveCounter);
 
-                if (!whitePieces.getBit(index))
-                    continue;
+        for (int i = numPreviousPositionKeys - 1; i >= firstReversibleIndex && countOfCurrentPosition < 3; i--)
+            if (previousPositionKeys[i] == currentKey)
+                countOfCurrentPosition++;
 
-                Piece whitePiece = squares[index];
+        if (countOfCurrentPosition == 3)
+            return true;
 
-                MoveResult moveResult = whitePiece.getPseudoLegalMoves(this);
+        final PieceColor oppositeColor = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
 
-                whiteAttackSquares.orInPlace(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere());
-            }
-        }
-        if (blackAttackSquares == null) {
-            blackAttackSquares = new BitMap(0);
+        int numRightColorPieces = Long.bitCount(position.getOccupancy(colorToMove));
+        int numOppositeColorPieces = Long.bitCount(position.getOccupancy(oppositeColor));
 
-            colorToMove = PieceColor.BLACK;
+        if (numRightColorPieces == 1 && numOppositeColorPieces == 1)
+            return true;
 
-            for (int index = 0; index < 64; index++) {
+        boolean canRightWin = canColorWin(numRightColorPieces, colorToMove);
+        boolean canOppositeWin = canColorWin(numOppositeColorPieces, oppositeColor);
 
-                if (!blackPieces.getBit(index))
-                    continue;
+        return !canRightWin && !canOppositeWin;
+    }
+
+    /**
+     * A lone king with a knight or a bishop cannot win
+     */
+    private boolean canColorWin(int numPieces, PieceColor color) {
+        if (numPieces != 2)
+            return true;
 
-                Piece whitePiece = squares[index];
+        return (position.getPieces(BitBoardPosition.BISHOP, color) | position.getPieces(BitBoardPosition.KNIGHT, color)) == 0;
+    }
 
-                MoveResult moveResult = whitePiece.getPseudoLegalMoves(this);
+    /**
+     * Populates the attack square bitmaps
+     */
+    public void generateAttackSquare() {
 
-                blackAttackSquares.orInPlace(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere());
-            }
-        }
+        if (whiteAttackSquares == null)
+            whiteAttackSquares = new BitMap(getAttackedSquares(PieceColor.WHITE));
 
-        colorToMove = realColorToMove;
+        if (blackAttackSquares == null)
+            blackAttackSquares = new BitMap(getAttackedSquares(PieceColor.BLACK));
     }
 
     /**
@@ -365,431 +411,427 @@ public class Board {
         if (cachedLegalMoves != null)
             return cachedLegalMoves;
 
-        BitMap enemyPieces;
-        BitMap checkTrackForOurKing;
-        BitMap enemyDoubleAttackSquares = new BitMap(0);
-        BitMap pinMapForOurPieces;
-        BitMap ourPieces;
-        BitMap ourKing;
-        BitMap enemyPiecesGivingCheck = new BitMap(0);
-        BitMap uncapturableEnPassantTarget = new BitMap(0);
-        BitMap enemyAttackSquares = new BitMap(0);
-
-        if (colorToMove == PieceColor.WHITE) {
-            enemyPieces = blackPieces;
-            ourPieces = whitePieces;
-            ourKing = whiteKing;
-            checkTrackForOurKing = new BitMap(0);
-            pinMapForOurPieces = new BitMap(0);
-        } else {
-            enemyPieces = whitePieces;
-            ourPieces = blackPieces;
-            ourKing = blackKing;
-            checkTrackForOurKing = new BitMap(0);
-            pinMapForOurPieces = new BitMap(0);
-        }
+        int[] moves = new int[MAX_LEGAL_MOVES];
 
-        // generate moves for the other side, so we can determine whether we are in or will be in check
-        for (int index = 0; index < 64; index++) {
+        final int numMoves = generateLegalMoves(moves, 0);
 
-            if (!enemyPieces.getBit(index))
-                continue;
+        List<Move> result = new ArrayList<>(numMoves);
 
-            Piece enemyPiece = squares[index];
+        for (int i = 0; i < numMoves; i++)
+            result.add(Move.decode(moves[i]));
 
-            MoveResult moveResult = enemyPiece.getPseudoLegalMoves(this);
+        cachedLegalMoves = result;
 
-            checkTrackForOurKing.orInPlace(moveResult.checkTrack());
-            enemyDoubleAttackSquares.orInPlace(enemyAttackSquares.and(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere()));
-            enemyAttackSquares.orInPlace(moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere());
-            pinMapForOurPieces.orInPlace(moveResult.pinMap());
-            uncapturableEnPassantTarget.orInPlace(moveResult.isEnPassantTargetUnCapturableBecausePin());
+        return result;
+    }
 
-            if (moveResult.attackTargetsWhilePretendingTheEnemyKingIsNotThere().and(ourKing).isNonZero())
-                enemyPiecesGivingCheck.setBitInPlace(index, true);
-        }
+    /**
+     * Calculates the legal moves in the given position without creating <code>Move</code> objects.
+     * This is what searches should use, as it does not allocate anything if the buffers are reused.
+     *
+     * @param buffer the array the encoded moves (see <code>Move.encodeWithFlags</code>) are written into,
+     *               it needs room for <code>MAX_LEGAL_MOVES</code> moves after <code>offset</code>
+     * @param offset the index of the first move in <code>buffer</code>
+     * @return the number of legal moves
+     */
+    public int generateLegalMoves(int[] buffer, int offset) {
 
-        if (colorToMove == PieceColor.WHITE)
-            blackAttackSquares = enemyAttackSquares;
-        else
-            whiteAttackSquares = enemyAttackSquares;
+        if (cachedLegalMoves != null) {
+            for (int i = 0; i < cachedLegalMoves.size(); i++)
+                buffer[offset + i] = cachedLegalMoves.get(i).encodeWithFlags();
 
-        // double check
-        if (enemyDoubleAttackSquares.and(ourKing).isNonZero()) {
-//            System.out.printf("%s is in double check%n", colorToMove);
-            return generateMovesForDoubleCheckSituation(ourKing, enemyAttackSquares);
+            return cachedLegalMoves.size();
         }
 
-        int ourKingIndex = ourKing.getFirstIndexOfOne();
-
-        List<Move> result = new LinkedList<>();
-
-        // we are in check, so only moves are
-        // - with the king
-        // - blocking
-        // - capturing the piece giving check
-        if (enemyAttackSquares.and(ourKing).isNonZero()) {
-//            System.out.printf("%s is in check%n", colorToMove);
-            generateMovesForSingleCheckSituation(ourPieces,
-                    enemyAttackSquares,
-                    result,
-                    checkTrackForOurKing,
-                    enemyPiecesGivingCheck,
-                    uncapturableEnPassantTarget,
-                    ourKing,
-                    pinMapForOurPieces,
-                    ourKingIndex);
-        } else {
-//            System.out.printf("%s has a general situation%n", colorToMove);
-            // general situation
-            generateMovesForGeneralSituation(pinMapForOurPieces,
-                    ourPieces,
-                    ourKing,
-                    uncapturableEnPassantTarget,
-                    enemyAttackSquares,
-                    result, ourKingIndex);
+        if (numMovesInMoveBuffer != -1) {
+            System.arraycopy(moveBuffer, 0, buffer, offset, numMovesInMoveBuffer);
+            return numMovesInMoveBuffer;
         }
 
-        cachedLegalMoves = result;
+        return generateLegalMovesWithoutCache(buffer, offset, ~0L, true, true);
+    }
 
-        return result;
+    /**
+     * Calculates the legal captures (including en passant) and promotions, the moves that change the material
+     * (see <code>generateLegalMoves</code>). With <code>generateLegalQuietMoves</code>, they are all the legal moves,
+     * so a search can skip generating the quiet moves if it does not need them.
+     *
+     * @return the number of legal captures and promotions
+     */
+    public int generateLegalCaptures(int[] buffer, int offset) {
+        return generateLegalMoves(buffer, offset, ~0L, true, false);
     }
 
-    private void generateMovesForGeneralSituation(BitMap pinMapForOurPieces,
-                                                  BitMap ourPieces,
-                                                  BitMap ourKing,
-                                                  BitMap uncapturableEnPassantTarget,
-                                                  BitMap enemyAttackSquares,
-                                                  List<Move> result, int ourKingIndex) {
-        for (int ourPieceIndex = 0; ourPieceIndex < 64; ourPieceIndex++) {
+    /**
+     * Calculates the legal moves that are not captures or promotions (see <code>generateLegalCaptures</code>)
+     *
+     * @return the number of legal quiet moves
+     */
+    public int generateLegalQuietMoves(int[] buffer, int offset) {
+        return generateLegalMoves(buffer, offset, ~0L, false, true);
+    }
 
-            if (!ourPieces.getBit(ourPieceIndex))
-                continue;
+    /**
+     * Looks for a legal move with the squares and the promotion of an encoded move (see <code>Move.encode</code>).
+     * Only the moves of the piece on the from square are generated, so this is a cheap way to check whether a move
+     * remembered from another position (e.g. a killer move) can be played here.
+     *
+     * @param encodedMove the move (its flags are ignored)
+     * @return the legal move with its flags (see <code>Move.encodeWithFlags</code>), or 0 if there is no such move
+     */
+    public int findLegalMove(int encodedMove) {
 
-            Piece ourPiece = squares[ourPieceIndex];
-
-            if (ourKing.getBit(ourPieceIndex)) {
-                generateKingMovesForGeneralSituation(ourPieceIndex,
-                        enemyAttackSquares,
-                        result);
-            } else {
-                generateNonKingMovesForGeneralSituation(ourPieceIndex,
-                        pinMapForOurPieces,
-                        ourPiece,
-                        result,
-                        uncapturableEnPassantTarget,
-                        ourKingIndex);
-            }
+        final int fromIndex = Move.getFromIndex(encodedMove);
+        final int pieceCode = position.get(fromIndex);
+
+        if (pieceCode == BitBoardPosition.EMPTY || BitBoardPosition.getColor(pieceCode) != colorToMove)
+            return 0;
+
+        if (pieceMoveBuffer == null)
+            pieceMoveBuffer = new int[MAX_LEGAL_MOVES];
+
+        final int numMoves = generateLegalMoves(pieceMoveBuffer, 0, 1L << fromIndex, true, true);
+
+        for (int i = 0; i < numMoves; i++) {
+            if (Move.withoutFlags(pieceMoveBuffer[i]) == Move.withoutFlags(encodedMove))
+                return pieceMoveBuffer[i];
         }
+
+        return 0;
     }
 
-    private void generateNonKingMovesForGeneralSituation(int ourPieceIndex,
-                                                         BitMap pinMapForOurPieces,
-                                                         Piece ourPiece,
-                                                         List<Move> result,
-                                                         BitMap uncapturableEnPassantTarget,
-                                                         int ourKingIndex) {
+    /**
+     * Calculates a part of the legal moves, the moves are taken from the cache if the position has one
+     *
+     * @param fromSquares       only the moves of the pieces on these squares are generated
+     * @param includeCaptures   whether the captures and promotions are generated
+     * @param includeQuietMoves whether the other moves are generated
+     * @return the number of generated moves
+     */
+    private int generateLegalMoves(int[] buffer, int offset, long fromSquares, boolean includeCaptures, boolean includeQuietMoves) {
+
+        if (cachedLegalMoves == null && numMovesInMoveBuffer == -1)
+            return generateLegalMovesWithoutCache(buffer, offset, fromSquares, includeCaptures, includeQuietMoves);
+
+        final int numCachedMoves = cachedLegalMoves != null ? cachedLegalMoves.size() : numMovesInMoveBuffer;
+
+        int numMoves = 0;
 
-        MoveResult moveResult = squares[ourPieceIndex].getPseudoLegalMoves(this);
+        for (int i = 0; i < numCachedMoves; i++) {
 
-        BitMap validMoveSquares = pinMapForOurPieces.getBit(ourPieceIndex) ?
-                moveResult.moveTargets().and(pinMapForOurPieces).and(BitMap.getLineThroughSquares(ourKingIndex, ourPieceIndex))
-                : moveResult.moveTargets();
+            final int move = cachedLegalMoves != null ? cachedLegalMoves.get(i).encodeWithFlags() : moveBuffer[i];
 
-        generateNonKingMovesForWithGivenMoveMap(ourPieceIndex,
-                ourPiece,
-                result,
-                uncapturableEnPassantTarget,
-                moveResult,
-                validMoveSquares);
+            if ((fromSquares & (1L << Move.getFromIndex(move))) != 0 && (isCaptureOrPromotion(move) ? includeCaptures : includeQuietMoves))
+                buffer[offset + numMoves++] = move;
+        }
+
+        return numMoves;
     }
 
-    private void generateNonKingMovesForWithGivenMoveMap(int ourPieceIndex,
-                                                         Piece ourPiece,
-                                                         List<Move> result,
-                                                         BitMap uncapturableEnPassantTarget,
-                                                         MoveResult moveResult,
-                                                         BitMap validMoveSquares) {
-        for (int index = 0; index < 64; index++) {
+    private static boolean isCaptureOrPromotion(int move) {
+        return Move.isCapture(move) || Move.getPromotionPieceType(move) != 0;
+    }
 
-            if (!validMoveSquares.getBit(index))
-                continue;
+    /**
+     * Generates the legal moves in a single pass over the bitboards: first we find the enemy pieces giving check,
+     * our pinned pieces and the squares the enemy attacks, then every move is only emitted if it is legal.
+     *
+     * @param fromSquares       only the moves of the pieces on these squares are generated
+     * @param includeCaptures   whether the captures and promotions are generated
+     * @param includeQuietMoves whether the other moves are generated
+     */
+    private int generateLegalMovesWithoutCache(int[] buffer, int offset, long fromSquares, boolean includeCaptures, boolean includeQuietMoves) {
 
-            if (!(ourPiece instanceof Pawn)) {
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        null,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ));
-                continue;
-            }
+        final PieceColor enemyColor = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
 
-            // we cannot move there, because it would be a pinned en passant
-            if (uncapturableEnPassantTarget.getBit(index)) {
-                continue;
-            }
+        final long ourPieces = position.getOccupancy(colorToMove);
+        final long enemyPieces = position.getOccupancy(enemyColor);
+        final long occupancy = ourPieces | enemyPieces;
+        final int ourKingIndex = position.getKingIndex(colorToMove);
+
+        // the squares we can move to (without looking at checks and pins)
+        final long targetSquares = (includeCaptures ? enemyPieces : 0) | (includeQuietMoves ? ~occupancy : 0);
+
+        // the attacks only change if a move is made, so they are reused if we generate the moves in parts
+        final BitMap enemyAttackBitMap = colorToMove == PieceColor.WHITE ? blackAttackSquares : whiteAttackSquares;
+        final long enemyAttackSquares = enemyAttackBitMap != null ? enemyAttackBitMap.getData() : getAttackedSquares(enemyColor);
+
+        if (enemyAttackBitMap == null) {
+            if (colorToMove == PieceColor.WHITE)
+                blackAttackSquares = new BitMap(enemyAttackSquares);
+            else
+                whiteAttackSquares = new BitMap(enemyAttackSquares);
+        }
+
+        final long checkers = getAttackersOf(ourKingIndex, occupancy) & enemyPieces;
+
+        final int startOffset = offset;
+
+        // double check: only the king can move
+        if (Long.bitCount(checkers) > 1) {
+
+            if ((fromSquares & (1L << ourKingIndex)) == 0)
+                return 0;
+
+            return generateKingMovesToSafeSquares(ourKingIndex, targetSquares, enemyPieces, enemyAttackSquares, buffer, offset) - startOffset;
+        }
+
+        // in check, the other pieces have to capture the piece giving check or block its line
+        final long checkMask = checkers == 0 ? ~0L
+                : checkers | MagicBitBoards.getSquaresBetween(ourKingIndex, Long.numberOfTrailingZeros(checkers));
+
+        final long pinnedPieces = getPinnedPieces(ourKingIndex, ourPieces, enemyPieces, enemyColor);
+
+        for (long ourPiecesLeft = ourPieces & fromSquares; ourPiecesLeft != 0; ourPiecesLeft &= ourPiecesLeft - 1) {
+
+            final int from = Long.numberOfTrailingZeros(ourPiecesLeft);
+            final int pieceType = BitBoardPosition.getPieceType(position.get(from));
+
+            if (pieceType == BitBoardPosition.KING) {
+                offset = generateKingMovesToSafeSquares(from, targetSquares, enemyPieces, enemyAttackSquares, buffer, offset);
+
+                if (checkers == 0 && includeQuietMoves)
+                    offset = generateCastlingMoves(from, occupancy, enemyAttackSquares, buffer, offset);
 
-            if (moveResult.isResultPromotion().getBit(index)) {
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        Knight.class,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ));
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        Bishop.class,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ));
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        Rook.class,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ));
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        Queen.class,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ));
                 continue;
             }
 
-            if (
-                    moveResult.isResultEnPassant().getBit(index)
-            ) {
-                result.add(new Move(
-                        ourPieceIndex,
-                        index,
-                        null,
-                        true,
-                        true,
-                        SpecialMove.NONE
-                ));
+            // a pinned piece can only move along the line of the pin
+            final long pinMask = (pinnedPieces & (1L << from)) != 0 ? MagicBitBoards.getLine(ourKingIndex, from) : ~0L;
+
+            if (pieceType == BitBoardPosition.PAWN) {
+                offset = generatePawnMoves(from, occupancy, enemyPieces, checkMask & pinMask, includeCaptures, includeQuietMoves, ourKingIndex, enemyColor, buffer, offset);
                 continue;
             }
 
-            result.add(new Move(
-                    ourPieceIndex,
-                    index,
-                    null,
-                    moveResult.isResultCapture().getBit(index),
-                    false,
-                    moveResult.isResultDoublePawnMove().getBit(index) ? SpecialMove.DOUBLE_PAWN_PUSH : SpecialMove.NONE
-            ));
+            final long attacks = switch (pieceType) {
+                case BitBoardPosition.KNIGHT -> AttackTables.getKnightAttacks(from);
+                case BitBoardPosition.BISHOP -> MagicBitBoards.getBishopAttacks(from, occupancy);
+                case BitBoardPosition.ROOK -> MagicBitBoards.getRookAttacks(from, occupancy);
+                default -> MagicBitBoards.getQueenAttacks(from, occupancy);
+            };
+
+            for (long targets = attacks & targetSquares & checkMask & pinMask; targets != 0; targets &= targets - 1) {
 
+                final int to = Long.numberOfTrailingZeros(targets);
+
+                buffer[offset++] = Move.encode(from, to, 0, (enemyPieces & (1L << to)) != 0, false, SpecialMove.NONE);
+            }
         }
+
+        return offset - startOffset;
     }
 
-    private void generateKingMovesForGeneralSituation(int ourPieceIndex,
-                                                      BitMap enemyAttackSquares,
-                                                      List<Move> result) {
-        MoveResult moveResult;
-        moveResult = squares[ourPieceIndex].getPseudoLegalMoves(this);
-
-        // we cannot move into another check, or castle from a check
-        BitMap normalMoves = moveResult.moveTargets()
-                .and(enemyAttackSquares.invert())
-                .and(moveResult.isResultKingSideCastle().invert())
-                .and(moveResult.isResultQueenSideCastle().invert());
-
-        // normal moves
-        result.addAll(normalMoves
-                .getIndexesOfOnes()
-                .stream()
-                .map(index -> new Move(
-                        ourPieceIndex,
-                        index,
-                        null,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ))
-                .toList());
-
-        // castling
-        BitMap kingSideCastlingMoves = moveResult.moveTargets().and(moveResult.isResultKingSideCastle());
-        BitMap queenSideCastlingMoves = moveResult.moveTargets().and(moveResult.isResultQueenSideCastle());
-
-        // white king side
-        if (colorToMove == PieceColor.WHITE
-                && kingSideCastlingMoves.isNonZero()
-                && !enemyAttackSquares.getBit(Square.getIndex("F1"))
-                && !enemyAttackSquares.getBit(Square.getIndex("G1"))
-        ) {
-            result.add(new Move(
-                    ourPieceIndex,
-                    Square.getIndex("G1"),
-                    null,
-                    false,
-                    false,
-                    SpecialMove.KING_SIDE_CASTLE
-            ));
-        }
+    /**
+     * Gets the squares a side attacks as a bitboard. The attack maps are used if they were already generated,
+     * otherwise the squares are computed from the attack tables without generating (or allocating) the maps.
+     *
+     * @param color the attacking side
+     * @return the attacked squares (bit 0 is A8, ..., bit 63 is H1)
+     */
+    public long getAttackBitBoard(PieceColor color) {
 
-        // black king side
-        if (colorToMove == PieceColor.BLACK
-                && kingSideCastlingMoves.isNonZero()
-                && !enemyAttackSquares.getBit(Square.getIndex("F8"))
-                && !enemyAttackSquares.getBit(Square.getIndex("G8"))
-        ) {
-            result.add(new Move(
-                    ourPieceIndex,
-                    Square.getIndex("G8"),
-                    null,
-                    false,
-                    false,
-                    SpecialMove.KING_SIDE_CASTLE
-            ));
-        }
+        final BitMap attackSquares = color == PieceColor.WHITE ? whiteAttackSquares : blackAttackSquares;
+
+        return attackSquares != null ? attackSquares.getData() : getAttackedSquares(color);
+    }
+
+    /**
+     * Calculates the squares a side attacks. Sliding pieces look through the enemy king,
+     * so the king cannot step back along the line of a check.
+     *
+     * @param color the attacking side
+     * @return the attacked squares
+     */
+    private long getAttackedSquares(PieceColor color) {
+
+        final PieceColor otherColor = color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        final long occupancy = position.getOccupancy() & ~position.getPieces(BitBoardPosition.KING, otherColor);
+
+        long attacks = AttackTables.getPawnAttacksOfAll(color, position.getPieces(BitBoardPosition.PAWN, color));
 
+        for (long pieces = position.getPieces(BitBoardPosition.KNIGHT, color); pieces != 0; pieces &= pieces - 1)
+            attacks |= AttackTables.getKnightAttacks(Long.numberOfTrailingZeros(pieces));
 
-        // white queen side
-        if (colorToMove == PieceColor.WHITE
-                && queenSideCastlingMoves.isNonZero()
-                && !enemyAttackSquares.getBit(Square.getIndex("C1"))
-                && !enemyAttackSquares.getBit(Square.getIndex("D1"))
-        ) {
-            result.add(new Move(
-                    ourPieceIndex,
-                    Square.getIndex("C1"),
-                    null,
-                    false,
-                    false,
-                    SpecialMove.QUEEN_SIDE_CASTLE
-            ));
+        final long queens = position.getPieces(BitBoardPosition.QUEEN, color);
+
+        for (long pieces = position.getPieces(BitBoardPosition.BISHOP, color) | queens; pieces != 0; pieces &= pieces - 1)
+            attacks |= MagicBitBoards.getBishopAttacks(Long.numberOfTrailingZeros(pieces), occupancy);
+
+        for (long pieces = position.getPieces(BitBoardPosition.ROOK, color) | queens; pieces != 0; pieces &= pieces - 1)
+            attacks |= MagicBitBoards.getRookAttacks(Long.numberOfTrailingZeros(pieces), occupancy);
+
+        attacks |= AttackTables.getKingAttacks(position.getKingIndex(color));
+
+        return attacks;
+    }
+
+    /**
+     * Finds our pieces that are the only piece between our king and an enemy sliding piece
+     */
+    private long getPinnedPieces(int ourKingIndex, long ourPieces, long enemyPieces, PieceColor enemyColor) {
+
+        final long enemyQueens = position.getPieces(BitBoardPosition.QUEEN, enemyColor);
+        final long enemyRooksAndQueens = position.getPieces(BitBoardPosition.ROOK, enemyColor) | enemyQueens;
+        final long enemyBishopsAndQueens = position.getPieces(BitBoardPosition.BISHOP, enemyColor) | enemyQueens;
+
+        // the sliders that would attack our king if only the enemy pieces were on the board
+        long snipers = (MagicBitBoards.getRookAttacks(ourKingIndex, enemyPieces) & enemyRooksAndQueens)
+                | (MagicBitBoards.getBishopAttacks(ourKingIndex, enemyPieces) & enemyBishopsAndQueens);
+
+        long pinnedPieces = 0;
+
+        for (; snipers != 0; snipers &= snipers - 1) {
+
+            final long blockers = MagicBitBoards.getSquaresBetween(ourKingIndex, Long.numberOfTrailingZeros(snipers)) & (ourPieces | enemyPieces);
+
+            if (Long.bitCount(blockers) == 1)
+                pinnedPieces |= blockers & ourPieces;
         }
 
-        // black queen side
-        if (colorToMove == PieceColor.BLACK
-                && queenSideCastlingMoves.isNonZero()
-                && !enemyAttackSquares.getBit(Square.getIndex("C8"))
-                && !enemyAttackSquares.getBit(Square.getIndex("D8"))
-        ) {
-            result.add(new Move(
-                    ourPieceIndex,
-                    Square.getIndex("C8"),
-                    null,
-                    false,
-                    false,
-                    SpecialMove.QUEEN_SIDE_CASTLE
-            ));
+        return pinnedPieces;
+    }
+
+    /**
+     * Adds the normal (not castling) king moves that do not step into check
+     *
+     * @param targetSquares the squares we can move to (the empty and the enemy squares, or a part of them)
+     */
+    private int generateKingMovesToSafeSquares(int ourKingIndex, long targetSquares, long enemyPieces, long enemyAttackSquares, int[] buffer, int offset) {
+
+        for (long targets = AttackTables.getKingAttacks(ourKingIndex) & targetSquares & ~enemyAttackSquares; targets != 0; targets &= targets - 1) {
+
+            final int to = Long.numberOfTrailingZeros(targets);
+
+            buffer[offset++] = Move.encode(ourKingIndex, to, 0, (enemyPieces & (1L << to)) != 0, false, SpecialMove.NONE);
         }
+
+        return offset;
+    }
+
+    /**
+     * Adds the castling moves (we must not be in check when calling this).
+     * The squares between the king and the rook have to be empty, and the king cannot pass through an attacked square.
+     */
+    private int generateCastlingMoves(int ourKingIndex, long occupancy, long enemyAttackSquares, int[] buffer, int offset) {
+
+        final boolean canCastleKingSide = colorToMove == PieceColor.WHITE ? canWhiteCastleKingSide : canBlackCastleKingSide;
+        final boolean canCastleQueenSide = colorToMove == PieceColor.WHITE ? canWhiteCastleQueenSide : canBlackCastleQueenSide;
+        final int row = colorToMove == PieceColor.WHITE ? 0 : 7;
+
+        final long kingSidePath = (1L << Square.getIndex(5, row)) | (1L << Square.getIndex(6, row));
+        final long queenSidePath = (1L << Square.getIndex(2, row)) | (1L << Square.getIndex(3, row));
+        final long queenSideEmptySquares = queenSidePath | (1L << Square.getIndex(1, row));
+
+        if (canCastleKingSide && (occupancy & kingSidePath) == 0 && (enemyAttackSquares & kingSidePath) == 0)
+            buffer[offset++] = Move.encode(ourKingIndex, Square.getIndex(6, row), 0, false, false, SpecialMove.KING_SIDE_CASTLE);
+
+        if (canCastleQueenSide && (occupancy & queenSideEmptySquares) == 0 && (enemyAttackSquares & queenSidePath) == 0)
+            buffer[offset++] = Move.encode(ourKingIndex, Square.getIndex(2, row), 0, false, false, SpecialMove.QUEEN_SIDE_CASTLE);
+
+        return offset;
     }
 
-    private void generateMovesForSingleCheckSituation(BitMap ourPieces,
-                                                      BitMap enemyAttackSquares,
-                                                      List<Move> result,
-                                                      BitMap checkTrackForOurKing,
-                                                      BitMap enemyPiecesGivingCheck,
-                                                      BitMap uncapturableEnPassantTarget,
-                                                      BitMap ourKing,
-                                                      BitMap pinMapForOurPieces,
-                                                      int ourKingIndex) {
-        for (int ourPieceIndex : ourPieces.getIndexesOfOnes()) {
-            Piece ourPiece = squares[ourPieceIndex];
-
-            if (ourKing.getBit(ourPieceIndex)) {
-                // we can capture, or run away
-                generateKingMovesForSingleCheckSituation(enemyAttackSquares,
-                        result,
-                        ourPieceIndex);
-            } else {
-                // we can block or capture
-                generateBlockingOrCapturingMovesForSingleCheckSituation(result,
-                        checkTrackForOurKing,
-                        enemyPiecesGivingCheck,
-                        ourPieceIndex,
-                        ourPiece,
-                        uncapturableEnPassantTarget,
-                        pinMapForOurPieces,
-                        ourKingIndex);
+    /**
+     * Adds the legal moves of one of our pawns
+     *
+     * @param validSquares      the squares the pawn can move to without leaving the king in check
+     *                          (en passant is checked separately, as it removes a second piece from the board)
+     * @param includeCaptures   whether the captures and promotions are generated
+     * @param includeQuietMoves whether the other moves are generated
+     */
+    private int generatePawnMoves(int from,
+                                  long occupancy,
+                                  long enemyPieces,
+                                  long validSquares,
+                                  boolean includeCaptures,
+                                  boolean includeQuietMoves,
+                                  int ourKingIndex,
+                                  PieceColor enemyColor,
+                                  int[] buffer,
+                                  int offset) {
+
+        final int row = Square.getRow(from);
+        final boolean isPromotion = colorToMove == PieceColor.WHITE ? row == 6 : row == 1;
+
+        final long singlePush = AttackTables.getPawnPushes(colorToMove, from) & ~occupancy;
+
+        // we are on the starting row and there is nothing in front of us
+        long doublePush = 0;
+        if ((colorToMove == PieceColor.WHITE ? row == 1 : row == 6) && singlePush != 0)
+            doublePush = AttackTables.getPawnPushes(colorToMove, Long.numberOfTrailingZeros(singlePush)) & ~occupancy;
+
+        final long attacks = AttackTables.getPawnAttacks(colorToMove, from);
+
+        final long enPassantTargetBit = enPassantTargetIndex != NO_EN_PASSANT_TARGET ? 1L << enPassantTargetIndex : 0;
+
+        final long pushTargets = (singlePush | doublePush) & validSquares;
+        final long captureTargets = (attacks & enemyPieces & validSquares) | (attacks & enPassantTargetBit);
+
+        // every move of a pawn that is about to promote is a promotion
+        final long targetsToGenerate = isPromotion
+                ? (includeCaptures ? pushTargets | captureTargets : 0)
+                : (includeCaptures ? captureTargets : 0) | (includeQuietMoves ? pushTargets : 0);
+
+        // kept in the order of the squares, like the other pieces
+        for (long targets = targetsToGenerate; targets != 0; targets &= targets - 1) {
+
+            final int to = Long.numberOfTrailingZeros(targets);
+            final long toBit = 1L << to;
+
+            if (toBit == enPassantTargetBit) {
+                if (isEnPassantLegal(from, to, ourKingIndex, enemyColor))
+                    buffer[offset++] = Move.encode(from, to, 0, true, true, SpecialMove.NONE);
+                continue;
             }
 
+            final boolean isCapture = (enemyPieces & toBit) != 0;
+
+            if (isPromotion) {
+                buffer[offset++] = Move.encode(from, to, BitBoardPosition.KNIGHT, isCapture, false, SpecialMove.NONE);
+                buffer[offset++] = Move.encode(from, to, BitBoardPosition.BISHOP, isCapture, false, SpecialMove.NONE);
+                buffer[offset++] = Move.encode(from, to, BitBoardPosition.ROOK, isCapture, false, SpecialMove.NONE);
+                buffer[offset++] = Move.encode(from, to, BitBoardPosition.QUEEN, isCapture, false, SpecialMove.NONE);
+                continue;
+            }
+
+            buffer[offset++] = Move.encode(from, to, 0, isCapture, false, (doublePush & toBit) != 0 ? SpecialMove.DOUBLE_PAWN_PUSH : SpecialMove.NONE);
         }
+
+        return offset;
     }
 
-    private void generateKingMovesForSingleCheckSituation(BitMap enemyAttackSquares, List<Move> result, int ourPieceIndex) {
-        MoveResult moveResult = squares[ourPieceIndex].getPseudoLegalMoves(this);
-
-        // we cannot move into another check, or castle from a check
-        BitMap validMoves = moveResult.moveTargets()
-                .and(enemyAttackSquares.invert())
-                .and(moveResult.isResultKingSideCastle().invert())
-                .and(moveResult.isResultQueenSideCastle().invert());
-
-        result.addAll(validMoves
-                .getIndexesOfOnes()
-                .stream()
-                .map(index -> new Move(
-                        ourPieceIndex,
-                        index,
-                        null,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ))
-                .toList());
-    }
-
-    private void generateBlockingOrCapturingMovesForSingleCheckSituation(List<Move> result,
-                                                                         BitMap checkTrackForOurKing,
-                                                                         BitMap enemyPiecesGivingCheck,
-                                                                         int ourPieceIndex,
-                                                                         Piece ourPiece,
-                                                                         BitMap uncapturableEnPassantTarget,
-                                                                         BitMap pinMapForOurPieces,
-                                                                         int ourKingIndex) {
-
-        MoveResult moveResult = squares[ourPieceIndex].getPseudoLegalMoves(this);
-
-        BitMap validMoves = moveResult.moveTargets()
-                .and(checkTrackForOurKing.or(enemyPiecesGivingCheck));
-
-        if (pinMapForOurPieces.getBit(ourPieceIndex)) {
-            // we can only move one the pin track
-            validMoves.andInPlace(pinMapForOurPieces);
-            // we have to remain on our pin track and not "jump" to another one
-            validMoves.andInPlace(BitMap.getLineThroughSquares(ourKingIndex, ourPieceIndex));
-        }
+    /**
+     * En passant removes two pawns from the same row (and can capture the piece giving check),
+     * so instead of using the pins we look at the position after the move.
+     */
+    private boolean isEnPassantLegal(int from, int to, int ourKingIndex, PieceColor enemyColor) {
+
+        final int capturedIndex = colorToMove == PieceColor.WHITE ? to + 8 : to - 8;
+        final long capturedBit = 1L << capturedIndex;
+
+        final long occupancyAfterMove = (position.getOccupancy() & ~(1L << from) & ~capturedBit) | (1L << to);
 
-        generateNonKingMovesForWithGivenMoveMap(ourPieceIndex, ourPiece, result, uncapturableEnPassantTarget, moveResult, validMoves);
+        return (getAttackersOf(ourKingIndex, occupancyAfterMove) & position.getOccupancy(enemyColor) & ~capturedBit) == 0;
     }
 
-    @NotNull
-    private List<Move> generateMovesForDoubleCheckSituation(BitMap ourKing, BitMap enemyAttackSquares) {
-        final int ourKingIndex = ourKing.getFirstIndexOfOne();
+    /**
+     * Determines whether the side to move has any legal moves, without creating <code>Move</code> objects
+     */
+    private boolean hasLegalMoves() {
 
-        // only the king can move
-        MoveResult moveResult = squares[ourKingIndex].getPseudoLegalMoves(this);
+        if (cachedLegalMoves != null)
+            return !cachedLegalMoves.isEmpty();
+
+        if (numMovesInMoveBuffer == -1) {
+
+            if (moveBuffer == null)
+                moveBuffer = new int[MAX_LEGAL_MOVES];
 
-        BitMap validMoves = moveResult.moveTargets().and(enemyAttackSquares.invert());
+            numMovesInMoveBuffer = generateLegalMovesWithoutCache(moveBuffer, 0, ~0L, true, true);
+        }
 
-        return validMoves
-                .getIndexesOfOnes()
-                .stream()
-                .map(index -> new Move(
-                        ourKingIndex,
-                        index,
-                        null,
-                        moveResult.isResultCapture().getBit(index),
-                        false,
-                        SpecialMove.NONE
-                ))
-                .toList();
+        return numMovesInMoveBuffer > 0;
     }
 
     /**
@@ -812,215 +854,352 @@ public class Board {
      */
     public Board makeMove(Move move) {
 
-        Square from = move.from();
-        Square to = move.to();
+        Board result = new Board(this);
+
+        result.doMove(move);
+
+        // the copy has no reason to know how to get back to this position
+        result.clearUndoStack();
+
+        return result;
+    }
+
+    /**
+     * Makes a move in place (without copying the position). It can be taken back by calling <code>undoMove</code>.
+     * This is what searches should use to walk the game tree without allocating a new board for every node.
+     *
+     * @param move the move to make
+     */
+    public void doMove(Move move) {
+        doMove(move.encodeWithFlags());
+    }
+
+    /**
+     * Makes an encoded move in place (see <code>doMove(Move)</code> and <code>Move.encodeWithFlags</code>)
+     *
+     * @param move the encoded move to make
+     */
+    public void doMove(int move) {
+
+        final int fromIndex = Move.getFromIndex(move);
+        final int toIndex = Move.getToIndex(move);
+        final SpecialMove specialMove = Move.getSpecialMove(move);
 
-        Piece movingPiece = squares[from.getIndex()];
+        final int movingPieceCode = position.get(fromIndex);
 
-        if (movingPiece == null)
+        if (movingPieceCode == BitBoardPosition.EMPTY)
             throw new IllegalStateException("Moving piece is null!");
 
-        if (blackKing.getBit(move.toIndex()) || whiteKing.getBit(move.toIndex())) {
+        if (position.get(toIndex) != BitBoardPosition.EMPTY && BitBoardPosition.getPieceType(position.get(toIndex)) == BitBoardPosition.KING) {
             throw new IllegalArgumentException("We are trying to capture the king!");
         }
 
-        Board result = new Board(this);
+        // the key is updated incrementally from the one before the move
+        long hash = zobristKey();
 
-        result.enPassantTarget = null;
-        result.cachedGameState = null;
-        result.cachedLegalMoves = null;
-        result.whiteAttackSquares = null;
-        result.blackAttackSquares = null;
+        UndoState undoState = pushUndoState();
 
-        result.squares = getSquaresAfterMove(move, result, to);
+        undoState.move = move;
+        undoState.movingPieceCode = movingPieceCode;
+        undoState.canBlackCastleKingSide = canBlackCastleKingSide;
+        undoState.canBlackCastleQueenSide = canBlackCastleQueenSide;
+        undoState.canWhiteCastleKingSide = canWhiteCastleKingSide;
+        undoState.canWhiteCastleQueenSide = canWhiteCastleQueenSide;
+        undoState.enPassantTargetIndex = enPassantTargetIndex;
+        undoState.fullMoveClock = fullMoveClock;
+        undoState.halfMoveCounter = halfMoveCounter;
+        undoState.cachedZobristKey = hash;
+        undoState.cachedGameState = cachedGameState;
+        undoState.cachedLegalMoves = cachedLegalMoves;
+        undoState.whiteAttackSquares = whiteAttackSquares;
+        undoState.blackAttackSquares = blackAttackSquares;
 
-        updateBitMapsForMoves(move, result);
+        pushPreviousPositionKey(hash);
 
-        updateCastlingRightsForMove(move, movingPiece, result, from);
+        // the old castling rights and en passant target are xored out here, the new ones are xored in at the end
+        hash = ZobristHash.xorCastlingRights(hash, this);
+        hash = ZobristHash.xorEnPassantTarget(hash, enPassantTargetIndex);
 
-        // en passant target detection
-        if (move.specialMove() == SpecialMove.DOUBLE_PAWN_PUSH)
-            result.enPassantTarget = new Square(from.file(), (from.row() + to.row()) / 2);
+        // this has to be done before the pieces are moved, because it looks at the captured piece
+        updateCastlingRightsForMove(move, movingPieceCode);
+
+        // captures
+        final int capturedIndex;
+
+        if (Move.isEnPassant(move))
+            capturedIndex = colorToMove == PieceColor.WHITE ? toIndex + 8 : toIndex - 8;
+        else
+            capturedIndex = position.get(toIndex) != BitBoardPosition.EMPTY ? toIndex : -1;
+
+        undoState.capturedIndex = capturedIndex;
+        undoState.capturedPieceCode = BitBoardPosition.EMPTY;
+
+        if (capturedIndex != -1) {
+            undoState.capturedPieceCode = position.remove(capturedIndex);
+            hash = ZobristHash.xorPiece(hash, capturedIndex, undoState.capturedPieceCode);
+        }
+
+        // the move itself
+        position.remove(fromIndex);
+        hash = ZobristHash.xorPiece(hash, fromIndex, movingPieceCode);
+
+        final boolean isPawnMove = BitBoardPosition.getPieceType(movingPieceCode) == BitBoardPosition.PAWN;
+        final boolean isPawnOnLastRow = colorToMove == PieceColor.WHITE ? Square.getRow(fromIndex) == 6 : Square.getRow(fromIndex) == 1;
+
+        final int placedPieceCode;
 
-        result.colorToMove = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        if (Move.getPromotionPieceType(move) != 0 && isPawnMove && isPawnOnLastRow) {
+            placedPieceCode = BitBoardPosition.getPieceCode(Move.getPromotionPieceType(move), colorToMove);
+        } else {
+            placedPieceCode = movingPieceCode;
+        }
+
+        position.put(toIndex, placedPieceCode);
+        hash = ZobristHash.xorPiece(hash, toIndex, placedPieceCode);
+
+        // the rook's part of castling
+        if (specialMove == SpecialMove.KING_SIDE_CASTLE) {
+            if (colorToMove == PieceColor.WHITE)
+                hash = moveRookForCastling(hash, Square.getIndex("h1"), Square.getIndex("f1"));
+            else
+                hash = moveRookForCastling(hash, Square.getIndex("h8"), Square.getIndex("f8"));
+        } else if (specialMove == SpecialMove.QUEEN_SIDE_CASTLE) {
+            if (colorToMove == PieceColor.WHITE)
+                hash = moveRookForCastling(hash, Square.getIndex("a1"), Square.getIndex("d1"));
+            else
+                hash = moveRookForCastling(hash, Square.getIndex("a8"), Square.getIndex("d8"));
+        }
+
+        // en passant target detection
+        if (specialMove == SpecialMove.DOUBLE_PAWN_PUSH)
+            enPassantTargetIndex = (fromIndex + toIndex) / 2;
+        else
+            enPassantTargetIndex = NO_EN_PASSANT_TARGET;
 
         if (colorToMove == PieceColor.BLACK)
-            result.fullMoveClock++;
+            fullMoveClock++;
 
         // move counts
-        if (move.isCapture() || movingPiece instanceof Pawn) {
-            result.halfMoveCounter = 0;
+        if (capturedIndex != -1 || isPawnMove) {
+            halfMoveCounter = 0;
         } else {
-            result.halfMoveCounter++;
+            halfMoveCounter++;
         }
 
-        if (move.isCapture())
-            result.previousPositionHashes = new LinkedList<>();
+        colorToMove = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        hash = ZobristHash.xorColorToMove(hash);
+        hash = ZobristHash.xorCastlingRights(hash, this);
+        hash = ZobristHash.xorEnPassantTarget(hash, enPassantTargetIndex);
+
+        cachedGameState = null;
+        cachedLegalMoves = null;
+        whiteAttackSquares = null;
+        blackAttackSquares = null;
+        cachedZobristKey = hash;
+        numMovesInMoveBuffer = -1;
+    }
 
-        result.previousPositionHashes.add(hashCode());
+    /**
+     * Moves the rook during castling
+     *
+     * @param hash      the Zobrist key before moving the rook
+     * @param fromIndex the original square of the rook
+     * @param toIndex   the square the rook moves to
+     * @return the updated key
+     */
+    private long moveRookForCastling(long hash, int fromIndex, int toIndex) {
 
-        result.cachedHash = 0; // we could xor the pieces, but it will remain something for the future
+        final int rookCode = position.remove(fromIndex);
+        position.put(toIndex, rookCode);
 
-        return result;
+        hash = ZobristHash.xorPiece(hash, fromIndex, rookCode);
+        return ZobristHash.xorPiece(hash, toIndex, rookCode);
     }
 
-    private void updateCastlingRightsForMove(Move move, Piece movingPiece, Board result, Square from) {
+    /**
+     * Takes back the last move that was made by <code>doMove</code> (or <code>doNullMove</code>)
+     */
+    public void undoMove() {
+
+        if (undoStackSize == 0)
+            throw new IllegalStateException("There is no move to undo!");
 
-        if (movingPiece.getColor() == PieceColor.WHITE) {
+        UndoState undoState = undoStack[--undoStackSize];
 
-            if (movingPiece instanceof King) {
-                result.canWhiteCastleQueenSide = false;
-                result.canWhiteCastleKingSide = false;
-            } else if (movingPiece instanceof Rook) {
-                if (from.getIndex() == Square.getIndex("a1"))
-                    result.canWhiteCastleQueenSide = false;
-                else if (from.getIndex() == Square.getIndex("h1"))
-                    result.canWhiteCastleKingSide = false;
-            }
+        final int move = undoState.move;
+        final SpecialMove specialMove = Move.getSpecialMove(move);
 
-        } else {
+        colorToMove = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
 
-            if (movingPiece instanceof King) {
-                result.canBlackCastleQueenSide = false;
-                result.canBlackCastleKingSide = false;
-            } else if (movingPiece instanceof Rook) {
-                if (from.getIndex() == Square.getIndex("a8"))
-                    result.canBlackCastleQueenSide = false;
-                else if (from.getIndex() == Square.getIndex("h8"))
-                    result.canBlackCastleKingSide = false;
+        // a null move did not move any piece
+        if (move != NULL_MOVE) {
+
+            // the rook's part of castling
+            if (specialMove == SpecialMove.KING_SIDE_CASTLE) {
+                if (colorToMove == PieceColor.WHITE)
+                    position.put(Square.getIndex("h1"), position.remove(Square.getIndex("f1")));
+                else
+                    position.put(Square.getIndex("h8"), position.remove(Square.getIndex("f8")));
+            } else if (specialMove == SpecialMove.QUEEN_SIDE_CASTLE) {
+                if (colorToMove == PieceColor.WHITE)
+                    position.put(Square.getIndex("a1"), position.remove(Square.getIndex("d1")));
+                else
+                    position.put(Square.getIndex("a8"), position.remove(Square.getIndex("d8")));
             }
 
-        }
+            // the moving piece goes back (and if it was promoted, the pawn goes back instead of the new piece)
+            position.remove(Move.getToIndex(move));
+            position.put(Move.getFromIndex(move), undoState.movingPieceCode);
 
-        if (move.isCapture() && (squares[move.toIndex()] instanceof Rook)) {
-            if (move.toIndex() == Square.getIndex("a1"))
-                result.canWhiteCastleQueenSide = false;
-            if (move.toIndex() == Square.getIndex("a8"))
-                result.canBlackCastleQueenSide = false;
-            if (move.toIndex() == Square.getIndex("h1"))
-                result.canWhiteCastleKingSide = false;
-            if (move.toIndex() == Square.getIndex("h8"))
-                result.canBlackCastleKingSide = false;
+            if (undoState.capturedPieceCode != BitBoardPosition.EMPTY)
+                position.put(undoState.capturedIndex, undoState.capturedPieceCode);
         }
+
+        numPreviousPositionKeys--;
+
+        canBlackCastleKingSide = undoState.canBlackCastleKingSide;
+        canBlackCastleQueenSide = undoState.canBlackCastleQueenSide;
+        canWhiteCastleKingSide = undoState.canWhiteCastleKingSide;
+        canWhiteCastleQueenSide = undoState.canWhiteCastleQueenSide;
+        enPassantTargetIndex = undoState.enPassantTargetIndex;
+        fullMoveClock = undoState.fullMoveClock;
+        halfMoveCounter = undoState.halfMoveCounter;
+        cachedZobristKey = undoState.cachedZobristKey;
+        cachedGameState = undoState.cachedGameState;
+        cachedLegalMoves = undoState.cachedLegalMoves;
+        numMovesInMoveBuffer = -1;
+        whiteAttackSquares = undoState.whiteAttackSquares;
+        blackAttackSquares = undoState.blackAttackSquares;
+
+        // we do not want to keep the references alive
+        undoState.clear();
     }
 
-    private void updateBitMapsForMoves(Move move, Board result) {
+    /**
+     * @return the number of moves that can be taken back with <code>undoMove</code>
+     */
+    public int getUndoableMoveCount() {
+        return undoStackSize;
+    }
 
-        if (colorToMove == PieceColor.WHITE) {
+    /**
+     * Passes the turn to the other side without moving a piece. This is not a legal move, but searches use it to see
+     * whether a position is so good that it is still good if we do nothing (null move pruning).
+     * It can be taken back by calling <code>undoMove</code>, and it must not be made if the side to move is in check.
+     */
+    public void doNullMove() {
 
-            result.whitePieces.setBitInPlace(move.fromIndex(), false);
-            result.whitePieces.setBitInPlace(move.toIndex(), true);
+        long hash = zobristKey();
 
-            if (move.isEnPassant())
-                result.blackPieces.setBitInPlace(move.toIndex() + 8, false);
-            else if (move.isCapture())
-                result.blackPieces.setBitInPlace(move.toIndex(), false);
+        UndoState undoState = pushUndoState();
 
-            if (move.specialMove() == SpecialMove.KING_SIDE_CASTLE) {
-                result.whitePieces.setBitInPlace(Square.getIndex("H1"), false);
-                result.whitePieces.setBitInPlace(Square.getIndex("F1"), true);
-            } else if (move.specialMove() == SpecialMove.QUEEN_SIDE_CASTLE) {
-                result.whitePieces.setBitInPlace(Square.getIndex("A1"), false);
-                result.whitePieces.setBitInPlace(Square.getIndex("D1"), true);
-            }
+        undoState.move = NULL_MOVE;
+        undoState.movingPieceCode = BitBoardPosition.EMPTY;
+        undoState.capturedPieceCode = BitBoardPosition.EMPTY;
+        undoState.canBlackCastleKingSide = canBlackCastleKingSide;
+        undoState.canBlackCastleQueenSide = canBlackCastleQueenSide;
+        undoState.canWhiteCastleKingSide = canWhiteCastleKingSide;
+        undoState.canWhiteCastleQueenSide = canWhiteCastleQueenSide;
+        undoState.enPassantTargetIndex = enPassantTargetIndex;
+        undoState.fullMoveClock = fullMoveClock;
+        undoState.halfMoveCounter = halfMoveCounter;
+        undoState.cachedZobristKey = hash;
+        undoState.cachedGameState = cachedGameState;
+        undoState.cachedLegalMoves = cachedLegalMoves;
+        undoState.whiteAttackSquares = whiteAttackSquares;
+        undoState.blackAttackSquares = blackAttackSquares;
 
-            // we are moving the king
-            if (whiteKing.getBit(move.fromIndex())) {
-                result.whiteKing = new BitMap(0).setBit(move.toIndex(), true);
-            }
+        pushPreviousPositionKey(hash);
 
-        } else {
+        hash = ZobristHash.xorEnPassantTarget(hash, enPassantTargetIndex);
+        enPassantTargetIndex = NO_EN_PASSANT_TARGET;
 
-            result.blackPieces.setBitInPlace(move.fromIndex(), false);
-            result.blackPieces.setBitInPlace(move.toIndex(), true);
+        if (colorToMove == PieceColor.BLACK)
+            fullMoveClock++;
 
-            if (move.isEnPassant())
-                result.whitePieces.setBitInPlace(move.toIndex() - 8, false);
-            else if (move.isCapture())
-                result.whitePieces.setBitInPlace(move.toIndex(), false);
+        // the positions before the null move should not count as repetitions of the ones after it
+        halfMoveCounter = 0;
 
-            if (move.specialMove() == SpecialMove.KING_SIDE_CASTLE) {
-                result.blackPieces.setBitInPlace(Square.getIndex("H8"), false);
-                result.blackPieces.setBitInPlace(Square.getIndex("F8"), true);
-            } else if (move.specialMove() == SpecialMove.QUEEN_SIDE_CASTLE) {
-                result.blackPieces.setBitInPlace(Square.getIndex("A8"), false);
-                result.blackPieces.setBitInPlace(Square.getIndex("D8"), true);
-            }
+        colorToMove = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        hash = ZobristHash.xorColorToMove(hash);
 
-            // we are moving the king
-            if (blackKing.getBit(move.fromIndex())) {
-                result.blackKing = new BitMap(0).setBit(move.toIndex(), true);
-            }
-        }
+        // the pieces did not move, so the attack maps stay the same
+        cachedGameState = null;
+        cachedLegalMoves = null;
+        cachedZobristKey = hash;
+        numMovesInMoveBuffer = -1;
+    }
 
+    private UndoState pushUndoState() {
+
+        if (undoStackSize == undoStack.length)
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+
+        if (undoStack[undoStackSize] == null)
+            undoStack[undoStackSize] = new UndoState();
+
+        return undoStack[undoStackSize++];
     }
 
-    private Piece[] getSquaresAfterMove(Move move, Board result, Square to) {
-        Piece[] newSquares = result.squares;
+    private void pushPreviousPositionKey(long key) {
 
-        if (move.specialMove() == SpecialMove.NONE || move.specialMove() == SpecialMove.DOUBLE_PAWN_PUSH) {
+        if (numPreviousPositionKeys == previousPositionKeys.length)
+            previousPositionKeys = Arrays.copyOf(previousPositionKeys, previousPositionKeys.length * 2);
 
-            if (move.isEnPassant()) {
-                newSquares[enPassantTarget.getIndex()] = newSquares[move.fromIndex()];
-                newSquares[enPassantTarget.getIndex()].setSquare(enPassantTarget);
+        previousPositionKeys[numPreviousPositionKeys++] = key;
+    }
 
-                if (colorToMove == PieceColor.WHITE) {
-                    newSquares[new Square(enPassantTarget.file(), enPassantTarget.row() - 1).getIndex()] = null;
-                } else {
-                    newSquares[new Square(enPassantTarget.file(), enPassantTarget.row() + 1).getIndex()] = null;
-                }
-            } else {
-                newSquares[move.toIndex()] = newSquares[move.fromIndex()];
-                newSquares[move.toIndex()].setSquare(to.copy());
-            }
+    private void clearUndoStack() {
+        for (int i = 0; i < undoStackSize; i++)
+            undoStack[i].clear();
 
-            newSquares[move.fromIndex()] = null;
-
-        } else if (move.specialMove() == SpecialMove.QUEEN_SIDE_CASTLE) {
-            if (colorToMove == PieceColor.WHITE) {
-                newSquares[Square.getIndex("d1")] = newSquares[Square.getIndex("a1")];
-                newSquares[Square.getIndex("d1")].setSquare(new Square("d1"));
-                newSquares[Square.getIndex("c1")] = newSquares[Square.getIndex("e1")];
-                newSquares[Square.getIndex("c1")].setSquare(new Square("c1"));
-                newSquares[Square.getIndex("e1")] = null;
-                newSquares[Square.getIndex("a1")] = null;
-            } else {
-                newSquares[Square.getIndex("d8")] = newSquares[Square.getIndex("a8")];
-                newSquares[Square.getIndex("d8")].setSquare(new Square("d8"));
-                newSquares[Square.getIndex("c8")] = newSquares[Square.getIndex("e8")];
-                newSquares[Square.getIndex("c8")].setSquare(new Square("c8"));
-                newSquares[Square.getIndex("e8")] = null;
-                newSquares[Square.getIndex("a8")] = null;
-            }
-        } else if (move.specialMove() == SpecialMove.KING_SIDE_CASTLE) {
-            if (colorToMove == PieceColor.WHITE) {
-                newSquares[Square.getIndex("f1")] = newSquares[Square.getIndex("h1")];
-                newSquares[Square.getIndex("f1")].setSquare(new Square("f1"));
-                newSquares[Square.getIndex("g1")] = newSquares[Square.getIndex("e1")];
-                newSquares[Square.getIndex("g1")].setSquare(new Square("g1"));
-                newSquares[Square.getIndex("e1")] = null;
-                newSquares[Square.getIndex("h1")] = null;
-            } else {
-                newSquares[Square.getIndex("f8")] = newSquares[Square.getIndex("h8")];
-                newSquares[Square.getIndex("f8")].setSquare(new Square("f8"));
-                newSquares[Square.getIndex("g8")] = newSquares[Square.getIndex("e8")];
-                newSquares[Square.getIndex("g8")].setSquare(new Square("g8"));
-                newSquares[Square.getIndex("e8")] = null;
-                newSquares[Square.getIndex("h8")] = null;
+        undoStackSize = 0;
+    }
+
+    private void updateCastlingRightsForMove(int move, int movingPieceCode) {
+
+        final int fromIndex = Move.getFromIndex(move);
+        final int toIndex = Move.getToIndex(move);
+        final int movingPieceType = BitBoardPosition.getPieceType(movingPieceCode);
+
+        if (BitBoardPosition.getColor(movingPieceCode) == PieceColor.WHITE) {
+
+            if (movingPieceType == BitBoardPosition.KING) {
+                canWhiteCastleQueenSide = false;
+                canWhiteCastleKingSide = false;
+            } else if (movingPieceType == BitBoardPosition.ROOK) {
+                if (fromIndex == Square.getIndex("a1"))
+                    canWhiteCastleQueenSide = false;
+                else if (fromIndex == Square.getIndex("h1"))
+                    canWhiteCastleKingSide = false;
             }
-        }
 
-        final boolean isPawnOnLastRow = colorToMove == PieceColor.WHITE ? move.from().row() == 6 : move.from().row() == 1;
+        } else {
 
-        if (move.promotionPieceType() != null && squares[move.fromIndex()] instanceof Pawn && isPawnOnLastRow) {
-            try {
-                newSquares[move.toIndex()] = move.promotionPieceType().getConstructor(PieceColor.class).newInstance(colorToMove);
-                newSquares[move.toIndex()].setSquare(to.copy());
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
+            if (movingPieceType == BitBoardPosition.KING) {
+                canBlackCastleQueenSide = false;
+                canBlackCastleKingSide = false;
+            } else if (movingPieceType == BitBoardPosition.ROOK) {
+                if (fromIndex == Square.getIndex("a8"))
+                    canBlackCastleQueenSide = false;
+                else if (fromIndex == Square.getIndex("h8"))
+                    canBlackCastleKingSide = false;
             }
+
+        }
+
+        final int capturedPieceCode = position.get(toIndex);
+
+        if (Move.isCapture(move) && capturedPieceCode != BitBoardPosition.EMPTY && BitBoardPosition.getPieceType(capturedPieceCode) == BitBoardPosition.ROOK) {
+            if (toIndex == Square.getIndex("a1"))
+                canWhiteCastleQueenSide = false;
+            if (toIndex == Square.getIndex("a8"))
+                canBlackCastleQueenSide = false;
+            if (toIndex == Square.getIndex("h1"))
+                canWhiteCastleKingSide = false;
+            if (toIndex == Square.getIndex("h8"))
+                canBlackCastleKingSide = false;
         }
-        return newSquares;
     }
 
     /**
@@ -1045,7 +1224,7 @@ public class Board {
         if (movingPiece == null || movingPiece.getColor() != colorToMove)
             return Optional.empty();
 
-        boolean isPotentiallyEnPassant = movingPiece instanceof Pawn && to.equals(enPassantTarget) && pieceOnDestinationSquare == null;
+        boolean isPotentiallyEnPassant = movingPiece instanceof Pawn && to.getIndex() == enPassantTargetIndex && pieceOnDestinationSquare == null;
 
         boolean isPotentiallyNonEnPassantCapture = pieceOnDestinationSquare != null && pieceOnDestinationSquare.color != colorToMove;
 
@@ -1096,11 +1275,7 @@ public class Board {
      */
     public void setFromFENString(@NotNull String fenString) throws ParseException {
 
-        squares = new Piece[64];
-        whitePieces = new BitMap(0);
-        blackPieces = new BitMap(0);
-        whiteKing = new BitMap(0);
-        blackKing = new BitMap(0);
+        position = new BitBoardPosition();
 
         String[] fenStringParts = fenString.split(" ");
 
@@ -1130,21 +1305,7 @@ public class Board {
 
             if (Character.isAlphabetic(c)) {
                 try {
-                    Piece newPiece = squares[numSquaresDone++] = PieceFactory.generateFromChar(c);
-                    newPiece.setSquare(new Square(numSquaresDone - 1));
-
-                    if (Character.isUpperCase(c)) {
-                        // white
-                        whitePieces.setBitInPlace(numSquaresDone - 1, true);
-
-                        if (c == 'K')
-                            whiteKing.setBitInPlace(numSquaresDone - 1, true);
-                    } else {
-                        blackPieces.setBitInPlace(numSquaresDone - 1, true);
-
-                        if (c == 'k')
-                            blackKing.setBitInPlace(numSquaresDone - 1, true);
-                    }
+                    position.put(numSquaresDone++, BitBoardPosition.getPieceCode(c));
                 } catch (IllegalStateException e) {
                     ParseException newException = new ParseException("Piece not recognized!", i);
                     newException.initCause(e);
@@ -1192,14 +1353,21 @@ public class Board {
 
         // en passant
 
-        enPassantTarget = fenStringParts[3].charAt(0) == '-' ? null : new Square(fenStringParts[3]);
+        enPassantTargetIndex = fenStringParts[3].charAt(0) == '-' ? NO_EN_PASSANT_TARGET : new Square(fenStringParts[3]).getIndex();
 
         // half moves
 
         halfMoveCounter = Integer.parseInt(fenStringParts[4]);
         fullMoveClock = Integer.parseInt(fenStringParts[5]);
 
-        previousPositionHashes = new LinkedList<>();
+        numPreviousPositionKeys = 0;
+        cachedGameState = null;
+        cachedLegalMoves = null;
+        whiteAttackSquares = null;
+        blackAttackSquares = null;
+        cachedZobristKey = 0;
+        numMovesInMoveBuffer = -1;
+        clearUndoStack();
     }
 
     /**
@@ -1232,8 +1400,8 @@ public class Board {
 
         sb.append(' ');
 
-        if (enPassantTarget != null)
-            sb.append(enPassantTarget);
+        if (enPassantTargetIndex != NO_EN_PASSANT_TARGET)
+            sb.append(Square.toString(enPassantTargetIndex, false));
         else
             sb.append('-');
 
@@ -1259,9 +1427,9 @@ public class Board {
 
         int emptySquaresCount = 0;
         for (int i = 0; i < 64; i++) {
-            Piece piece = squares[i];
+            int pieceCode = position.get(i);
 
-            if (piece == null) {
+            if (pieceCode == BitBoardPosition.EMPTY) {
                 emptySquaresCount++;
 
                 if (i % 8 == 7) {
@@ -1281,7 +1449,7 @@ public class Board {
             }
 
             emptySquaresCount = 0;
-            sb.append(squares[i].getFENChar());
+            sb.append(BitBoardPosition.getFENChar(pieceCode));
 
             if (i % 8 == 7 && i != 63)
                 sb.append('/');
@@ -1310,20 +1478,158 @@ public class Board {
     }
 
     /**
-     * Calculates a Zobrist hash
-     * @return the hash
+     * Static exchange evaluation: the material outcome of a capture, if both sides keep recapturing on the target square
+     * with their least valuable piece (and can stop when recapturing would lose material). Pins are not considered.
+     *
+     * @param move the capture (or any other move, in which case the moving piece might be captured on its new square)
+     * @return the material won (or lost, if negative) by the side to move, in centipawns
      */
-    @Override
-    public int hashCode() {
+    public int getStaticExchangeEvaluation(Move move) {
+        return getStaticExchangeEvaluation(move.encodeWithFlags());
+    }
+
+    /**
+     * Static exchange evaluation of an encoded move (see <code>getStaticExchangeEvaluation(Move)</code>)
+     *
+     * @param move the encoded move (see <code>Move.encodeWithFlags</code>)
+     * @return the material won (or lost, if negative) by the side to move, in centipawns
+     */
+    public int getStaticExchangeEvaluation(int move) {
+
+        final int fromIndex = Move.getFromIndex(move);
+        final int toIndex = Move.getToIndex(move);
+
+        final int[] gains = seeGains;
+
+        long occupancy = position.getOccupancy();
 
-        if (cachedHash != 0)
-            return cachedHash;
+        int capturedIndex = toIndex;
+        if (Move.isEnPassant(move))
+            capturedIndex += colorToMove == PieceColor.WHITE ? 8 : -8;
 
-        int hash = ZobristHash.computeHash(this);
+        final int capturedPieceCode = position.get(capturedIndex);
+        final int movingPieceType = BitBoardPosition.getPieceType(position.get(fromIndex));
 
-        cachedHash = hash;
+        gains[0] = capturedPieceCode != BitBoardPosition.EMPTY ? SEE_PIECE_VALUES[BitBoardPosition.getPieceType(capturedPieceCode)] : 0;
 
-        return hash;
+        // the value of the piece that stands on the target square and can be captured next
+        int valueOnTargetSquare = SEE_PIECE_VALUES[movingPieceType];
+
+        if (Move.getPromotionPieceType(move) != 0) {
+            final int promotionValue = SEE_PIECE_VALUES[Move.getPromotionPieceType(move)];
+            gains[0] += promotionValue - SEE_PIECE_VALUES[BitBoardPosition.PAWN];
+            valueOnTargetSquare = promotionValue;
+        }
+
+        occupancy &= ~(1L << fromIndex);
+        occupancy &= ~(1L << capturedIndex);
+
+        PieceColor sideToCapture = colorToMove == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+
+        int numCaptures = 0;
+
+        while (true) {
+
+            // the x-ray attackers appear as the pieces in front of them are removed from the occupancy
+            final long attackers = getAttackersOf(toIndex, occupancy) & occupancy;
+            final long ourAttackers = attackers & position.getOccupancy(sideToCapture);
+
+            if (ourAttackers == 0)
+                break;
+
+            int attackerType = BitBoardPosition.PAWN;
+            long attacker = 0;
+
+            for (; attackerType <= BitBoardPosition.KING; attackerType++) {
+                attacker = ourAttackers & position.getPieces(attackerType, sideToCapture);
+                if (attacker != 0)
+                    break;
+            }
+
+            // the king cannot capture on a square that is still defended
+            if (attackerType == BitBoardPosition.KING && (attackers & ~ourAttackers) != 0)
+                break;
+
+            numCaptures++;
+            gains[numCaptures] = valueOnTargetSquare - gains[numCaptures - 1];
+
+            // neither side can gain anything from here on
+            if (Math.max(-gains[numCaptures - 1], gains[numCaptures]) < 0)
+                break;
+
+            occupancy &= ~Long.lowestOneBit(attacker);
+            valueOnTargetSquare = SEE_PIECE_VALUES[attackerType];
+            sideToCapture = sideToCapture == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+
+            if (numCaptures == gains.length - 1)
+                break;
+        }
+
+        // every side can choose not to recapture
+        while (numCaptures > 0) {
+            gains[numCaptures - 1] = -Math.max(-gains[numCaptures - 1], gains[numCaptures]);
+            numCaptures--;
+        }
+
+        return gains[0];
+    }
+
+    /**
+     * Finds the pieces (of both colors) that attack a square, as if the board only had the pieces in <code>occupancy</code>
+     *
+     * @param squareIndex the index of the attacked square
+     * @param occupancy   the occupied squares (sliding pieces are blocked by these)
+     * @return the squares of the attackers (it can contain squares that are not in the occupancy)
+     */
+    public long getAttackersOf(int squareIndex, long occupancy) {
+
+        long attackers = 0;
+
+        // leapers
+        final long knights = position.getPieces(BitBoardPosition.KNIGHT, PieceColor.WHITE) | position.getPieces(BitBoardPosition.KNIGHT, PieceColor.BLACK);
+        final long kings = position.getPieces(BitBoardPosition.KING, PieceColor.WHITE) | position.getPieces(BitBoardPosition.KING, PieceColor.BLACK);
+
+        attackers |= AttackTables.getKnightAttacks(squareIndex) & knights;
+        attackers |= AttackTables.getKingAttacks(squareIndex) & kings;
+
+        // a white pawn attacks the square from where a black pawn on the square would attack (and vice versa)
+        attackers |= AttackTables.getPawnAttacks(PieceColor.BLACK, squareIndex) & position.getPieces(BitBoardPosition.PAWN, PieceColor.WHITE);
+        attackers |= AttackTables.getPawnAttacks(PieceColor.WHITE, squareIndex) & position.getPieces(BitBoardPosition.PAWN, PieceColor.BLACK);
+
+        // sliders
+        final long queens = position.getPieces(BitBoardPosition.QUEEN, PieceColor.WHITE) | position.getPieces(BitBoardPosition.QUEEN, PieceColor.BLACK);
+        final long rooksAndQueens = position.getPieces(BitBoardPosition.ROOK, PieceColor.WHITE) | position.getPieces(BitBoardPosition.ROOK, PieceColor.BLACK) | queens;
+        final long bishopsAndQueens = position.getPieces(BitBoardPosition.BISHOP, PieceColor.WHITE) | position.getPieces(BitBoardPosition.BISHOP, PieceColor.BLACK) | queens;
+
+        attackers |= MagicBitBoards.getRookAttacks(squareIndex, occupancy) & rooksAndQueens;
+        attackers |= MagicBitBoards.getBishopAttacks(squareIndex, occupancy) & bishopsAndQueens;
+
+        return attackers;
+    }
+
+    /**
+     * Calculates the 64-bit Zobrist key of the position (including castling rights and the en passant target).
+     * It is updated incrementally by <code>doMove</code>, so this is usually just a field read.
+     *
+     * @return the key
+     */
+    public long zobristKey() {
+
+        if (cachedZobristKey != 0)
+            return cachedZobristKey;
+
+        cachedZobristKey = ZobristHash.computeHash(this);
+
+        return cachedZobristKey;
+    }
+
+    /**
+     * Folds the Zobrist key into 32 bits
+     * @return the hash
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristKey());
     }
 
     @Override
@@ -1332,7 +1638,7 @@ public class Board {
         if (other == null) return false;
         if (other == this) return true;
         if (!(other instanceof Board)) return false;
-        return other.hashCode() == hashCode();
+        return ((Board) other).zobristKey() == zobristKey();
     }
 
     /**
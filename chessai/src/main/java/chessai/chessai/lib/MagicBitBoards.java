@@ -0,0 +1,233 @@
+package chessai.chessai.lib;
+
+/**
+ * Precomputed attack tables of the sliding pieces, using
+ * <a href="https://www.chessprogramming.org/Magic_Bitboards">magic bitboards</a>.
+ * <p>
+ * For every square, the occupancy of the squares the piece could be blocked on (the relevant occupancy) is multiplied
+ * by a magic number, so that the top bits of the product are a perfect hash of the attacked squares.
+ * The magics were found by trying random numbers with few bits set (the published ones cannot be used,
+ * as our squares are indexed from A8). The attack tables are built from them when the class is loaded.
+ * The bits are indexed the same way as in <code>BitBoardPosition</code>: bit 0 is A8, ..., bit 63 is H1.
+ */
+public class MagicBitBoards {
+
+    private static final long[] ROOK_MAGICS = {
+            0x0080068051E04000L, 0x0040001000402000L, 0x0080100020008008L, 0x4E000A0010208440L,
+            0x4200040802002010L, 0x0100010008020400L, 0x9080608019000600L, 0x8100020080204100L,
+            0x4103800480400020L, 0x8015004004802100L, 0x000200108A002040L, 0x0801000821001000L,
+            0x0015000500080070L, 0x0120800400800200L, 0x0109000432001100L, 0x020080055B000080L,
+            0x0080004000402002L, 0x5260848020004008L, 0x2402020014402080L, 0x3000808010000802L,
+            0x0304018004810800L, 0x0000808004000200L, 0x0002040001500248L, 0x0012020000408401L,
+            0x8440008080004020L, 0x0804200840100040L, 0x0820008080201000L, 0x2080100100082100L,
+            0x0001000500100800L, 0x00A1000900028400L, 0x0100100400C80102L, 0x000001120000A044L,
+            0x800080C004800620L, 0x4040081000202000L, 0x0D08802008801000L, 0x1000800800801004L,
+            0x1004000801010010L, 0x0402800400800200L, 0x0004080204008110L, 0x0000404082000401L,
+            0x00C0118861408000L, 0x1100220081020048L, 0x09A0430420050010L, 0x0000082200420010L,
+            0x2110080004008080L, 0x2004201040680104L, 0x1106001451820008L, 0x0002224104820014L,
+            0x00800C8044210500L, 0x02A0200040100040L, 0x040100A0001E4100L, 0x00204023108A0200L,
+            0x2400080080040080L, 0x1289008400020900L, 0x0002088250010400L, 0x0001006084010200L,
+            0x0001023480002141L, 0x0006400021810015L, 0x8400100840200101L, 0x40003000A1000825L,
+            0x1002011008200402L, 0x100D000400080201L, 0x0020048806102904L, 0x8401000020804201L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x4C40240122060016L, 0x8048110404004A80L, 0x8004440410414020L, 0x021C410060405000L,
+            0x80CD1040D0480812L, 0x0002021104000082L, 0x08440082A8200001L, 0x00202A0800841002L,
+            0x0200C40810842088L, 0x60C0081000C08901L, 0x00A3D0040042510CL, 0x1C00110400808541L,
+            0x0400820211084005L, 0x0000008860080800L, 0x002002020202C000L, 0x0400344E08040A81L,
+            0x812800102098A080L, 0x00202010823A2040L, 0x4086400800830201L, 0x5008012A22004000L,
+            0x0004801C00A00000L, 0x0000400200505400L, 0x0480408401080820L, 0x8000400029082824L,
+            0x0008880804501000L, 0x0001600048084100L, 0x0108220624040400L, 0x0008080000820002L,
+            0xC804040010410041L, 0x01080A0040208400L, 0x2018030480A88800L, 0x4040410020410810L,
+            0x1108044010100210L, 0x084A100400029800L, 0x0801080100820C00L, 0x8010400808108200L,
+            0x0084008400020500L, 0x0002004200290481L, 0x0010150200032090L, 0x8404042220404102L,
+            0x0302080308004008L, 0x1200420820000408L, 0x0802002024200800L, 0x4020824208000084L,
+            0x000002020C008200L, 0x2C40208081000882L, 0x2082223441000401L, 0x8804080081101020L,
+            0x4401011002220808L, 0x81020C4202100000L, 0x4005004404040308L, 0x0820400C42020001L,
+            0x0020206421820010L, 0x0150401001424008L, 0x02A20242020C0608L, 0x5020110109011200L,
+            0x2050840108410401L, 0x0100090880842108L, 0x220008960142187AL, 0x1111028880208820L,
+            0x4400200042028200L, 0x4400010802084206L, 0x0000400242040100L, 0x0002201104010944L
+    };
+
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, -1}, {-1, 1}};
+
+    private static final long[] rookMasks = new long[64];
+    private static final int[] rookShifts = new int[64];
+    /**
+     * The index of the first attack set of every square in <code>rookAttacks</code>
+     */
+    private static final int[] rookOffsets = new int[64];
+    private static final long[] rookAttacks;
+
+    private static final long[] bishopMasks = new long[64];
+    private static final int[] bishopShifts = new int[64];
+    private static final int[] bishopOffsets = new int[64];
+    private static final long[] bishopAttacks;
+
+    /**
+     * The squares strictly between two squares on the same line (0 if they are not on the same line)
+     */
+    private static final long[][] squaresBetween = new long[64][64];
+    /**
+     * The whole row, file or diagonal going through two squares (0 if they are not on the same line)
+     */
+    private static final long[][] lines = new long[64][64];
+
+    static {
+        rookAttacks = initAttacks(ROOK_DIRECTIONS, ROOK_MAGICS, rookMasks, rookShifts, rookOffsets);
+        bishopAttacks = initAttacks(BISHOP_DIRECTIONS, BISHOP_MAGICS, bishopMasks, bishopShifts, bishopOffsets);
+
+        initSquaresBetween();
+    }
+
+    /**
+     * @param squareIndex the square of the rook
+     * @param occupancy   the occupied squares (of both colors)
+     * @return the attacked squares, including the first blocker in every direction
+     */
+    public static long getRookAttacks(int squareIndex, long occupancy) {
+        final int index = (int) (((occupancy & rookMasks[squareIndex]) * ROOK_MAGICS[squareIndex]) >>> rookShifts[squareIndex]);
+        return rookAttacks[rookOffsets[squareIndex] + index];
+    }
+
+    /**
+     * @param squareIndex the square of the bishop
+     * @param occupancy   the occupied squares (of both colors)
+     * @return the attacked squares, including the first blocker in every direction
+     */
+    public static long getBishopAttacks(int squareIndex, long occupancy) {
+        final int index = (int) (((occupancy & bishopMasks[squareIndex]) * BISHOP_MAGICS[squareIndex]) >>> bishopShifts[squareIndex]);
+        return bishopAttacks[bishopOffsets[squareIndex] + index];
+    }
+
+    /**
+     * @param squareIndex the square of the queen
+     * @param occupancy   the occupied squares (of both colors)
+     * @return the attacked squares, including the first blocker in every direction
+     */
+    public static long getQueenAttacks(int squareIndex, long occupancy) {
+        return getRookAttacks(squareIndex, occupancy) | getBishopAttacks(squareIndex, occupancy);
+    }
+
+    /**
+     * @return the squares strictly between the two squares if they are on the same row, file or diagonal, 0 otherwise
+     */
+    public static long getSquaresBetween(int squareIndex1, int squareIndex2) {
+        return squaresBetween[squareIndex1][squareIndex2];
+    }
+
+    /**
+     * @return the whole row, file or diagonal (from edge to edge) through the two squares if they are on the same line, 0 otherwise
+     */
+    public static long getLine(int squareIndex1, int squareIndex2) {
+        return lines[squareIndex1][squareIndex2];
+    }
+
+    /**
+     * Calculates the masks and fills the attack table of a piece type
+     *
+     * @return the attack table of the piece type
+     */
+    private static long[] initAttacks(int[][] directions, long[] magics, long[] masks, int[] shifts, int[] offsets) {
+
+        int tableSize = 0;
+
+        for (int square = 0; square < 64; square++) {
+            masks[square] = getRelevantOccupancyMask(square, directions);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = tableSize;
+            tableSize += 1 << Long.bitCount(masks[square]);
+        }
+
+        long[] attacks = new long[tableSize];
+
+        for (int square = 0; square < 64; square++) {
+
+            final int numOccupancies = 1 << Long.bitCount(masks[square]);
+
+            // we walk through every subset of the mask (carry-rippler)
+            long occupancy = 0;
+            for (int i = 0; i < numOccupancies; i++) {
+                final int index = (int) ((occupancy * magics[square]) >>> shifts[square]);
+                attacks[offsets[square] + index] = getAttacksBySliding(square, occupancy, directions);
+                occupancy = (occupancy - masks[square]) & masks[square];
+            }
+        }
+
+        return attacks;
+    }
+
+    /**
+     * @return the squares that can block the piece, without the edges of the board (as there is nothing behind them)
+     */
+    private static long getRelevantOccupancyMask(int squareIndex, int[][] directions) {
+
+        long mask = 0;
+
+        for (int[] direction : directions) {
+
+            int file = Square.getFile(squareIndex) + direction[0];
+            int row = Square.getRow(squareIndex) + direction[1];
+
+            // the next square also has to be on the board
+            while (isOnBoard(file + direction[0], row + direction[1])) {
+                mask |= 1L << Square.getIndex(file, row);
+                file += direction[0];
+                row += direction[1];
+            }
+        }
+
+        return mask;
+    }
+
+    private static long getAttacksBySliding(int squareIndex, long occupancy, int[][] directions) {
+
+        long attacks = 0;
+
+        for (int[] direction : directions) {
+
+            int file = Square.getFile(squareIndex) + direction[0];
+            int row = Square.getRow(squareIndex) + direction[1];
+
+            while (isOnBoard(file, row)) {
+
+                final long bit = 1L << Square.getIndex(file, row);
+
+                attacks |= bit;
+
+                if ((occupancy & bit) != 0)
+                    break;
+
+                file += direction[0];
+                row += direction[1];
+            }
+        }
+
+        return attacks;
+    }
+
+    private static void initSquaresBetween() {
+        for (int square1 = 0; square1 < 64; square1++) {
+            for (int square2 = 0; square2 < 64; square2++) {
+
+                final long bit1 = 1L << square1;
+                final long bit2 = 1L << square2;
+
+                // looking from both squares, with the other one blocking, the rays meet between them
+                // (and on an empty board, they overlap on the rest of the line)
+                if ((getRookAttacks(square1, 0) & bit2) != 0) {
+                    squaresBetween[square1][square2] = getRookAttacks(square1, bit2) & getRookAttacks(square2, bit1);
+                    lines[square1][square2] = getRookAttacks(square1, 0) & getRookAttacks(square2, 0) | bit1 | bit2;
+                } else if ((getBishopAttacks(square1, 0) & bit2) != 0) {
+                    squaresBetween[square1][square2] = getBishopAttacks(square1, bit2) & getBishopAttacks(square2, bit1);
+                    lines[square1][square2] = getBishopAttacks(square1, 0) & getBishopAttacks(square2, 0) | bit1 | bit2;
+                }
+            }
+        }
+    }
+
+    private static boolean isOnBoard(int file, int row) {
+        return file >= 0 && file <= 7 && row >= 0 && row <= 7;
+    }
+}
@@ -23,6 +23,18 @@ public record Move(
         @Nullable SpecialMove specialMove,
         boolean isCheck
 ) {
+
+    /**
+     * Set in encoded moves (see <code>encodeWithFlags</code>) if the move is a capture
+     */
+    public static final int CAPTURE_FLAG = 1 << 16;
+    /**
+     * Set in encoded moves (see <code>encodeWithFlags</code>) if the move is en passant
+     */
+    public static final int EN_PASSANT_FLAG = 1 << 17;
+    private static final int SPECIAL_MOVE_SHIFT = 18;
+    private static final SpecialMove[] SPECIAL_MOVES = SpecialMove.values();
+
     public Move (Square from, Square to, Class<? extends  Piece> promotionPieceType, boolean isCapture, boolean isEnPassant, SpecialMove specialMove) {
         this(from, to, promotionPieceType, isCapture, isEnPassant, specialMove, false);
     }
@@ -54,6 +66,100 @@ public record Move(
         return otherMove.specialMove == specialMove;
     }
 
+    /**
+     * Encodes the squares and the promotion of the move in 16 bits:
+     * <code>from | to << 6 | promotion << 12</code>, where promotion is the piece type in <code>BitBoardPosition</code>
+     * (or 0 if the move is not a promotion). As a move cannot go from A8 to A8, 0 can be used as "no move".
+     *
+     * @return the encoded move
+     */
+    public int encode() {
+        final int promotion = promotionPieceType != null ? BitBoardPosition.getPieceType(promotionPieceType) : 0;
+        return fromIndex | (toIndex << 6) | (promotion << 12);
+    }
+
+    /**
+     * Encodes the whole move in an int. The lowest 16 bits are the same as in <code>encode</code>, then come
+     * <code>CAPTURE_FLAG</code>, <code>EN_PASSANT_FLAG</code> and the ordinal of the special move (2 bits).
+     * The isCheck flag is not encoded.
+     *
+     * @return the encoded move
+     */
+    public int encodeWithFlags() {
+        return encode(fromIndex,
+                toIndex,
+                promotionPieceType != null ? BitBoardPosition.getPieceType(promotionPieceType) : 0,
+                isCapture,
+                isEnPassant,
+                specialMove != null ? specialMove : SpecialMove.NONE);
+    }
+
+    /**
+     * Encodes a move without creating a <code>Move</code> (see <code>encodeWithFlags</code>)
+     *
+     * @param promotionPieceType the type of the promoted piece in <code>BitBoardPosition</code> (or 0 if it is not a promotion)
+     * @return the encoded move
+     */
+    public static int encode(int fromIndex, int toIndex, int promotionPieceType, boolean isCapture, boolean isEnPassant, SpecialMove specialMove) {
+        return fromIndex
+                | (toIndex << 6)
+                | (promotionPieceType << 12)
+                | (isCapture ? CAPTURE_FLAG : 0)
+                | (isEnPassant ? EN_PASSANT_FLAG : 0)
+                | (specialMove.ordinal() << SPECIAL_MOVE_SHIFT);
+    }
+
+    /**
+     * Creates the move from its encoded form (see <code>encodeWithFlags</code>)
+     *
+     * @param encodedMove the encoded move
+     * @return the move
+     */
+    public static Move decode(int encodedMove) {
+        final int promotionPieceType = getPromotionPieceType(encodedMove);
+
+        return new Move(getFromIndex(encodedMove),
+                getToIndex(encodedMove),
+                promotionPieceType != 0 ? BitBoardPosition.getPieceClass(promotionPieceType) : null,
+                isCapture(encodedMove),
+                isEnPassant(encodedMove),
+                getSpecialMove(encodedMove));
+    }
+
+    /**
+     * @return the part of the encoded move that <code>encode</code> returns (the squares and the promotion)
+     */
+    public static int withoutFlags(int encodedMove) {
+        return encodedMove & 0xFFFF;
+    }
+
+    public static int getFromIndex(int encodedMove) {
+        return encodedMove & 0x3F;
+    }
+
+    public static int getToIndex(int encodedMove) {
+        return (encodedMove >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the type of the promoted piece in <code>BitBoardPosition</code> (or 0 if the move is not a promotion)
+     */
+    public static int getPromotionPieceType(int encodedMove) {
+        return (encodedMove >>> 12) & 0x7;
+    }
+
+    public static boolean isCapture(int encodedMove) {
+        return (encodedMove & CAPTURE_FLAG) != 0;
+    }
+
+    public static boolean isEnPassant(int encodedMove) {
+        return (encodedMove & EN_PASSANT_FLAG) != 0;
+    }
+
+    public static SpecialMove getSpecialMove(int encodedMove) {
+        return SPECIAL_MOVES[(encodedMove >>> SPECIAL_MOVE_SHIFT) & 0x3];
+    }
+
     public Square from() {
         return new Square(fromIndex);
     }
@@ -43,4 +43,25 @@ public record MoveResult(
 				new BitMap(0));
 	}
 
+	/**
+	 * Creates a result without special moves, pins or checks
+	 *
+	 * @param moveTargets     the squares, this piece can move to
+	 * @param isResultCapture the squares, this piece can capture
+	 * @param attackTargets   the squares that this piece attacks
+	 */
+	public MoveResult(long moveTargets, long isResultCapture, long attackTargets) {
+		this(new BitMap(moveTargets),
+				new BitMap(isResultCapture),
+				new BitMap(attackTargets),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0));
+	}
+
 }
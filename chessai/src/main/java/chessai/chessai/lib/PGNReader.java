@@ -205,7 +205,7 @@ public class PGNReader {
 
             Square fromSquare = new Square(fromFile, fromRow);
 
-            boolean isEnPassant = toSquare.equals(board.enPassantTarget);
+            boolean isEnPassant = toSquare.getIndex() == board.enPassantTargetIndex;
 
             return new Move(
                     fromSquare,
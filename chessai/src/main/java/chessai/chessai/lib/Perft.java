@@ -0,0 +1,452 @@
+package chessai.chessai.lib;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the game tree to a given depth (see <a href="https://www.chessprogramming.org/Perft">perft</a>).
+ * Comparing the counts to the known ones is the best way to check that the move generation is correct,
+ * and the nodes per second show how fast it is.
+ * <p>
+ * Deep counts can be made faster with a <code>Cache</code> (subtrees reached by different move orders are only counted once),
+ * and by counting the subtrees of the root moves in parallel.
+ * <p>
+ * It can be run with <code>gradlew perft</code>, see <code>main</code> for the arguments.
+ */
+public class Perft {
+
+    /**
+     * A position with its known node counts
+     *
+     * @param name           the name of the position
+     * @param fen            the FEN string of the position
+     * @param expectedCounts the node count at depth 1, 2, ...
+     */
+    public record Position(String name, String fen, long... expectedCounts) {
+        public int maxDepth() {
+            return expectedCounts.length;
+        }
+    }
+
+    /**
+     * The positions from <a href="https://www.chessprogramming.org/Perft_Results">Perft Results</a>
+     */
+    public static final List<Position> STANDARD_POSITIONS = List.of(
+            new Position("start",
+                    "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    20, 400, 8_902, 197_281, 4_865_609, 119_060_324),
+            new Position("kiwipete",
+                    "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2_039, 97_862, 4_085_603, 193_690_690),
+            new Position("position 3",
+                    "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2_812, 43_238, 674_624, 11_030_083, 178_633_661),
+            new Position("position 4",
+                    "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9_467, 422_333, 15_833_292),
+            new Position("position 5",
+                    "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1_486, 62_379, 2_103_487, 89_941_194),
+            new Position("position 6",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2_079, 89_890, 3_894_594, 164_075_551)
+    );
+
+    /**
+     * Remembers the node counts of subtrees by the Zobrist key of the position and the depth.
+     * <p>
+     * Many threads can use it at the same time without locks: like in <code>SharedTranspositionTable</code>,
+     * every long is accessed atomically and instead of the key we store <code>key ^ data</code>,
+     * so an entry that was written by two threads at the same time is just a miss.
+     */
+    public static class Cache {
+
+        private static final VarHandle LONG_ARRAY_HANDLE = MethodHandles.arrayElementVarHandle(long[].class);
+        private static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+        private static final long NO_ENTRY = 0;
+
+        /**
+         * Entry i is at <code>2 * i</code> (key ^ data) and <code>2 * i + 1</code> (data = count << 8 | depth)
+         */
+        private final long[] table;
+        private final int indexMask;
+
+        /**
+         * @param capacityInBytes the size of the cache (rounded down to a power of two entries)
+         */
+        public Cache(long capacityInBytes) {
+
+            final long numEntries = Math.max(1, capacityInBytes / BYTES_PER_ENTRY);
+            final int numEntriesPowerOfTwo = Integer.highestOneBit((int) Math.min(numEntries, 1 << 29));
+
+            table = new long[2 * numEntriesPowerOfTwo];
+            indexMask = numEntriesPowerOfTwo - 1;
+        }
+
+        /**
+         * @return the node count of the position to the depth, or -1 if it is not in the cache
+         */
+        public long get(long key, int depth) {
+
+            final int index = getIndex(key);
+
+            final long data = (long) LONG_ARRAY_HANDLE.getOpaque(table, index + 1);
+            final long keyXorData = (long) LONG_ARRAY_HANDLE.getOpaque(table, index);
+
+            if (data == NO_ENTRY || (keyXorData ^ data) != key || (data & 0xFF) != depth)
+                return -1;
+
+            return data >>> 8;
+        }
+
+        /**
+         * Stores a node count (always replacing the previous entry)
+         *
+         * @param depth the depth of the count (1-255)
+         */
+        public void put(long key, int depth, long count) {
+
+            final int index = getIndex(key);
+            final long data = count << 8 | depth;
+
+            LONG_ARRAY_HANDLE.setOpaque(table, index, key ^ data);
+            LONG_ARRAY_HANDLE.setOpaque(table, index + 1, data);
+        }
+
+        private int getIndex(long key) {
+            return (int) (key & indexMask) * 2;
+        }
+    }
+
+    /**
+     * Counts the subtree of a root move on its own copy of the board
+     * (the tasks are never serialized, they only run in the fork-join pool)
+     */
+    @SuppressWarnings("serial")
+    private static class RootMoveTask extends RecursiveTask<Long> {
+
+        private final Board board;
+        private final int depth;
+        private final Cache cache;
+
+        private RootMoveTask(Board board, int depth, Cache cache) {
+            this.board = board;
+            this.depth = depth;
+            this.cache = cache;
+        }
+
+        @Override
+        protected Long compute() {
+            return new Perft(board, cache).count(depth);
+        }
+    }
+
+    private final Board board;
+    /**
+     * Can be null (then nothing is cached)
+     */
+    private final Cache cache;
+    /**
+     * The moves of ply i are at <code>i * Board.MAX_LEGAL_MOVES</code>
+     */
+    private int[] moveStack = new int[0];
+
+    /**
+     * @param board the position to count from (it is changed during the counting, but restored at the end)
+     */
+    public Perft(Board board) {
+        this(board, null);
+    }
+
+    /**
+     * @param board the position to count from (it is changed during the counting, but restored at the end)
+     * @param cache the cache of the subtree counts (can be shared by many <code>Perft</code> objects, or null)
+     */
+    public Perft(Board board, Cache cache) {
+        this.board = board;
+        this.cache = cache;
+    }
+
+    /**
+     * Counts the leaf nodes to the given depth
+     *
+     * @param depth the depth (0 counts the position itself)
+     * @return the number of leaf nodes
+     */
+    public long count(int depth) {
+
+        if (depth <= 0)
+            return 1;
+
+        ensureMoveStackSize(depth);
+
+        return count(depth, 0);
+    }
+
+    /**
+     * Counts the leaf nodes to the given depth separately for every legal move
+     *
+     * @param depth the depth (at least 1)
+     * @return the number of leaf nodes after every move (in UCI notation), in the order of the move generation
+     */
+    public Map<String, Long> divide(int depth) {
+
+        if (depth < 1)
+            throw new IllegalArgumentException("The depth of divide has to be at least 1!");
+
+        ensureMoveStackSize(depth);
+
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        final int numMoves = board.generateLegalMoves(moveStack, 0);
+
+        for (int i = 0; i < numMoves; i++) {
+
+            final int move = moveStack[i];
+
+            board.doMove(move);
+            final long count = depth == 1 ? 1 : count(depth - 1, 1);
+            board.undoMove();
+
+            result.put(toUciString(Move.decode(move)), count);
+        }
+
+        return result;
+    }
+
+    /**
+     * Counts the subtrees of the root moves in parallel (every root move gets its own copy of the board)
+     *
+     * @param depth the depth (at least 1)
+     * @param pool  the threads that do the counting
+     * @return the number of leaf nodes after every move (in UCI notation), in the order of the move generation
+     */
+    public Map<String, Long> divideInParallel(int depth, ForkJoinPool pool) {
+
+        if (depth < 1)
+            throw new IllegalArgumentException("The depth of divide has to be at least 1!");
+
+        List<Move> moves = board.getLegalMoves();
+        List<RootMoveTask> tasks = new ArrayList<>(moves.size());
+
+        for (Move move : moves) {
+            RootMoveTask task = new RootMoveTask(board.makeMove(move), depth - 1, cache);
+            pool.execute(task);
+            tasks.add(task);
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        for (int i = 0; i < moves.size(); i++)
+            result.put(toUciString(moves.get(i)), tasks.get(i).join());
+
+        return result;
+    }
+
+    /**
+     * Counts the leaf nodes to the given depth, with the subtrees of the root moves counted in parallel
+     *
+     * @param depth the depth
+     * @param pool  the threads that do the counting
+     * @return the number of leaf nodes
+     */
+    public long countInParallel(int depth, ForkJoinPool pool) {
+
+        if (depth <= 1)
+            return count(depth);
+
+        return divideInParallel(depth, pool).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private long count(int depth, int ply) {
+
+        // the counts of depth 1 are cheaper to generate than to look up
+        final boolean isCached = cache != null && depth > 1;
+        final long key = isCached ? board.zobristKey() : 0;
+
+        if (isCached) {
+            final long cachedCount = cache.get(key, depth);
+            if (cachedCount != -1)
+                return cachedCount;
+        }
+
+        final int offset = ply * Board.MAX_LEGAL_MOVES;
+        final int numMoves = board.generateLegalMoves(moveStack, offset);
+
+        // bulk counting: we do not have to make the moves of the last ply
+        if (depth == 1)
+            return numMoves;
+
+        long result = 0;
+
+        for (int i = offset; i < offset + numMoves; i++) {
+            board.doMove(moveStack[i]);
+            result += count(depth - 1, ply + 1);
+            board.undoMove();
+        }
+
+        if (isCached)
+            cache.put(key, depth, result);
+
+        return result;
+    }
+
+    private void ensureMoveStackSize(int depth) {
+        if (moveStack.length < depth * Board.MAX_LEGAL_MOVES)
+            moveStack = new int[depth * Board.MAX_LEGAL_MOVES];
+    }
+
+    /**
+     * @return the move in UCI notation (for example e2e4 or a7a8q)
+     */
+    public static String toUciString(Move move) {
+
+        final int promotionType = Move.getPromotionPieceType(move.encode());
+
+        if (promotionType == 0)
+            return move.toShortString();
+
+        return move.toShortString() + BitBoardPosition.getFENChar(BitBoardPosition.getPieceCode(promotionType, PieceColor.BLACK));
+    }
+
+    /**
+     * Runs perft from the command line.
+     * <ul>
+     *     <li>without arguments, it runs the standard positions to depth 4 (and fails if a count is wrong)</li>
+     *     <li><code>suite &lt;max depth&gt;</code> runs the standard positions to the given depth</li>
+     *     <li><code>&lt;depth&gt; &lt;fen&gt;</code> counts a single position</li>
+     *     <li><code>divide &lt;depth&gt; &lt;fen&gt;</code> also prints the count after every move</li>
+     * </ul>
+     * These can be preceded by <code>--threads &lt;number of threads&gt;</code> to count the root moves in parallel,
+     * and <code>--cache &lt;size in MB&gt;</code> to cache the counts of the subtrees.
+     */
+    public static void main(String[] args) throws ParseException {
+
+        int numThreads = 1;
+        int cacheSizeInMB = 0;
+        int argsStart = 0;
+
+        while (argsStart + 1 < args.length && args[argsStart].startsWith("--")) {
+            switch (args[argsStart]) {
+                case "--threads" -> numThreads = Integer.parseInt(args[argsStart + 1]);
+                case "--cache" -> cacheSizeInMB = Integer.parseInt(args[argsStart + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[argsStart]);
+            }
+            argsStart += 2;
+        }
+
+        final Cache cache = cacheSizeInMB > 0 ? new Cache(cacheSizeInMB * 1024L * 1024L) : null;
+        final ForkJoinPool pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+
+        try {
+            if (args.length == argsStart || args[argsStart].equals("suite")) {
+
+                final int maxDepth = args.length > argsStart + 1 ? Integer.parseInt(args[argsStart + 1]) : 4;
+
+                if (!runSuite(maxDepth, cache, pool))
+                    System.exit(1);
+
+                return;
+            }
+
+            final boolean isDivide = args[argsStart].equals("divide");
+
+            if (isDivide)
+                argsStart++;
+
+            if (args.length < argsStart + 2)
+                throw new IllegalArgumentException("Usage: [--threads <n>] [--cache <MB>] ([divide] <depth> <fen> | suite [max depth])");
+
+            final int depth = Integer.parseInt(args[argsStart]);
+            final String fen = String.join(" ", List.of(args).subList(argsStart + 1, args.length));
+
+            Perft perft = new Perft(new Board(fen), cache);
+
+            final long startTime = System.nanoTime();
+
+            long nodes;
+
+            if (isDivide) {
+                nodes = 0;
+
+                Map<String, Long> counts = pool != null ? perft.divideInParallel(depth, pool) : perft.divide(depth);
+
+                for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                    System.out.printf("%s: %d%n", entry.getKey(), entry.getValue());
+                    nodes += entry.getValue();
+                }
+
+                System.out.println();
+            } else {
+                nodes = pool != null ? perft.countInParallel(depth, pool) : perft.count(depth);
+            }
+
+            printResult("depth " + depth, nodes, System.nanoTime() - startTime);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+    }
+
+    /**
+     * Counts the standard positions and compares them to the known counts
+     *
+     * @param maxDepth the deepest depth to count (positions with fewer known counts stop earlier)
+     * @return true if every count was correct
+     */
+    public static boolean runSuite(int maxDepth) throws ParseException {
+        return runSuite(maxDepth, null, null);
+    }
+
+    /**
+     * Counts the standard positions and compares them to the known counts
+     *
+     * @param maxDepth the deepest depth to count (positions with fewer known counts stop earlier)
+     * @param cache    the cache of the subtree counts (or null)
+     * @param pool     the threads that count the root moves in parallel (or null to count on this thread)
+     * @return true if every count was correct
+     */
+    public static boolean runSuite(int maxDepth, Cache cache, ForkJoinPool pool) throws ParseException {
+
+        boolean isEveryCountCorrect = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+
+        for (Position position : STANDARD_POSITIONS) {
+
+            Perft perft = new Perft(new Board(position.fen()), cache);
+
+            for (int depth = 1; depth <= Math.min(maxDepth, position.maxDepth()); depth++) {
+
+                final long startTime = System.nanoTime();
+                final long nodes = pool != null ? perft.countInParallel(depth, pool) : perft.count(depth);
+                final long time = System.nanoTime() - startTime;
+
+                final long expected = position.expectedCounts()[depth - 1];
+                final boolean isCorrect = nodes == expected;
+
+                isEveryCountCorrect &= isCorrect;
+                totalNodes += nodes;
+                totalTime += time;
+
+                printResult(String.format("%-11s depth %d %s", position.name(), depth, isCorrect ? "OK  " : "FAIL (expected " + expected + ")"), nodes, time);
+            }
+        }
+
+        printResult("total", totalNodes, totalTime);
+
+        return isEveryCountCorrect;
+    }
+
+    private static void printResult(String label, long nodes, long nanoTime) {
+        final double seconds = nanoTime / 1e9;
+        System.out.printf("%s: %d nodes in %.3f s (%.0f nodes/s)%n", label, nodes, seconds, seconds > 0 ? nodes / seconds : 0);
+    }
+}
@@ -31,4 +31,14 @@ public class PieceFactory {
         };
     }
 
+    /**
+     * Creates a new piece, determined by its piece code in <code>BitBoardPosition</code>
+     *
+     * @param pieceCode the code of the piece
+     * @return a new piece instance
+     */
+    public static Piece generateFromCode (int pieceCode) {
+        return generateFromChar(BitBoardPosition.getFENChar(pieceCode));
+    }
+
 }
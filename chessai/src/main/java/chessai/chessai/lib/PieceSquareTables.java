@@ -0,0 +1,161 @@
+package chessai.chessai.lib;
+
+/**
+ * The material and position values of the pieces, combined into one table indexed by piece code and square.
+ * The value of a position is the sum of the values of its pieces, so it can be updated incrementally when a piece is
+ * put on or removed from a square (like the Zobrist key, see <code>ZobristHash</code>).
+ * <p>
+ * The values are from white's perspective: the values of the black pieces are negative.
+ */
+public class PieceSquareTables {
+
+    public static final int PAWN_VALUE = 100;
+    public static final int KNIGHT_VALUE = 300;
+    public static final int BISHOP_VALUE = 320;
+    public static final int ROOK_VALUE = 500;
+    public static final int QUEEN_VALUE = 900;
+    /**
+     * A piece on the best square of its map is worth this much more than its material value
+     */
+    private static final float POSITION_MAP_WEIGHT = 10f;
+    /**
+     * Indexed by piece type
+     */
+    private static final int[] PIECE_VALUES = {PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, 0};
+    // note: all of these maps are for white (for black, we look at them from the other side)
+    private static final int[] PAWN_POSITION_MAP = new int[]{
+            0, 0, 0, 0, 0, 0, 0, 0,
+            60, 60, 60, 60, 60, 60, 60, 60,
+            50, 50, 50, 55, 55, 50, 50, 50,
+            35, 40, 40, 50, 50, 40, 40, 35,
+            20, 20, 30, 45, 45, 30, 20, 20,
+            10, 15, 20, 15, 15, 20, 15, 10,
+            20, 20, 10, 10, 10, 10, 20, 20,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT_POSITION_MAP = new int[]{
+            10, 10, 10, 10, 10, 10, 10, 10,
+            10, 30, 30, 30, 30, 30, 30, 10,
+            10, 30, 40, 40, 40, 40, 30, 10,
+            10, 30, 40, 50, 50, 40, 30, 10,
+            10, 30, 40, 50, 50, 40, 30, 10,
+            10, 30, 40, 40, 40, 40, 30, 10,
+            10, 30, 30, 30, 30, 30, 30, 10,
+            10, 10, 10, 10, 10, 10, 10, 10
+    };
+    private static final int[] BISHOP_POSITION_MAP = new int[]{
+            20, 10, 10, 10, 10, 10, 10, 20,
+            10, 20, 30, 30, 30, 30, 20, 10,
+            10, 30, 40, 40, 40, 40, 30, 10,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            20, 30, 40, 45, 45, 40, 30, 20,
+            20, 50, 30, 30, 30, 30, 40, 20,
+            20, 10, 10, 10, 10, 10, 10, 20
+    };
+    private static final int[] ROOK_POSITION_MAP = new int[]{
+            40, 45, 45, 45, 45, 45, 45, 40,
+            50, 50, 50, 60, 60, 50, 50, 50,
+            20, 30, 40, 40, 40, 40, 30, 20,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            10, 30, 40, 45, 45, 40, 30, 10,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            20, 20, 30, 40, 40, 30, 20, 20
+    };
+    private static final int[] QUEEN_POSITION_MAP = new int[]{
+            40, 45, 45, 45, 45, 45, 45, 40,
+            50, 50, 50, 60, 60, 50, 50, 50,
+            20, 30, 40, 40, 40, 40, 30, 20,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            10, 40, 45, 50, 50, 45, 40, 10,
+            10, 30, 40, 45, 45, 40, 30, 10,
+            10, 10, 20, 40, 40, 20, 10, 10,
+            20, 20, 30, 40, 40, 30, 20, 20
+    };
+    private static final int[] KING_POSITION_MAP = new int[]{
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            20, 20, 10, 10, 10, 10, 20, 20,
+            30, 30, 10, 10, 10, 10, 30, 30,
+    };
+    /**
+     * Indexed by piece type
+     */
+    private static final int[][] POSITION_MAPS = {
+            PAWN_POSITION_MAP,
+            KNIGHT_POSITION_MAP,
+            BISHOP_POSITION_MAP,
+            ROOK_POSITION_MAP,
+            QUEEN_POSITION_MAP,
+            KING_POSITION_MAP
+    };
+
+    /**
+     * Indexed by piece code and square
+     */
+    private static final int[][] values = new int[BitBoardPosition.NUM_PIECE_CODES][64];
+
+    static {
+        for (int pieceType = 0; pieceType < BitBoardPosition.NUM_PIECE_TYPES; pieceType++) {
+
+            final int[] positionMap = POSITION_MAPS[pieceType];
+
+            int maxValue = Integer.MIN_VALUE;
+
+            for (int value : positionMap)
+                maxValue = Math.max(maxValue, value);
+
+            for (int square = 0; square < 64; square++) {
+
+                // the maps are normalized, so every piece gets at most POSITION_MAP_WEIGHT from its position
+                final int value = PIECE_VALUES[pieceType]
+                        + (int) Math.floor(POSITION_MAP_WEIGHT * ((float) positionMap[square] / maxValue));
+
+                values[BitBoardPosition.getPieceCode(pieceType, PieceColor.WHITE)][square] = value;
+                // the square of a black piece is flipped to the other side of the board (same file, mirrored row)
+                values[BitBoardPosition.getPieceCode(pieceType, PieceColor.BLACK)][square ^ 56] = -value;
+            }
+        }
+    }
+
+    /**
+     * @param pieceCode   the code of the piece (see <code>BitBoardPosition</code>)
+     * @param squareIndex the square of the piece
+     * @return the value of the piece on the square (negative for black)
+     */
+    public static int get(int pieceCode, int squareIndex) {
+        return values[pieceCode][squareIndex];
+    }
+
+    /**
+     * @param pieceType the type of the piece (see <code>BitBoardPosition</code>)
+     * @return the material value of the piece (0 for the king)
+     */
+    public static int getPieceValue(int pieceType) {
+        return PIECE_VALUES[pieceType];
+    }
+
+    /**
+     * Computes the value of a position from scratch (the positions keep their value up to date themselves,
+     * see <code>BitBoardPosition.getPieceSquareScore</code>)
+     *
+     * @param position the position
+     * @return the sum of the values of the pieces
+     */
+    public static int computeScore(BitBoardPosition position) {
+
+        int score = 0;
+
+        for (long pieces = position.getOccupancy(); pieces != 0; pieces &= pieces - 1) {
+            final int squareIndex = Long.numberOfTrailingZeros(pieces);
+            score += get(position.get(squareIndex), squareIndex);
+        }
+
+        return score;
+    }
+}
@@ -10,140 +10,90 @@ public abstract class SlidingPiece extends Piece {
 	}
 
 	/**
-	 * This is used during move generation to calculate the pseudo-legal moves
+	 * Looks up the squares this type of piece attacks (see <code>MagicBitBoards</code>)
+	 *
+	 * @param squareIndex the square of the piece
+	 * @param occupancy   the occupied squares
+	 * @return the attacked squares, including the first blocker in every direction
 	 */
-	protected static void slide(int currentFile,
-	                            int currentRow,
-	                            BitMap otherColorPieces,
-	                            BitMap sameColorPieces,
-	                            BitMap enPassantPawn,
-	                            int enPassantTargetIndex,
-	                            BitMap otherColorKing,
-	                            MoveResult result,
-	                            int fileOffset,
-	                            int rowOffset) {
-
-		boolean canMove = true;
-		boolean canPin = true;
-		boolean canAttack = true;
-		/*
-		 * En passant pinning:
-		 * -------------------
-		 * Only occurs, when two pawns are on the same rank
-		 * and one of them has just moved 2 squares (and thus can be captured via en passant).
-		 * We also need a king of the color of the capturing pawn and a rook or queen to stare
-		 * down this row. The order of the pawns is not important.
-		 * If an en passant move would occur, both pawns would disappear from this row,
-		 * revealing an attack.
-		 *
-		 * We track the kings, the en passant pawn (the one that moved 2 squares) and ourself.
-		 * We need an order of
-		 * Rook/Queen - our en passant pawn - enemy piece - enemy king
-		 * or
-		 * Rook/Queen - enemy piece - our en passant pawn - enemy king
-		 *
-		 * We need to realized that it doesn't matter, what kind of enemy piece it is, as long as it is not a king.
-		 * If it is a pawn, tha case is trivial, otherwise there is no pawn to capture via en passant.
-		 *
-		 * For implementing this check, we can track whether we have passed our en passant pawn and an enemy piece before
-		 * arriving at the enemy king.
-		 * */
-		boolean haveWePassedAnEnemyPieceForEnPassantPin = false;
-		boolean haveWePassedOurEnPassantPawnForEnPassantPin = false;
-
-		// this will be or-d to the pin map
-		// we add the current position to the pin map, so we will know that by capturing this piece, we can eliminate the pin
-		BitMap pinTrace = new BitMap(0).setBit(Square.getIndex(currentFile, currentRow), true);
-
-		BitMap checkTrack = new BitMap(0).setBit(Square.getIndex(currentFile, currentRow), true);
-
-		for (int i = 1; i < 8; i++) {
-
-			final int squareIndex = Square.getIndex(currentFile + i * fileOffset, currentRow + i * rowOffset);
-
-			// we moved out of the board
-			if (squareIndex == -1)
-				return;
-
-			// our friendly piece is in the way
-			if (sameColorPieces.getBit(squareIndex)) {
-
-				// we are defending this square from the enemy king, if we can
-				if (canAttack)
-					result.attackTargetsWhilePretendingTheEnemyKingIsNotThere().setBitInPlace(squareIndex, true);
-
-				if (enPassantPawn.isZero()) // no en passants the previous move
-					return;
-				else if (!enPassantPawn.getBit(squareIndex)) // there was an en passant but not here
-					return;
-				else if (!canMove && haveWePassedOurEnPassantPawnForEnPassantPin) // we hit a second piece of our own
-					return;
-				else {
-					// there was an en passant here, and it was ours
-					canPin = false;
-					canMove = false;
-					canAttack = false;
-					haveWePassedOurEnPassantPawnForEnPassantPin = true;
-				}
-			}
-
-			handleNonPieceInteractions(result, canMove, canPin, canAttack, pinTrace, checkTrack, squareIndex);
-
-			// an enemy piece is in the way
-			if (otherColorPieces.getBit(squareIndex)) {
-
-				if (canMove) {
-					result.isResultCapture().setBitInPlace(squareIndex, true);
-
-					// we hit a piece, we can move no further
-					canMove = false;
-
-					// if it is the king, we can attack behind it
-					if (otherColorKing.getBit(squareIndex)) {
-						canPin = false; // we can at least still attack behind the king
-						result.checkTrack().orInPlace(checkTrack); // we are giving check
-					} else {
-						canAttack = false; // we can at least still pin this piece to the king
-						haveWePassedAnEnemyPieceForEnPassantPin = true;
-					}
-				} else if (canPin && otherColorKing.getBit(squareIndex)) {
-					result.pinMap().orInPlace(pinTrace);
-					return;
-				} else if (
-						haveWePassedOurEnPassantPawnForEnPassantPin
-								&& haveWePassedAnEnemyPieceForEnPassantPin
-								&& otherColorKing.getBit(squareIndex)
-				) {
-					result.isEnPassantTargetUnCapturableBecausePin().setBitInPlace(enPassantTargetIndex, true);
-					return;
-				} else if (
-						haveWePassedOurEnPassantPawnForEnPassantPin
-								&& !otherColorKing.getBit(squareIndex)
-								&& !haveWePassedAnEnemyPieceForEnPassantPin
-				) {
-					// we have passed our pawn and we are passing an enemy (not king) piece
-					haveWePassedAnEnemyPieceForEnPassantPin = true;
-				} else {
-					return;
-				}
+	protected abstract long getAttacks(int squareIndex, long occupancy);
+
+	@Override
+	public MoveResult getPseudoLegalMoves(Board board) {
+
+		final int squareIndex = getSquare().getIndex();
+		final long pieceBit = 1L << squareIndex;
+
+		final BitBoardPosition position = board.getPosition();
+		final PieceColor otherColor = color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+
+		final long sameColorPieces = position.getOccupancy(color);
+		final long otherColorPieces = position.getOccupancy(otherColor);
+		final long occupancy = sameColorPieces | otherColorPieces;
+		final long otherColorKing = position.getPieces(BitBoardPosition.KING, otherColor);
+
+		final long attacks = getAttacks(squareIndex, occupancy);
+
+		// the enemy king cannot step back along the line of our attack, so we look through it
+		final long attacksThroughKing = getAttacks(squareIndex, occupancy & ~otherColorKing);
+
+		long checkTrack = 0;
+		long pinMap = 0;
+		long unCapturableEnPassantTarget = 0;
+
+		// we only need to look for checks and pins if the king is on one of our lines
+		if ((getAttacks(squareIndex, 0) & otherColorKing) != 0) {
+
+			final int otherColorKingIndex = Long.numberOfTrailingZeros(otherColorKing);
+
+			// the track contains our square and the king's square as well, so capturing us also resolves the check / pin
+			final long squaresBetween = MagicBitBoards.getSquaresBetween(squareIndex, otherColorKingIndex);
+			final long track = squaresBetween | pieceBit | otherColorKing;
+			final long blockers = squaresBetween & occupancy;
+
+			if (blockers == 0) {
+				checkTrack = track;
+			} else if (Long.bitCount(blockers) == 1 && (blockers & otherColorPieces) != 0) {
+				pinMap = track;
+			} else if (board.enPassantTargetIndex != Board.NO_EN_PASSANT_TARGET && Long.bitCount(blockers) == 2) {
+				/*
+				 * En passant pinning:
+				 * -------------------
+				 * Only occurs, when two pawns are next to each other on the same rank as the enemy king
+				 * and one of them has just moved 2 squares (and thus can be captured via en passant by the other one).
+				 * If an en passant move would occur, both pawns would disappear from this rank,
+				 * revealing an attack. The order of the pawns is not important.
+				 * */
+				final int enPassantTargetIndex = board.enPassantTargetIndex;
+				final int enPassantPawnIndex = board.colorToMove == PieceColor.WHITE ?
+						enPassantTargetIndex + 8 // prev move was by black
+						: enPassantTargetIndex - 8; // prev move was by white
+				final long enPassantPawn = 1L << enPassantPawnIndex;
+				final long otherBlocker = blockers & ~enPassantPawn;
+				final int otherBlockerIndex = Long.numberOfTrailingZeros(otherBlocker);
+
+				final boolean isOtherBlockerCapturingPawn = (otherBlocker & otherColorPieces & position.getPieces(BitBoardPosition.PAWN, otherColor)) != 0
+						&& Square.getRow(otherBlockerIndex) == Square.getRow(enPassantPawnIndex)
+						&& Math.abs(Square.getFile(otherBlockerIndex) - Square.getFile(enPassantPawnIndex)) == 1;
+
+				if ((blockers & enPassantPawn & sameColorPieces) != 0 && isOtherBlockerCapturingPawn)
+					unCapturableEnPassantTarget = 1L << enPassantTargetIndex;
 			}
 		}
-	}
 
-	private static void handleNonPieceInteractions(MoveResult result, boolean canMove, boolean canPin, boolean canAttack, BitMap pinTrace, BitMap checkTrack, int squareIndex) {
-		// we can attack this square
-		if (canAttack)
-			result.attackTargetsWhilePretendingTheEnemyKingIsNotThere().setBitInPlace(squareIndex, true);
-
-		// we are at least able to pin
-		if (canPin)
-			pinTrace.setBitInPlace(squareIndex, true);
-
-		// if we are not behind the king, we can move there
-		if (canMove) {
-			result.moveTargets().setBitInPlace(squareIndex, true);
-			checkTrack.setBitInPlace(squareIndex, true);
-		}
+		return new MoveResult(
+				new BitMap(attacks & ~sameColorPieces),
+				new BitMap(attacks & otherColorPieces),
+				new BitMap(attacksThroughKing),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(0),
+				new BitMap(pinMap),
+				new BitMap(checkTrack),
+				new BitMap(unCapturableEnPassantTarget)
+		);
 	}
 
 }
@@ -1,17 +1,28 @@
 package chessai.chessai.lib;
 
-import chessai.chessai.lib.pieces.*;
-
 import java.util.Random;
 
 /**
  * This is a special kind of hashing function, commonly used in chess engines.
  * More on the algorithm: <a href="https://en.wikipedia.org/wiki/Zobrist_hashing">Wikipedia article</a>
+ * <p>
+ * The keys are 64 bits long and the random bit strings are generated from a fixed seed,
+ * so the same position has the same key in every run.
  */
 public class ZobristHash {
 
-    static int[][] pieceBitStrings;
-    static int blackToMoveBitString;
+    private static final long SEED = 0x5EED_C0FF_EE15_600DL;
+
+    static long[][] pieceBitStrings;
+    static long blackToMoveBitString;
+    /**
+     * Indexed by the castling rights encoded as bits (see <code>getCastlingRightsIndex</code>)
+     */
+    static long[] castlingRightsBitStrings;
+    /**
+     * Indexed by the file of the en passant target
+     */
+    static long[] enPassantFileBitStrings;
 
     static {
         initRandomBitStrings();
@@ -19,17 +30,37 @@ public class ZobristHash {
 
     private static void initRandomBitStrings() {
 
-        Random random = new Random(System.currentTimeMillis());
+        Random random = new Random(SEED);
 
-        pieceBitStrings = new int[64][12];
+        pieceBitStrings = new long[64][12];
 
         for (int i = 0; i < 64; i++) {
             for (int j = 0; j < 12; j++) {
-                pieceBitStrings[i][j] = random.nextInt();
+                pieceBitStrings[i][j] = random.nextLong();
+            }
+        }
+
+        blackToMoveBitString = random.nextLong();
+
+        // every castling right gets its own bit string, the combinations are the xor of these
+        long[] singleCastlingRightBitStrings = new long[4];
+
+        for (int i = 0; i < 4; i++)
+            singleCastlingRightBitStrings[i] = random.nextLong();
+
+        castlingRightsBitStrings = new long[16];
+
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 4; j++) {
+                if ((i & (1 << j)) != 0)
+                    castlingRightsBitStrings[i] ^= singleCastlingRightBitStrings[j];
             }
         }
 
-        blackToMoveBitString = random.nextInt();
+        enPassantFileBitStrings = new long[8];
+
+        for (int i = 0; i < 8; i++)
+            enPassantFileBitStrings[i] = random.nextLong();
     }
 
     /**
@@ -38,67 +69,98 @@ public class ZobristHash {
      * @param board the position
      * @return the zobrist hash value
      */
-    public static int computeHash(Board board) {
+    public static long computeHash(Board board) {
 
-        int hash = 0;
+        long hash = 0;
 
         if (board.colorToMove == PieceColor.BLACK)
             hash ^= blackToMoveBitString;
 
-        for (int i = 0; i < 64; i++) {
+        BitBoardPosition position = board.getPosition();
 
-            int indexOfPiece = 0;
+        for (int pieceCode = 0; pieceCode < BitBoardPosition.NUM_PIECE_CODES; pieceCode++) {
+            for (long pieces = position.getPieces(pieceCode); pieces != 0; pieces &= pieces - 1) {
+                hash ^= pieceBitStrings[Long.numberOfTrailingZeros(pieces)][pieceCode];
+            }
+        }
 
-            Piece piece = board.get(i);
+        hash ^= castlingRightsBitStrings[getCastlingRightsIndex(board)];
+        hash = xorEnPassantTarget(hash, board.enPassantTargetIndex);
 
-            if (piece == null)
-                continue;
+        return hash;
+    }
 
-            // default is 0 for pawn
-            if (piece instanceof Knight)
-                indexOfPiece = 1;
-            else if (piece instanceof Bishop)
-                indexOfPiece = 2;
-            else if (piece instanceof Rook)
-                indexOfPiece = 3;
-            else if (piece instanceof Queen)
-                indexOfPiece = 4;
-            else if (piece instanceof King)
-                indexOfPiece = 5;
+    /**
+     * Can be used to incrementally update hashes
+     *
+     * @param hash        the hash to update
+     * @param squareIndex the square the piece is put on (or removed from)
+     * @param pieceCode   the code of the piece (see <code>BitBoardPosition</code>)
+     * @return the updated hash
+     */
+    public static long xorPiece(long hash, int squareIndex, int pieceCode) {
+        return hash ^ pieceBitStrings[squareIndex][pieceCode];
+    }
 
-            if (piece.getColor() == PieceColor.BLACK)
-                indexOfPiece += 6;
+    /**
+     * Can be used to incrementally update hashes
+     *
+     * @return the updated hash
+     */
+    public static long xorPiece(long hash, int squareIndex, Class<? extends Piece> pieceType, PieceColor color) {
+        return xorPiece(hash, squareIndex, BitBoardPosition.getPieceCode(BitBoardPosition.getPieceType(pieceType), color));
+    }
 
-            hash ^= pieceBitStrings[i][indexOfPiece];
-        }
+    /**
+     * Updates the hash after the side to move has changed
+     *
+     * @param hash the hash to update
+     * @return the updated hash
+     */
+    public static long xorColorToMove(long hash) {
+        return hash ^ blackToMoveBitString;
+    }
 
-        return hash;
+    /**
+     * Xors the castling rights of the board into the hash.
+     * Doing it before and after a move updates the hash with the change in castling rights.
+     *
+     * @param hash  the hash to update
+     * @param board the board with the castling rights
+     * @return the updated hash
+     */
+    public static long xorCastlingRights(long hash, Board board) {
+        return hash ^ castlingRightsBitStrings[getCastlingRightsIndex(board)];
     }
 
     /**
-     * Can be used to incrementally update hashes
+     * Xors the en passant target into the hash (only its file matters)
      *
+     * @param hash                 the hash to update
+     * @param enPassantTargetIndex the index of the target, or <code>Board.NO_EN_PASSANT_TARGET</code> if there is none
      * @return the updated hash
      */
-    public static int xorPiece(int hash, int squareIndex, Class<? extends Piece> pieceType, PieceColor color) {
-
-        int indexOfPiece = 0;
-
-        // default is 0 for pawn
-        if (pieceType == Knight.class)
-            indexOfPiece = 1;
-        else if (pieceType == Bishop.class)
-            indexOfPiece = 2;
-        else if (pieceType == Rook.class)
-            indexOfPiece = 3;
-        else if (pieceType == Queen.class)
-            indexOfPiece = 4;
-        else if (pieceType == King.class)
-            indexOfPiece = 5;
-
-        if (color == PieceColor.BLACK)
-            indexOfPiece += 6;
-
-        return hash ^ pieceBitStrings[squareIndex][indexOfPiece];
+    public static long xorEnPassantTarget(long hash, int enPassantTargetIndex) {
+
+        if (enPassantTargetIndex == Board.NO_EN_PASSANT_TARGET)
+            return hash;
+
+        return hash ^ enPassantFileBitStrings[Square.getFile(enPassantTargetIndex)];
+    }
+
+    private static int getCastlingRightsIndex(Board board) {
+
+        int index = 0;
+
+        if (board.canWhiteCastleKingSide)
+            index |= 1;
+        if (board.canWhiteCastleQueenSide)
+            index |= 2;
+        if (board.canBlackCastleKingSide)
+            index |= 4;
+        if (board.canBlackCastleQueenSide)
+            index |= 8;
+
+        return index;
     }
 }
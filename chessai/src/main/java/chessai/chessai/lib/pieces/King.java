@@ -7,19 +7,6 @@ import chessai.chessai.lib.*;
  */
 public class King extends Piece {
 
-    private static final int MOVE_TARGET_START_FILE = 6;
-    private static final int MOVE_TARGET_START_ROW = 1;
-    private static final BitMap MOVE_TARGET_MAP = new BitMap(
-            "00000000" +
-                    "00000000" +
-                    "00000000" +
-                    "00000000" +
-                    "00000000" +
-                    "00000111" +
-                    "00000101" +
-                    "00000111"
-    );
-
     public King (PieceColor color) {
         super(color);
     }
@@ -30,23 +17,18 @@ public class King extends Piece {
 
     @Override
     public MoveResult getPseudoLegalMoves(Board board) {
-        final int currentFile = getSquare().file();
-        final int currentRow = getSquare().row();
-
-        BitMap otherColorPieces = color == PieceColor.WHITE ? board.blackPieces : board.whitePieces;
-        BitMap sameColorPieces = color == PieceColor.BLACK ? board.blackPieces : board.whitePieces;
+        final int squareIndex = getSquare().getIndex();
 
-        MoveResult result = new MoveResult();
+        final long sameColorPieces = board.getPosition().getOccupancy(color);
+        final long otherColorPieces = board.getPosition().getOccupancy(color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
 
-        BitMap offsetMoveMap = MOVE_TARGET_MAP.shift((currentFile - MOVE_TARGET_START_FILE), (currentRow - MOVE_TARGET_START_ROW));
+        final long attacks = AttackTables.getKingAttacks(squareIndex);
 
-        result.moveTargets().orInPlace(offsetMoveMap.and(sameColorPieces.invert()));
-        result.isResultCapture().orInPlace(offsetMoveMap.and(sameColorPieces.invert()).and(otherColorPieces));
-        result.attackTargetsWhilePretendingTheEnemyKingIsNotThere().orInPlace(offsetMoveMap);
+        MoveResult result = new MoveResult(attacks & ~sameColorPieces, attacks & otherColorPieces, attacks);
 
         // castling
 
-        BitMap piecesOnBoard = board.whitePieces.or(board.blackPieces);
+        BitMap piecesOnBoard = new BitMap(sameColorPieces | otherColorPieces);
 
         if (color == PieceColor.WHITE) {
 
@@ -10,19 +10,6 @@ import java.util.Optional;
  */
 public class Knight extends Piece {
 
-    private static final int MOVE_TARGET_START_FILE = 5;
-    private static final int MOVE_TARGET_START_ROW = 2;
-    private static final BitMap MOVE_TARGET_MAP = new BitMap(
-            "00000000" +
-                    "00000000" +
-                    "00000000" +
-                    "00001010" +
-                    "00010001" +
-                    "00000000" +
-                    "00010001" +
-                    "00001010"
-    );
-
     public Knight(PieceColor color) {
         super(color);
     }
@@ -34,21 +21,14 @@ public class Knight extends Piece {
 
     @Override
     public MoveResult getPseudoLegalMoves(Board board) {
-        final int currentFile = getSquare().file();
-        final int currentRow = getSquare().row();
-
-        BitMap otherColorPieces = color == PieceColor.WHITE ? board.blackPieces : board.whitePieces;
-        BitMap sameColorPieces = color == PieceColor.BLACK ? board.blackPieces : board.whitePieces;
-
-        MoveResult result = new MoveResult();
+        final int squareIndex = getSquare().getIndex();
 
-        BitMap offsetMoveMap = MOVE_TARGET_MAP.shift((currentFile - MOVE_TARGET_START_FILE), (currentRow - MOVE_TARGET_START_ROW));
+        final long sameColorPieces = board.getPosition().getOccupancy(color);
+        final long otherColorPieces = board.getPosition().getOccupancy(color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
 
-        result.moveTargets().orInPlace(offsetMoveMap.and(sameColorPieces.invert()));
-        result.isResultCapture().orInPlace(offsetMoveMap.and(sameColorPieces.invert()).and(otherColorPieces));
-        result.attackTargetsWhilePretendingTheEnemyKingIsNotThere().orInPlace(offsetMoveMap);
+        final long attacks = AttackTables.getKnightAttacks(squareIndex);
 
-        return result;
+        return new MoveResult(attacks & ~sameColorPieces, attacks & otherColorPieces, attacks);
     }
 
     @Override
@@ -17,69 +17,38 @@ public class Pawn extends Piece {
     @Override
     public MoveResult getPseudoLegalMoves(Board board) {
 
-        final int currentFile = getSquare().file();
+        final int squareIndex = getSquare().getIndex();
         final int currentRow = getSquare().row();
 
-        BitMap otherColorPieces = color == PieceColor.WHITE ? board.blackPieces : board.whitePieces;
-        BitMap sameColorPieces = color == PieceColor.BLACK ? board.blackPieces : board.whitePieces;
+        final long sameColorPieces = board.getPosition().getOccupancy(color);
+        final long otherColorPieces = board.getPosition().getOccupancy(color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
+        final long emptySquares = ~(sameColorPieces | otherColorPieces);
 
-        int rowOffset = color == PieceColor.WHITE ? 1 : -1;
+        final long enPassantTarget = board.enPassantTargetIndex != Board.NO_EN_PASSANT_TARGET ? 1L << board.enPassantTargetIndex : 0;
 
-        MoveResult result = new MoveResult();
-
-        final int oneMoveForwardIndex = Square.getIndex(currentFile, currentRow + rowOffset);
-        final int twoMoveForwardIndex = Square.getIndex(currentFile, currentRow + 2 * rowOffset);
-        final int attackToRightIndex = Square.getIndex(currentFile + 1, currentRow + rowOffset);
-        final int attackToLeftIndex = Square.getIndex(currentFile - 1, currentRow + rowOffset);
-
-        final int enPassantTargetIndex = board.enPassantTarget != null ? board.enPassantTarget.getIndex() : -1;
+        final long oneMoveForward = AttackTables.getPawnPushes(color, squareIndex);
+        final long attacks = AttackTables.getPawnAttacks(color, squareIndex);
 
         // single move forward
-        result.moveTargets().setBitInPlace(
-                oneMoveForwardIndex,
-                !otherColorPieces.getBit(oneMoveForwardIndex) && !sameColorPieces.getBit(oneMoveForwardIndex)
-        );
-
-        // double move
-        if ((
-                color == PieceColor.WHITE ? currentRow == 1 : currentRow == 6 // we are on the correct row
-        ) &&
-                !otherColorPieces.getBit(oneMoveForwardIndex) // nothing in front
-                && !sameColorPieces.getBit(oneMoveForwardIndex)
-                && !otherColorPieces.getBit(twoMoveForwardIndex) // nothing one square further
-                && !sameColorPieces.getBit(twoMoveForwardIndex)
-        ) {
-            result.moveTargets().setBitInPlace(twoMoveForwardIndex, true);
-            result.isResultDoublePawnMove().setBitInPlace(twoMoveForwardIndex, true);
-        }
+        final long singleMove = oneMoveForward & emptySquares;
 
-        // promotion from forward move (can also occur from capture)
-        if (color == PieceColor.WHITE ? currentRow == 6 : currentRow == 1)
-            result.isResultPromotion().setBitInPlace(oneMoveForwardIndex, true);
+        // double move (we are on the correct row and there is nothing in front of us)
+        long doubleMove = 0;
+        if ((color == PieceColor.WHITE ? currentRow == 1 : currentRow == 6) && singleMove != 0)
+            doubleMove = AttackTables.getPawnPushes(color, Long.numberOfTrailingZeros(singleMove)) & emptySquares;
 
-        BitMap targetableSquaresForCapture = otherColorPieces.copy();
+        final long captures = attacks & (otherColorPieces | enPassantTarget);
 
-        if (enPassantTargetIndex != -1)
-            targetableSquaresForCapture.setBitInPlace(enPassantTargetIndex, true);
+        MoveResult result = new MoveResult(singleMove | doubleMove | captures, captures, attacks);
 
-        captureAndAttackIfRelevant(currentRow, result, attackToLeftIndex, enPassantTargetIndex, targetableSquaresForCapture);
-        captureAndAttackIfRelevant(currentRow, result, attackToRightIndex, enPassantTargetIndex, targetableSquaresForCapture);
+        result.isResultDoublePawnMove().orInPlace(new BitMap(doubleMove));
+        result.isResultEnPassant().orInPlace(new BitMap(attacks & enPassantTarget));
 
-        return result;
-    }
+        // promotion from forward move (can also occur from capture)
+        if (color == PieceColor.WHITE ? currentRow == 6 : currentRow == 1)
+            result.isResultPromotion().orInPlace(new BitMap(oneMoveForward | attacks));
 
-    private void captureAndAttackIfRelevant(int currentRow,
-                                            MoveResult result,
-                                            int attackIndex,
-                                            int enPassantTargetIndex,
-                                            BitMap targetableSquaresForCapture) {
-        if (attackIndex != -1) {
-            result.attackTargetsWhilePretendingTheEnemyKingIsNotThere().setBitInPlace(attackIndex, true);
-            result.isResultCapture().setBitInPlace(attackIndex, targetableSquaresForCapture.getBit(attackIndex));
-            result.moveTargets().setBitInPlace(attackIndex, targetableSquaresForCapture.getBit(attackIndex));
-            result.isResultEnPassant().setBitInPlace(attackIndex, attackIndex == enPassantTargetIndex);
-            result.isResultPromotion().setBitInPlace(attackIndex, color == PieceColor.WHITE ? currentRow == 6 : currentRow == 1);
-        }
+        return result;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package chessai.chessai.swing_ui;
 
+import chessai.chessai.engine.Score;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -20,10 +22,8 @@ public class EvalBar extends JPanel {
 
         float ratio;
 
-        if (eval < Integer.MIN_VALUE + 20)
-            ratio = 0.0f;
-        else if (eval > Integer.MAX_VALUE - 10)
-            ratio = 1.0f;
+        if (Score.isMate(eval))
+            ratio = eval > 0 ? 1.0f : 0.0f;
         else
             ratio = Math.min(Math.max((eval / 1000.0f + 0.5f), 0.05f), 0.95f);
 
@@ -13,13 +13,17 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * The class containing all the menu logic.
  */
 public class Menu {
 
-	private static final Map<String, ChessEngine> PLAYABLE_CHESS_ENGINES;
+	/**
+	 * The engines by their names, an engine is only created when it is selected (some of them allocate a lot of memory)
+	 */
+	private static final Map<String, Supplier<ChessEngine>> PLAYABLE_CHESS_ENGINES;
 	private static final Map<String, String> AVAILABLE_THEMES;
 	private final JFrame window;
 	private final JPanel mainPanel;
@@ -31,11 +35,12 @@ public class Menu {
 
 	static {
 		PLAYABLE_CHESS_ENGINES = new HashMap<>();
-		PLAYABLE_CHESS_ENGINES.put("Random", new RandomEngine());
-		PLAYABLE_CHESS_ENGINES.put("Shallow Monte Carlo", new MonteCarloEngine(0, 1.1, 50, 10000));
-		PLAYABLE_CHESS_ENGINES.put("Deep Monte Carlo", new MonteCarloEngine(0, 1.4, 300, 100000));
-		PLAYABLE_CHESS_ENGINES.put("Minimax (10MB transposition table)", new MinimaxEngine(20, 10_000_000));
-		PLAYABLE_CHESS_ENGINES.put("Minimax (1GB transposition table)", new MinimaxEngine(20, 1_000_000_000));
+		PLAYABLE_CHESS_ENGINES.put("Random", RandomEngine::new);
+		PLAYABLE_CHESS_ENGINES.put("Shallow Monte Carlo", () -> new MonteCarloEngine(0, 1.1, 50, 10000));
+		PLAYABLE_CHESS_ENGINES.put("Deep Monte Carlo", () -> new MonteCarloEngine(0, 1.4, 300, 100000));
+		PLAYABLE_CHESS_ENGINES.put("Minimax (10MB transposition table)", () -> new MinimaxEngine(20, 10_000_000));
+		PLAYABLE_CHESS_ENGINES.put("Minimax (1GB transposition table)", () -> new MinimaxEngine(20, 1_000_000_000));
+		PLAYABLE_CHESS_ENGINES.put("Minimax (all cores, 256MB transposition table)", () -> new MinimaxEngine(20, 256_000_000, Runtime.getRuntime().availableProcessors()));
 
 		AVAILABLE_THEMES = new HashMap<>();
 		AVAILABLE_THEMES.put("Neo", "neo");
@@ -406,7 +411,7 @@ public class Menu {
 			}
 
 			var pvpFrame = new PvEGameFrame(
-					PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()),
+					PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()).get(),
 					isPlayingWithWhiteCheckBox.isSelected(),
 					availableTimeForTheEngine);
 			pvpFrame.setVisible(true);
@@ -507,7 +512,7 @@ public class Menu {
 			GameAnalyzerFrame gameAnalyzerFrame;
 
 			try {
-				gameAnalyzerFrame = new GameAnalyzerFrame(pgnString, PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()));
+				gameAnalyzerFrame = new GameAnalyzerFrame(pgnString, PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()).get());
 			} catch (ParseException ex) {
 				throw new RuntimeException(ex);
 			}
@@ -568,7 +573,7 @@ public class Menu {
 			PuzzleSolverFrame puzzleSolverFrame;
 
 			try {
-				puzzleSolverFrame = new PuzzleSolverFrame(fenField.getText().trim(), PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()));
+				puzzleSolverFrame = new PuzzleSolverFrame(fenField.getText().trim(), PLAYABLE_CHESS_ENGINES.get((String) engineSelectorDropdown.getSelectedItem()).get());
 			} catch (ParseException ex) {
 				throw new RuntimeException(ex);
 			}
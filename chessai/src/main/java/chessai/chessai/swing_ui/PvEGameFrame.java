@@ -1,6 +1,7 @@
 package chessai.chessai.swing_ui;
 
 import chessai.chessai.engine.ChessEngine;
+import chessai.chessai.engine.ClockTimeManager;
 import chessai.chessai.engine.EvaluatedMove;
 import chessai.chessai.lib.*;
 import chessai.chessai.lib.pieces.Queen;
@@ -115,25 +116,31 @@ public class PvEGameFrame extends JFrame {
 	private void calculateEngineMoveAndMakMoveAfterwards() {
 		this.engineMoveCalculatorWorker = new SwingWorker<>() {
 
-			Optional<Move> currentBestMove = Optional.empty();
-
 			@Override
 			protected Optional<EvaluatedMove> doInBackground() {
-				return PvEGameFrame.this.engine.makeMove(
-						PvEGameFrame.this.board,
-						optMove -> currentBestMove = optMove.map(EvaluatedMove::move),
-						this::isCancelled
-				);
+
+				// only the final move is played, the results of the single depths are not shown
+				final Consumer<Optional<EvaluatedMove>> callbackAfterEachDepth = optMove -> {
+				};
+
+				// the engine keeps track of its own time, it stops when it runs out of it
+				return availableTimeInMillisForEngine
+						.map(availableTimeInMillis -> PvEGameFrame.this.engine.makeMove(
+								PvEGameFrame.this.board,
+								callbackAfterEachDepth,
+								ClockTimeManager.forMoveTime(availableTimeInMillis)))
+						.orElseGet(() -> PvEGameFrame.this.engine.makeMove(
+								PvEGameFrame.this.board,
+								callbackAfterEachDepth,
+								this::isCancelled));
 			}
 
 			@Override
 			protected void done() {
 				// this is a callback to run after the thread finishes execution
 
-				if (isCancelled()) {
-					PvEGameFrame.this.makeMove(currentBestMove.orElse(null));
+				if (isCancelled())
 					return;
-				}
 
 				Optional<Move> result;
 
@@ -152,26 +159,6 @@ public class PvEGameFrame extends JFrame {
 			}
 		};
 
-		if (availableTimeInMillisForEngine.isPresent()) {
-			new SwingWorker<Void, Void>() {
-				int availableTimeInMillis = PvEGameFrame.this.availableTimeInMillisForEngine.get();
-
-				@Override
-				protected Void doInBackground() throws Exception {
-
-					long startTime = System.currentTimeMillis();
-
-					while (System.currentTimeMillis() < startTime + availableTimeInMillis) {
-						Thread.sleep(100);
-					}
-
-					PvEGameFrame.this.engineMoveCalculatorWorker.cancel(true);
-
-					return null;
-				}
-			}.execute();
-		}
-
 		engineMoveCalculatorWorker.execute();
 	}
 
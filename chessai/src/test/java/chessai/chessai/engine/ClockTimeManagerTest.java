@@ -0,0 +1,169 @@
+package chessai.chessai.engine;
+
+import chessai.chessai.lib.Board;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClockTimeManagerTest {
+
+    @Test
+    void limits() {
+        // 60 s for 30 moves, with 1 s increment
+        ClockTimeManager timeManager = new ClockTimeManager(60_050, 1_000, 30);
+
+        assertEquals(2_000 + 750, timeManager.getSoftLimitMillis());
+        assertEquals(4 * 2_750, timeManager.getHardLimitMillis());
+
+        // with little time left, the hard limit is only a part of it
+        ClockTimeManager almostOutOfTime = new ClockTimeManager(2_050, 0, 1);
+
+        assertEquals(2_000, almostOutOfTime.getSoftLimitMillis());
+        assertEquals(2_000, almostOutOfTime.getHardLimitMillis());
+
+        ClockTimeManager moveTime = ClockTimeManager.forMoveTime(500);
+
+        assertEquals(500, moveTime.getSoftLimitMillis());
+        assertEquals(500, moveTime.getHardLimitMillis());
+
+        // out of time, but there is still a (short) hard limit
+        ClockTimeManager outOfTime = new ClockTimeManager(30, 0, 0);
+
+        assertEquals(0, outOfTime.getSoftLimitMillis());
+        assertTrue(outOfTime.getHardLimitMillis() > 0);
+        assertTrue(ClockTimeManager.forMoveTime(0).getHardLimitMillis() > 0);
+
+        assertThrows(IllegalArgumentException.class, () -> new ClockTimeManager(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> ClockTimeManager.forMoveTime(-1));
+    }
+
+    @Test
+    void scoreDropExtendsTheSoftLimit() {
+        ClockTimeManager timeManager = new ClockTimeManager(60_050, 0, 30);
+
+        timeManager.start();
+
+        assertTrue(timeManager.shouldStartNextIteration(1, 50));
+        assertEquals(2_000, timeManager.getSoftLimitMillis());
+
+        assertTrue(timeManager.shouldStartNextIteration(2, 40));
+        assertEquals(2_000, timeManager.getSoftLimitMillis());
+
+        assertTrue(timeManager.shouldStartNextIteration(3, -100));
+        assertEquals(3_000, timeManager.getSoftLimitMillis());
+
+        // it is reset for the next move
+        timeManager.start();
+        assertEquals(2_000, timeManager.getSoftLimitMillis());
+    }
+
+    @Test
+    void engineStopsAtTheHardLimit() throws ParseException {
+        ChessEngine engine = new MinimaxEngine(30, 1_000_000);
+
+        List<Integer> finishedDepths = new ArrayList<>();
+
+        // the hard limit is reached after a fixed number of polls, so the test does not depend on the speed of the machine
+        TimeManager stopAfterPolls = new TimeManager() {
+
+            private int numPolls;
+
+            @Override
+            public void start() {
+                numPolls = 0;
+            }
+
+            @Override
+            public boolean isHardLimitReached() {
+                return ++numPolls > 20_000;
+            }
+
+            @Override
+            public boolean shouldStartNextIteration(int completedDepth, int eval) {
+                finishedDepths.add(completedDepth);
+                return true;
+            }
+        };
+
+        Board board = new Board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+
+        Optional<EvaluatedMove> result = engine.makeMove(board, move -> {
+        }, stopAfterPolls);
+
+        // the search was stopped in the middle of an iteration, but it still returns the move of the last finished one
+        assertTrue(result.isPresent());
+        assertTrue(board.isMoveLegal(result.get().move()));
+        assertFalse(finishedDepths.isEmpty());
+        assertTrue(finishedDepths.get(finishedDepths.size() - 1) < 30);
+    }
+
+    @Test
+    void engineReturnsAMoveEvenIfTheTimeIsAlreadyUp() throws ParseException {
+        ChessEngine engine = new MinimaxEngine(30, 1_000_000);
+
+        TimeManager outOfTime = new TimeManager() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public boolean isHardLimitReached() {
+                return true;
+            }
+
+            @Override
+            public boolean shouldStartNextIteration(int completedDepth, int eval) {
+                return true;
+            }
+        };
+
+        Board board = new Board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+
+        Optional<EvaluatedMove> result = engine.makeMove(board, move -> {
+        }, outOfTime);
+
+        // only the first iteration is searched
+        assertTrue(result.isPresent());
+        assertTrue(board.isMoveLegal(result.get().move()));
+        assertEquals(1, result.get().statistics().orElseThrow().depth());
+    }
+
+    @Test
+    void engineDoesNotStartAnIterationIfTheTimeManagerSaysSo() throws ParseException {
+        ChessEngine engine = new MinimaxEngine(30, 1_000_000);
+
+        List<Integer> finishedDepths = new ArrayList<>();
+
+        TimeManager stopAfterDepthThree = new TimeManager() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public boolean isHardLimitReached() {
+                return false;
+            }
+
+            @Override
+            public boolean shouldStartNextIteration(int completedDepth, int eval) {
+                finishedDepths.add(completedDepth);
+                return completedDepth < 3;
+            }
+        };
+
+        Optional<EvaluatedMove> result = engine.makeMove(
+                new Board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3"),
+                move -> {
+                },
+                stopAfterDepthThree);
+
+        assertTrue(result.isPresent());
+        assertEquals(List.of(1, 2, 3), finishedDepths);
+        assertEquals(3, result.get().statistics().orElseThrow().depth());
+    }
+}
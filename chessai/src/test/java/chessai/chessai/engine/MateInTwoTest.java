@@ -20,6 +20,19 @@ class MateInTwoTest {
         ChessEngine engine = new MinimaxEngine(4, 100_000);
 //        ChessEngine engine = new MonteCarloEngine(0, 1.4142, 150, 150d);
 
+        assertFindsMateInTwo(engine);
+    }
+
+    @Test
+    void findMateInTwoWithMultipleThreads() throws ParseException {
+
+        ChessEngine engine = new MinimaxEngine(4, 100_000, 4);
+
+        assertFindsMateInTwo(engine);
+    }
+
+    private void assertFindsMateInTwo(ChessEngine engine) throws ParseException {
+
         Board board1 = new Board("6k1/p2rR1p1/1p1r1p1R/3P4/4QPq1/1P6/P5PK/8 w - - 1 1");
 
         Optional<Move> move1 = engine.makeMove(board1);
@@ -0,0 +1,71 @@
+package chessai.chessai.engine;
+
+import chessai.chessai.lib.Board;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinimaxEngineTest {
+
+    private static final String ITALIAN_GAME = "r1bqkbnr/pppp1ppp/2n5/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3";
+
+    @Test
+    void tableIsKeptBetweenMoves() throws ParseException {
+
+        MinimaxEngine engine = new MinimaxEngine(4, 1_000_000);
+        Board board = new Board(ITALIAN_GAME);
+
+        SearchStatistics firstSearch = search(engine, board);
+        SearchStatistics secondSearch = search(engine, board);
+
+        // the second search starts with the results of the first one in the table
+        assertTrue(secondSearch.transpositionTableCutoffs() > 0);
+        assertTrue(secondSearch.nodes() < firstSearch.nodes());
+    }
+
+    @Test
+    void cutoffsComeFromTheFirstMove() throws ParseException {
+
+        SearchStatistics statistics = search(new MinimaxEngine(5, 10_000_000), new Board(ITALIAN_GAME));
+
+        // the killer, countermove and history tables should find the refutations of the quiet moves
+        assertTrue(statistics.firstMoveBetaCutoffRate() > 0.85);
+    }
+
+    @Test
+    void selectiveSearchVisitsFewerNodes() throws ParseException {
+
+        Board board = new Board(ITALIAN_GAME);
+
+        final long fullWidthNodes = search(new MinimaxEngine(5, 10_000_000, 1, SearchOptions.FULL_WIDTH), board).nodes();
+
+        for (SearchOptions options : new SearchOptions[]{
+                new SearchOptions(true, false, false),
+                new SearchOptions(false, true, false),
+                new SearchOptions(false, false, true),
+                SearchOptions.DEFAULT
+        }) {
+            assertTrue(search(new MinimaxEngine(5, 10_000_000, 1, options), board).nodes() < fullWidthNodes, options.toString());
+        }
+    }
+
+    @Test
+    void findsTheShortestMate() throws ParseException {
+
+        // white mates in two (starting with Rh8+), there are slower mates too
+        Board board = new Board("6k1/p2rR1p1/1p1r1p1R/3P4/4QPq1/1P6/P5PK/8 w - - 1 1");
+
+        EvaluatedMove move = new MinimaxEngine(6, 10_000_000).makeMove(board, m -> {}, () -> false).orElseThrow();
+
+        assertEquals(Score.mateIn(3), move.eval().orElseThrow());
+        assertEquals("M2", Score.toString(move.eval().orElseThrow()));
+    }
+
+    private static SearchStatistics search(ChessEngine engine, Board board) {
+        return engine.makeMove(board, move -> {}, () -> false)
+                .flatMap(EvaluatedMove::statistics)
+                .orElseThrow();
+    }
+}
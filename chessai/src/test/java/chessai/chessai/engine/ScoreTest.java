@@ -0,0 +1,48 @@
+package chessai.chessai.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreTest {
+
+    @Test
+    void mates() {
+
+        assertTrue(Score.mateIn(3) > Score.mateIn(5));
+        assertTrue(Score.matedIn(5) > Score.matedIn(3));
+        assertEquals(-Score.mateIn(4), Score.matedIn(4));
+
+        assertTrue(Score.isMate(Score.mateIn(1)));
+        assertTrue(Score.isMate(Score.matedIn(0)));
+        assertFalse(Score.isMate(0));
+        assertFalse(Score.isMate(2_000));
+        assertFalse(Score.isMate(Score.INFINITY));
+
+        // mating at ply 3 is the second move of the side to move, being mated at ply 4 is after its second move
+        assertEquals(2, Score.getMovesToMate(Score.mateIn(3)));
+        assertEquals(-2, Score.getMovesToMate(Score.matedIn(4)));
+    }
+
+    @Test
+    void transpositionTableConversion() {
+
+        // a mate 3 plies below a node at ply 2 is a mate in 3 from the node, wherever the node is found later
+        final int stored = Score.toTranspositionTable(Score.mateIn(5), 2);
+
+        assertEquals(Score.mateIn(3), stored);
+        assertEquals(Score.mateIn(7), Score.fromTranspositionTable(stored, 4));
+        assertEquals(Score.matedIn(6), Score.fromTranspositionTable(Score.toTranspositionTable(Score.matedIn(6), 3), 3));
+
+        assertEquals(-150, Score.toTranspositionTable(-150, 10));
+        assertEquals(-150, Score.fromTranspositionTable(-150, 10));
+    }
+
+    @Test
+    void toStringOfScores() {
+        assertEquals("+1.25", Score.toString(125));
+        assertEquals("-0.40", Score.toString(-40));
+        assertEquals("M3", Score.toString(Score.mateIn(5)));
+        assertEquals("-M2", Score.toString(Score.matedIn(4)));
+    }
+}
@@ -0,0 +1,65 @@
+package chessai.chessai.engine;
+
+import chessai.chessai.lib.Board;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchStatisticsTest {
+
+    @Test
+    void statisticsArePublishedAfterEveryIteration() throws ParseException {
+
+        ChessEngine engine = new MinimaxEngine(4, 100_000);
+
+        List<SearchStatistics> published = new ArrayList<>();
+
+        Optional<EvaluatedMove> result = engine.makeMove(
+                new Board("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3"),
+                move -> move.flatMap(EvaluatedMove::statistics).ifPresent(published::add),
+                () -> false);
+
+        assertEquals(4, published.size());
+
+        for (int i = 0; i < published.size(); i++) {
+
+            SearchStatistics statistics = published.get(i);
+
+            assertEquals(i + 1, statistics.depth());
+            assertTrue(statistics.selectiveDepth() >= statistics.depth());
+            assertTrue(statistics.quiescenceNodes() > 0);
+            assertTrue(statistics.quiescenceNodes() < statistics.nodes());
+            assertTrue(statistics.transpositionTableHits() <= statistics.transpositionTableProbes());
+            assertTrue(statistics.transpositionTableCutoffs() <= statistics.transpositionTableHits());
+            assertTrue(statistics.firstMoveBetaCutoffs() <= statistics.betaCutoffs());
+
+            // the counters are cumulative
+            if (i > 0)
+                assertTrue(statistics.nodes() > published.get(i - 1).nodes());
+        }
+
+        assertTrue(result.isPresent());
+        assertEquals(published.get(3), result.get().statistics().orElseThrow());
+    }
+
+    @Test
+    void derivedValues() {
+        SearchStatistics statistics = new SearchStatistics(5, 9, 2_000_000, 1_500_000, 400, 100, 50, 80, 60, 500_000_000);
+
+        assertEquals(4_000_000, statistics.nodesPerSecond());
+        assertEquals(500, statistics.elapsedMillis());
+        assertEquals(0.25, statistics.transpositionTableHitRate());
+        assertEquals(0.75, statistics.firstMoveBetaCutoffRate());
+
+        SearchStatistics emptyStatistics = new SearchStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        assertEquals(0, emptyStatistics.nodesPerSecond());
+        assertEquals(0, emptyStatistics.transpositionTableHitRate());
+        assertEquals(0, emptyStatistics.firstMoveBetaCutoffRate());
+    }
+}
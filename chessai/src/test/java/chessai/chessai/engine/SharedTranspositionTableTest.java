@@ -0,0 +1,80 @@
+package chessai.chessai.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedTranspositionTableTest {
+
+    @Test
+    void countsProbesAndStores() {
+
+        var table = new SharedTranspositionTable(1024);
+
+        table.put(10, 1, 3, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(10, 2, 4, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertEquals(2, TranspositionTable.getEval(table.probe(10)));
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(11));
+
+        // there are 16 buckets, so these go to the bucket of 10: the first two fill the empty
+        // depth-preferred slots and the third one replaces 10, as it is shallower
+        for (int i = 2; i <= 4; i++)
+            table.put(10 + i * 16L, i, 5, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getMisses());
+        assertEquals(1, table.getOverwrites());
+        assertEquals(1, table.getCollisions());
+
+        table.resetStatistics();
+
+        assertEquals(0, table.getHits());
+    }
+
+    @Test
+    void concurrentReadersOnlySeeConsistentEntries() throws InterruptedException {
+
+        // a small table, so the threads keep overwriting each other's entries
+        var table = new SharedTranspositionTable(4096);
+
+        AtomicBoolean isInconsistent = new AtomicBoolean(false);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+
+            final int seed = t;
+
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+
+                    long key = (i * 0x9E3779B97F4A7C15L) ^ seed;
+
+                    table.put(key, (int) key, (int) (key >>> 56) & 0x7F, TranspositionTable.EXACT, (int) (key >>> 32) & 0xFFF);
+
+                    long probedKey = ((i / 2) * 0x9E3779B97F4A7C15L) ^ ((seed + 1) % 4);
+                    long data = table.probe(probedKey);
+
+                    if (data != TranspositionTable.NO_ENTRY
+                            && (TranspositionTable.getEval(data) != (int) probedKey
+                            || TranspositionTable.getDepth(data) != ((int) (probedKey >>> 56) & 0x7F)
+                            || TranspositionTable.getBestMove(data) != ((int) (probedKey >>> 32) & 0xFFF)))
+                        isInconsistent.set(true);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertFalse(isInconsistent.get());
+        assertTrue(table.getHits() > 0);
+    }
+}
@@ -16,14 +16,45 @@ class TranspositionTableTest {
         table.put(10, -1);
         assertEquals(-1, table.get(10));
 
-        // this will clash with 10
-        table.put(138, -1);
-        assertEquals(-1, table.get(138));
+        // 1024 bytes are 16 buckets, so this is in the same bucket as 10 (but there is room for both)
+        table.put(26, -2);
+        assertEquals(-2, table.get(26));
+        assertEquals(-1, table.get(10));
 
         table.put(-100, 20);
         assertEquals(20, table.get(-100));
     }
 
+    @Test
+    void collisionsReplaceEntriesOfTheBucket() {
+
+        // 16 buckets, so every key here is in bucket 10
+        var table = new TranspositionTable(1024);
+
+        table.put(10, 0, 8, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(26, 0, 7, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(42, 0, 6, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(58, 0, 1, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        // the bucket is full, a shallow entry replaces the always-replace entry
+        table.put(74, 0, 2, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertTrue(table.contains(10));
+        assertTrue(table.contains(26));
+        assertTrue(table.contains(42));
+        assertFalse(table.contains(58));
+        assertTrue(table.contains(74));
+
+        // a deeper entry replaces the shallowest depth-preferred one
+        table.put(90, 0, 9, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertFalse(table.contains(42));
+        assertTrue(table.contains(90));
+        assertTrue(table.contains(10));
+        assertTrue(table.contains(26));
+        assertTrue(table.contains(74));
+    }
+
     @Test
     void contains() {
 
@@ -32,17 +63,108 @@ class TranspositionTableTest {
         table.put(10, -1);
         assertTrue(table.contains(10));
         assertFalse(table.contains(9));
+        // same bucket and same lower 32 bits as 10
+        assertFalse(table.contains(10 + (85L << 32)));
 
-        table.put(138, -1);
-        assertTrue(table.contains(138));
+        table.put(26, -1);
+        assertTrue(table.contains(26));
         assertTrue(table.contains(10));
         assertFalse(table.contains(-1));
 
         table.put(-100, 20);
         assertTrue(table.contains(-100));
-        assertTrue(table.contains(138));
+        assertTrue(table.contains(26));
         assertTrue(table.contains(10));
         assertFalse(table.contains(0));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void storesDepthBoundAndBestMove() {
+
+        var table = new TranspositionTable(1024);
+
+        table.put(42, -350, 7, TranspositionTable.LOWER_BOUND, 1234);
+
+        long data = table.probe(42);
+
+        assertNotEquals(TranspositionTable.NO_ENTRY, data);
+        assertEquals(-350, TranspositionTable.getEval(data));
+        assertEquals(7, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.getBound(data));
+        assertEquals(1234, TranspositionTable.getBestMove(data));
+
+        // a shallower result without a best move keeps the old best move
+        table.put(42, 10, 2, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        data = table.probe(42);
+
+        assertEquals(10, TranspositionTable.getEval(data));
+        assertEquals(1234, TranspositionTable.getBestMove(data));
+    }
+
+    @Test
+    void shallowBoundsDoNotReplaceDeeperResultsOfTheSamePosition() {
+
+        var table = new TranspositionTable(1024);
+
+        table.put(42, 100, 8, TranspositionTable.EXACT, 1234);
+
+        // much shallower and not exact, so it is thrown away
+        table.put(42, -50, 3, TranspositionTable.UPPER_BOUND, 4321);
+
+        long data = table.probe(42);
+
+        assertEquals(100, TranspositionTable.getEval(data));
+        assertEquals(8, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.EXACT, TranspositionTable.getBound(data));
+        assertEquals(1234, TranspositionTable.getBestMove(data));
+
+        // only a little shallower
+        table.put(42, 60, 6, TranspositionTable.LOWER_BOUND, 4321);
+
+        data = table.probe(42);
+
+        assertEquals(60, TranspositionTable.getEval(data));
+        assertEquals(6, TranspositionTable.getDepth(data));
+        assertEquals(4321, TranspositionTable.getBestMove(data));
+
+        // the entries of an earlier search can always be replaced
+        table.incrementAge();
+        table.put(42, -10, 1, TranspositionTable.UPPER_BOUND, TranspositionTable.NO_MOVE);
+
+        data = table.probe(42);
+
+        assertEquals(-10, TranspositionTable.getEval(data));
+        assertEquals(1, TranspositionTable.getDepth(data));
+        assertEquals(4321, TranspositionTable.getBestMove(data));
+    }
+
+    @Test
+    void prefersDeeperEntries() {
+
+        // 16 buckets, so these all go to the same bucket
+        var table = new TranspositionTable(1024);
+
+        table.put(16, 1, 10, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(32, 2, 9, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        table.put(48, 3, 8, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        for (int i = 4; i < 100; i++)
+            table.put(i * 16L, i, 1, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertTrue(table.contains(16));
+        assertTrue(table.contains(32));
+        assertTrue(table.contains(48));
+        assertTrue(table.contains(99 * 16L));
+        assertFalse(table.contains(98 * 16L));
+
+        // after a new search has started, the old entries can be replaced
+        table.incrementAge();
+        table.put(100 * 16L, 100, 1, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+
+        assertTrue(table.contains(100 * 16L));
+        assertFalse(table.contains(16));
+        assertTrue(table.contains(32));
+    }
+}
@@ -0,0 +1,47 @@
+package chessai.chessai.lib;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttackTablesTest {
+
+    @Test
+    void knightAndKingAttacks() {
+        assertEquals(bits("b3", "c2"), AttackTables.getKnightAttacks(Square.getIndex("a1")));
+        assertEquals(bits("c6", "e6", "f5", "f3", "e2", "c2", "b3", "b5"), AttackTables.getKnightAttacks(Square.getIndex("d4")));
+        assertEquals(bits("g8", "g7", "h7"), AttackTables.getKingAttacks(Square.getIndex("h8")));
+        assertEquals(8, Long.bitCount(AttackTables.getKingAttacks(Square.getIndex("e4"))));
+    }
+
+    @Test
+    void pawnAttacksAndPushes() {
+        assertEquals(bits("d3", "f3"), AttackTables.getPawnAttacks(PieceColor.WHITE, Square.getIndex("e2")));
+        assertEquals(bits("b6"), AttackTables.getPawnAttacks(PieceColor.BLACK, Square.getIndex("a7")));
+        assertEquals(bits("e3"), AttackTables.getPawnPushes(PieceColor.WHITE, Square.getIndex("e2")));
+        assertEquals(bits("e6"), AttackTables.getPawnPushes(PieceColor.BLACK, Square.getIndex("e7")));
+        assertEquals(0, AttackTables.getPawnPushes(PieceColor.WHITE, Square.getIndex("e8")));
+    }
+
+    @Test
+    void pawnAttacksOfAll() {
+        assertEquals(bits("b3", "d3", "e3", "g3"), AttackTables.getPawnAttacksOfAll(PieceColor.WHITE, bits("a2", "c2", "f2", "h2")));
+        assertEquals(bits("b6", "d6", "e6", "g6"), AttackTables.getPawnAttacksOfAll(PieceColor.BLACK, bits("a7", "c7", "f7", "h7")));
+
+        // the same as the attacks of the single pawns, on every square
+        for (PieceColor color : PieceColor.values()) {
+            for (int square = 0; square < 64; square++)
+                assertEquals(AttackTables.getPawnAttacks(color, square), AttackTables.getPawnAttacksOfAll(color, 1L << square));
+        }
+    }
+
+    private static long bits(String... squares) {
+
+        long result = 0;
+
+        for (String square : squares)
+            result |= 1L << Square.getIndex(square);
+
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+package chessai.chessai.lib;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitBoardPositionTest {
+
+    @Test
+    void putAndRemove() {
+
+        BitBoardPosition position = new BitBoardPosition();
+
+        final int whiteKnight = BitBoardPosition.getPieceCode(BitBoardPosition.KNIGHT, PieceColor.WHITE);
+        final int blackQueen = BitBoardPosition.getPieceCode(BitBoardPosition.QUEEN, PieceColor.BLACK);
+
+        position.put(Square.getIndex("d4"), whiteKnight);
+        position.put(Square.getIndex("e5"), blackQueen);
+
+        assertEquals(whiteKnight, position.get(Square.getIndex("d4")));
+        assertEquals(blackQueen, position.get(Square.getIndex("e5")));
+        assertEquals(BitBoardPosition.EMPTY, position.get(Square.getIndex("a1")));
+
+        assertEquals(1L << Square.getIndex("d4"), position.getWhiteOccupancy());
+        assertEquals(1L << Square.getIndex("e5"), position.getBlackOccupancy());
+        assertEquals(1L << Square.getIndex("e5"), position.getPieces(BitBoardPosition.QUEEN, PieceColor.BLACK));
+
+        assertEquals(blackQueen, position.remove(Square.getIndex("e5")));
+        assertEquals(BitBoardPosition.EMPTY, position.remove(Square.getIndex("e5")));
+        assertEquals(0, position.getBlackOccupancy());
+        assertEquals(0, position.getPieces(blackQueen));
+    }
+
+    @Test
+    void pieceSquareScore() throws ParseException {
+
+        BitBoardPosition position = new BitBoardPosition();
+
+        final int whiteKnight = BitBoardPosition.getPieceCode(BitBoardPosition.KNIGHT, PieceColor.WHITE);
+        final int blackKnight = BitBoardPosition.getPieceCode(BitBoardPosition.KNIGHT, PieceColor.BLACK);
+
+        position.put(Square.getIndex("d4"), whiteKnight);
+
+        assertEquals(PieceSquareTables.get(whiteKnight, Square.getIndex("d4")), position.getPieceSquareScore());
+        assertTrue(position.getPieceSquareScore() > PieceSquareTables.KNIGHT_VALUE);
+
+        // the same square from black's side
+        position.put(Square.getIndex("d5"), blackKnight);
+
+        assertEquals(0, position.getPieceSquareScore());
+
+        position.remove(Square.getIndex("d4"));
+
+        assertEquals(PieceSquareTables.get(blackKnight, Square.getIndex("d5")), position.getPieceSquareScore());
+        assertEquals(PieceSquareTables.computeScore(position), position.getPieceSquareScore());
+        assertEquals(position.getPieceSquareScore(), new BitBoardPosition(position).getPieceSquareScore());
+
+        // the position is symmetric
+        assertEquals(0, new Board("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1").getPosition().getPieceSquareScore());
+    }
+
+    @Test
+    void matchesBoard() throws ParseException {
+
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        BitBoardPosition position = board.getPosition();
+
+        for (int i = 0; i < 64; i++) {
+            if (board.get(i) == null) {
+                assertEquals(BitBoardPosition.EMPTY, position.get(i));
+            } else {
+                assertEquals(board.get(i).getFENChar(), BitBoardPosition.getFENChar(position.get(i)));
+                assertEquals(board.get(i).getColor(), BitBoardPosition.getColor(position.get(i)));
+            }
+        }
+
+        assertEquals(Square.getIndex("e1"), position.getKingIndex(PieceColor.WHITE));
+        assertEquals(Square.getIndex("e8"), position.getKingIndex(PieceColor.BLACK));
+        assertEquals(32, Long.bitCount(position.getOccupancy()));
+    }
+}
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.Test;
 import org.opentest4j.TestAbortedException;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -128,6 +130,41 @@ class BoardTest {
                 .count();
 
         assertEquals(1, legalMovesFromD5);
+
+        // the same with a queen
+        Board pinnedByQueenBoard = new Board("4k3/8/8/2KPp2q/8/8/8/8 w - e6 0 1");
+
+        assertEquals(1, pinnedByQueenBoard.getLegalMoves()
+                .stream().filter(move -> move.fromIndex() == Square.getIndex("d5"))
+                .count());
+
+        // the white pawn on d4 still blocks the diagonal after the en passant
+        Board notPinnedBoard = new Board("r3k2r/Pp1p1ppp/1b3nbN/nPp5/BBPPP3/q4N2/Pp4PP/R2Q1RK1 w kq c6 0 2");
+
+        assertTrue(notPinnedBoard.getLegalMoves()
+                .stream().anyMatch(move -> move.fromIndex() == Square.getIndex("b5") && move.isEnPassant()));
+    }
+
+    @Test
+    void movesInCheck() throws ParseException {
+        // the pawn giving check can be captured en passant
+        Board enPassantOutOfCheckBoard = new Board("8/8/8/2k5/3Pp3/8/8/4K3 b - d3 0 1");
+
+        assertTrue(enPassantOutOfCheckBoard.getLegalMoves()
+                .stream().anyMatch(move -> move.fromIndex() == Square.getIndex("e4") && move.isEnPassant()));
+
+        // the knight on e2 is pinned, so it cannot block the check of the rook on the first row (on c1)
+        Board pinnedBlockerBoard = new Board("4r2k/8/8/8/8/8/4N3/r3K3 w - - 0 1");
+
+        assertTrue(pinnedBlockerBoard.getLegalMoves()
+                .stream().noneMatch(move -> move.fromIndex() == Square.getIndex("e2")));
+
+        // double check, only the king can move
+        Board doubleCheckBoard = new Board("4r2k/8/8/8/8/5n2/3Q4/4K3 w - - 0 1");
+
+        assertTrue(doubleCheckBoard.getLegalMoves()
+                .stream().allMatch(move -> move.fromIndex() == Square.getIndex("e1")));
+        assertFalse(doubleCheckBoard.getLegalMoves().isEmpty());
     }
 
     @Test
@@ -256,4 +293,313 @@ class BoardTest {
                         .isCheck()
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void doMoveAndUndoMove() throws ParseException {
+
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        String fenBefore = board.getFENString();
+        int hashBefore = board.hashCode();
+        int numLegalMovesBefore = board.getLegalMoves().size();
+
+        for (Move move : new ArrayList<>(board.getLegalMoves())) {
+
+            String expectedFen = board.makeMove(move).getFENString();
+
+            board.doMove(move);
+
+            assertEquals(expectedFen, board.getFENString());
+
+            for (Move reply : new ArrayList<>(board.getLegalMoves())) {
+                board.doMove(reply);
+                board.undoMove();
+            }
+
+            board.undoMove();
+
+            assertEquals(fenBefore, board.getFENString());
+            assertEquals(hashBefore, board.hashCode());
+        }
+
+        assertEquals(numLegalMovesBefore, board.getLegalMoves().size());
+        assertEquals(0, board.getUndoableMoveCount());
+        assertThrows(IllegalStateException.class, board::undoMove);
+    }
+
+    @Test
+    void generateLegalMovesMatchesGetLegalMoves() throws ParseException {
+        // castling, en passant and promotions
+        for (String fen : new String[]{
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbqkbnr/ppp2ppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3"
+        }) {
+            Board board = new Board(fen);
+
+            final int offset = 5;
+            int[] buffer = new int[offset + Board.MAX_LEGAL_MOVES];
+
+            final int numMoves = board.generateLegalMoves(buffer, offset);
+
+            List<Move> legalMoves = new Board(fen).getLegalMoves();
+
+            assertEquals(legalMoves.size(), numMoves);
+
+            for (int i = 0; i < numMoves; i++) {
+
+                final Move move = Move.decode(buffer[offset + i]);
+
+                assertEquals(legalMoves.get(i), move);
+                assertEquals(legalMoves.get(i).promotionPieceType(), move.promotionPieceType());
+                assertEquals(buffer[offset + i], move.encodeWithFlags());
+                assertEquals(move.encode(), Move.withoutFlags(buffer[offset + i]));
+
+                String expectedFen = board.makeMove(move).getFENString();
+
+                board.doMove(buffer[offset + i]);
+                assertEquals(expectedFen, board.getFENString());
+                board.undoMove();
+            }
+        }
+    }
+
+    @Test
+    void capturesAndQuietMovesAreTheLegalMoves() throws ParseException {
+        // castling, en passant, promotions (also with capture) and a position in check
+        for (String fen : new String[]{
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbqkbnr/ppp2ppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+                "4k3/8/8/8/1b6/8/8/R3K3 w - - 0 1"
+        }) {
+            int[] buffer = new int[2 * Board.MAX_LEGAL_MOVES];
+
+            // with and without the moves of the position cached
+            for (Board board : List.of(new Board(fen), getBoardWithCachedMoves(fen))) {
+
+                final int numCaptures = board.generateLegalCaptures(buffer, 0);
+                final int numQuietMoves = board.generateLegalQuietMoves(buffer, numCaptures);
+
+                List<Move> legalMoves = new Board(fen).getLegalMoves();
+
+                assertEquals(legalMoves.size(), numCaptures + numQuietMoves);
+
+                for (int i = 0; i < numCaptures + numQuietMoves; i++) {
+
+                    final boolean isCaptureOrPromotion = Move.isCapture(buffer[i]) || Move.getPromotionPieceType(buffer[i]) != 0;
+
+                    assertEquals(i < numCaptures, isCaptureOrPromotion);
+                    assertTrue(legalMoves.contains(Move.decode(buffer[i])));
+                }
+            }
+        }
+    }
+
+    private static int encode(String from, String to) {
+        return new Move(new Square(from), new Square(to), null, false, false, null).encode();
+    }
+
+    private static Board getBoardWithCachedMoves(String fen) throws ParseException {
+        Board board = new Board(fen);
+        board.getLegalMoves();
+        return board;
+    }
+
+    @Test
+    void findLegalMove() throws ParseException {
+
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        for (Move move : board.getLegalMoves())
+            assertEquals(move.encodeWithFlags(), new Board(board).findLegalMove(move.encode()));
+
+        // empty square, enemy piece and blocked rook
+        assertEquals(0, board.findLegalMove(encode("A3", "A4")));
+        assertEquals(0, board.findLegalMove(encode("A7", "A6")));
+        assertEquals(0, board.findLegalMove(encode("A1", "A3")));
+
+        // king moving into check and pinned knight
+        assertEquals(0, new Board("4k3/8/8/8/8/8/8/r3K3 w - - 0 1").findLegalMove(encode("E1", "D1")));
+        assertEquals(0, new Board("4k3/4r3/8/8/8/8/4N3/4K3 w - - 0 1").findLegalMove(encode("E2", "C3")));
+    }
+
+    @Test
+    void nullMove() throws ParseException {
+
+        final String fen = "rnbqkbnr/ppp2ppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3";
+        Board board = new Board(fen);
+
+        board.doNullMove();
+
+        assertEquals(PieceColor.BLACK, board.colorToMove);
+        assertEquals(Board.NO_EN_PASSANT_TARGET, board.enPassantTargetIndex);
+        assertEquals(ZobristHash.computeHash(board), board.zobristKey());
+        assertEquals(new Board("rnbqkbnr/ppp2ppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 3").getLegalMoves().size(), board.getLegalMoves().size());
+
+        board.undoMove();
+
+        assertEquals(fen, board.getFENString());
+        assertEquals(new Board(fen).zobristKey(), board.zobristKey());
+    }
+
+    @Test
+    void threefoldRepetition() throws ParseException {
+
+        Board board = new Board("4k1r1/8/8/8/8/8/8/4K1R1 w - - 0 1");
+
+        // the rooks go out and back twice, so the position is on the board for the third time
+        for (int i = 0; i < 2; i++) {
+
+            assertFalse(board.isDrawByRule());
+
+            board.doMove(new Move(Square.getIndex("g1"), Square.getIndex("g2"), null, false, false, SpecialMove.NONE));
+            board.doMove(new Move(Square.getIndex("g8"), Square.getIndex("g7"), null, false, false, SpecialMove.NONE));
+            board.doMove(new Move(Square.getIndex("g2"), Square.getIndex("g1"), null, false, false, SpecialMove.NONE));
+            board.doMove(new Move(Square.getIndex("g7"), Square.getIndex("g8"), null, false, false, SpecialMove.NONE));
+        }
+
+        assertTrue(board.isDrawByRule());
+        // the copy keeps the keys of the earlier positions
+        assertTrue(new Board(board).isDrawByRule());
+
+        board.undoMove();
+
+        assertFalse(board.isDrawByRule());
+    }
+
+    @Test
+    void isInCheck() throws ParseException {
+        assertTrue(new Board("4k3/8/8/8/1b6/8/8/R3K3 w - - 0 1").isInCheck());
+        assertFalse(new Board("4k3/8/8/8/1b6/8/8/R3K3 b - - 0 1").isInCheck());
+        // the pawn blocks the bishop
+        assertFalse(new Board("4k3/8/8/8/1b6/8/3P4/R3K3 w - - 0 1").isInCheck());
+    }
+
+    @Test
+    void hasNonPawnMaterial() throws ParseException {
+        Board board = new Board("4k3/pppp4/8/8/8/8/4PPPP/4K1N1 w - - 0 1");
+
+        assertTrue(board.hasNonPawnMaterial(PieceColor.WHITE));
+        assertFalse(board.hasNonPawnMaterial(PieceColor.BLACK));
+    }
+
+    @Test
+    void incrementalHashMatchesComputedHash() throws ParseException {
+        // castling, en passant and promotions all happen within two plies of these positions
+        assertIncrementalHashIsCorrect(new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), 2);
+        assertIncrementalHashIsCorrect(new Board("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 2);
+    }
+
+    private void assertIncrementalHashIsCorrect(Board board, int depth) {
+
+        assertEquals(ZobristHash.computeHash(board), board.zobristKey());
+
+        if (depth == 0)
+            return;
+
+        for (Move move : new ArrayList<>(board.getLegalMoves())) {
+            board.doMove(move);
+            assertIncrementalHashIsCorrect(board, depth - 1);
+            board.undoMove();
+        }
+    }
+
+    @Test
+    void incrementalPieceSquareScoreMatchesComputedScore() throws ParseException {
+        assertIncrementalPieceSquareScoreIsCorrect(new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), 2);
+        assertIncrementalPieceSquareScoreIsCorrect(new Board("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 2);
+
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        final int score = board.getPosition().getPieceSquareScore();
+
+        board.doNullMove();
+        assertEquals(score, board.getPosition().getPieceSquareScore());
+        board.undoMove();
+        assertEquals(score, board.getPosition().getPieceSquareScore());
+    }
+
+    private void assertIncrementalPieceSquareScoreIsCorrect(Board board, int depth) {
+
+        assertEquals(PieceSquareTables.computeScore(board.getPosition()), board.getPosition().getPieceSquareScore());
+
+        if (depth == 0)
+            return;
+
+        for (Move move : new ArrayList<>(board.getLegalMoves())) {
+            board.doMove(move);
+            assertIncrementalPieceSquareScoreIsCorrect(board, depth - 1);
+            board.undoMove();
+        }
+    }
+
+    @Test
+    void attackBitBoard() throws ParseException {
+
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        final long whiteAttacks = board.getAttackBitBoard(PieceColor.WHITE);
+        final long blackAttacks = board.getAttackBitBoard(PieceColor.BLACK);
+
+        // the attack maps are not generated just for the bitboards
+        assertNull(board.whiteAttackSquares);
+
+        board.generateAttackSquare();
+
+        assertEquals(board.whiteAttackSquares.getData(), whiteAttacks);
+        assertEquals(board.blackAttackSquares.getData(), blackAttacks);
+    }
+
+    @Test
+    void zobristKeyIncludesCastlingRightsAndEnPassant() throws ParseException {
+
+        long key = new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1").zobristKey();
+
+        assertEquals(key, new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1").zobristKey());
+        assertNotEquals(key, new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq - 0 1").zobristKey());
+        assertNotEquals(key, new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R w Kkq d6 0 1").zobristKey());
+        assertNotEquals(key, new Board("r3k2r/8/8/3pP3/8/8/8/R3K2R b KQkq d6 0 1").zobristKey());
+
+        // the same position reached with different move orders
+        Board board1 = new Board("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        Board board2 = new Board(board1);
+
+        board1.doMove(new Move(Square.getIndex("g1"), Square.getIndex("f3"), null, false, false, SpecialMove.NONE));
+        board1.doMove(new Move(Square.getIndex("g8"), Square.getIndex("f6"), null, false, false, SpecialMove.NONE));
+        board1.doMove(new Move(Square.getIndex("b1"), Square.getIndex("c3"), null, false, false, SpecialMove.NONE));
+
+        board2.doMove(new Move(Square.getIndex("b1"), Square.getIndex("c3"), null, false, false, SpecialMove.NONE));
+        board2.doMove(new Move(Square.getIndex("g8"), Square.getIndex("f6"), null, false, false, SpecialMove.NONE));
+        board2.doMove(new Move(Square.getIndex("g1"), Square.getIndex("f3"), null, false, false, SpecialMove.NONE));
+
+        assertEquals(board1.zobristKey(), board2.zobristKey());
+        assertEquals(board1, board2);
+    }
+
+    @Test
+    void staticExchangeEvaluation() throws ParseException {
+        // undefended pawn
+        assertEquals(100, getStaticExchangeEvaluation("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1", "e4", "d5"));
+        // pawn for pawn
+        assertEquals(0, getStaticExchangeEvaluation("4k3/8/4p3/3p4/4P3/8/8/4K3 w - - 0 1", "e4", "d5"));
+        // queen for pawn
+        assertEquals(-800, getStaticExchangeEvaluation("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", "d1", "d5"));
+        // en passant
+        assertEquals(100, getStaticExchangeEvaluation("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5", "d6"));
+        // the rooks behind the first attackers join in (x-ray), so white has to stop after the first recapture
+        assertEquals(100, getStaticExchangeEvaluation("4k3/3r4/8/3p4/8/8/3R4/3RK3 w - - 0 1", "d2", "d5"));
+        assertEquals(-400, getStaticExchangeEvaluation("3rk3/3r4/8/3p4/8/8/3R4/3RK3 w - - 0 1", "d2", "d5"));
+    }
+
+    private static int getStaticExchangeEvaluation(String fen, String from, String to) throws ParseException {
+
+        Board board = new Board(fen);
+
+        Move move = board.getLegalMoves().stream()
+                .filter(legalMove -> legalMove.fromIndex() == Square.getIndex(from) && legalMove.toIndex() == Square.getIndex(to))
+                .findFirst()
+                .orElseThrow();
+
+        return board.getStaticExchangeEvaluation(move);
+    }
+}
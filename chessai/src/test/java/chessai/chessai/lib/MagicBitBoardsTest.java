@@ -0,0 +1,82 @@
+package chessai.chessai.lib;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MagicBitBoardsTest {
+
+    @Test
+    void matchesSlidingOnRandomOccupancies() {
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+
+            final long occupancy = random.nextLong() & random.nextLong();
+
+            for (int square = 0; square < 64; square++) {
+                assertEquals(slide(square, occupancy, true), MagicBitBoards.getRookAttacks(square, occupancy));
+                assertEquals(slide(square, occupancy, false), MagicBitBoards.getBishopAttacks(square, occupancy));
+            }
+        }
+    }
+
+    @Test
+    void squaresBetween() {
+
+        final long d2ToD7 = bits("d3", "d4", "d5", "d6");
+
+        assertEquals(d2ToD7, MagicBitBoards.getSquaresBetween(Square.getIndex("d2"), Square.getIndex("d7")));
+        assertEquals(d2ToD7, MagicBitBoards.getSquaresBetween(Square.getIndex("d7"), Square.getIndex("d2")));
+        assertEquals(bits("b2", "c3"), MagicBitBoards.getSquaresBetween(Square.getIndex("a1"), Square.getIndex("d4")));
+        assertEquals(0, MagicBitBoards.getSquaresBetween(Square.getIndex("a1"), Square.getIndex("b2")));
+        assertEquals(0, MagicBitBoards.getSquaresBetween(Square.getIndex("a1"), Square.getIndex("b3")));
+    }
+
+    @Test
+    void line() {
+        assertEquals(bits("a1", "b2", "c3", "d4", "e5", "f6", "g7", "h8"), MagicBitBoards.getLine(Square.getIndex("c3"), Square.getIndex("d4")));
+        assertEquals(bits("a4", "b4", "c4", "d4", "e4", "f4", "g4", "h4"), MagicBitBoards.getLine(Square.getIndex("h4"), Square.getIndex("b4")));
+        assertEquals(bits("e1", "e2", "e3", "e4", "e5", "e6", "e7", "e8"), MagicBitBoards.getLine(Square.getIndex("e8"), Square.getIndex("e2")));
+        assertEquals(0, MagicBitBoards.getLine(Square.getIndex("a1"), Square.getIndex("b3")));
+    }
+
+    private static long bits(String... squares) {
+
+        long result = 0;
+
+        for (String square : squares)
+            result |= 1L << Square.getIndex(square);
+
+        return result;
+    }
+
+    private static long slide(int square, long occupancy, boolean isRook) {
+
+        final int[][] directions = isRook ?
+                new int[][]{{0, 1}, {1, 0}, {0, -1}, {-1, 0}}
+                : new int[][]{{1, 1}, {1, -1}, {-1, -1}, {-1, 1}};
+
+        long attacks = 0;
+
+        for (int[] direction : directions) {
+            for (int i = 1; i < 8; i++) {
+
+                final int index = Square.getIndex(Square.getFile(square) + i * direction[0], Square.getRow(square) + i * direction[1]);
+
+                if (index == -1)
+                    break;
+
+                attacks |= 1L << index;
+
+                if ((occupancy & (1L << index)) != 0)
+                    break;
+            }
+        }
+
+        return attacks;
+    }
+}
@@ -0,0 +1,94 @@
+package chessai.chessai.lib;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftTest {
+
+    @Test
+    void standardPositions() throws ParseException {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+
+            Perft perft = new Perft(new Board(position.fen()));
+
+            for (int depth = 1; depth <= Math.min(3, position.maxDepth()); depth++)
+                assertEquals(position.expectedCounts()[depth - 1], perft.count(depth), position.name() + " depth " + depth);
+        }
+    }
+
+    @Test
+    void countRestoresTheBoard() throws ParseException {
+        Board board = new Board(Perft.STANDARD_POSITIONS.get(1).fen());
+        final String fen = board.getFENString();
+
+        new Perft(board).count(3);
+
+        assertEquals(fen, board.getFENString());
+        assertEquals(0, board.getUndoableMoveCount());
+    }
+
+    @Test
+    void divide() throws ParseException {
+        Perft perft = new Perft(new Board("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+
+        Map<String, Long> result = perft.divide(3);
+
+        assertEquals(20, result.size());
+        assertEquals(8_902, result.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(600, result.get("e2e4"));
+
+        assertThrows(IllegalArgumentException.class, () -> perft.divide(0));
+    }
+
+    @Test
+    void cachedCount() throws ParseException {
+        Perft.Cache cache = new Perft.Cache(1 << 20);
+
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+
+            Perft perft = new Perft(new Board(position.fen()), cache);
+
+            // the second count is read from the cache
+            assertEquals(position.expectedCounts()[2], perft.count(3), position.name());
+            assertEquals(position.expectedCounts()[2], perft.count(3), position.name());
+        }
+    }
+
+    @Test
+    void cache() {
+        Perft.Cache cache = new Perft.Cache(1024);
+
+        cache.put(12345L, 3, 8902);
+
+        assertEquals(8902, cache.get(12345L, 3));
+        assertEquals(-1, cache.get(12345L, 4));
+        assertEquals(-1, cache.get(54321L, 3));
+    }
+
+    @Test
+    void parallelCount() throws ParseException {
+        ForkJoinPool pool = new ForkJoinPool(3);
+
+        try {
+            Perft.Position position = Perft.STANDARD_POSITIONS.get(2);
+            Board board = new Board(position.fen());
+
+            assertEquals(position.expectedCounts()[3], new Perft(board).countInParallel(4, pool));
+            assertEquals(position.expectedCounts()[3], new Perft(board, new Perft.Cache(1 << 20)).countInParallel(4, pool));
+            assertEquals(new Perft(board).divide(3), new Perft(board).divideInParallel(3, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void uciString() {
+        assertEquals("e2e4", Perft.toUciString(new Move(new Square("e2"), new Square("e4"), null, false, false, SpecialMove.NONE)));
+        assertEquals("a7a8q", Perft.toUciString(Move.decode(Move.encode(Square.getIndex("a7"), Square.getIndex("a8"), BitBoardPosition.QUEEN, false, false, SpecialMove.NONE))));
+    }
+}